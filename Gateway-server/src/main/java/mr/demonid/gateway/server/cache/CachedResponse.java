@@ -0,0 +1,39 @@
+package mr.demonid.gateway.server.cache;
+
+import org.springframework.http.HttpHeaders;
+
+/**
+ * Сохраненный ответ сервиса.
+ * @param status    HTTP-статус.
+ * @param headers   Заголовки ответа (без Content-Length и hop-by-hop заголовков).
+ * @param body      Тело ответа.
+ * @param etag      ETag ответа (от сервиса или вычисленный шлюзом).
+ * @param expiresAt Момент устаревания по System.nanoTime().
+ */
+public record CachedResponse(int status, HttpHeaders headers, byte[] body, String etag, long expiresAt) {
+
+    /**
+     * Оценка занимаемой памяти: тело плюс заголовки.
+     */
+    public long weight() {
+        long size = body.length;
+        for (var header : headers.entrySet()) {
+            size += header.getKey().length();
+            for (String value : header.getValue()) {
+                size += value.length();
+            }
+        }
+        return size;
+    }
+
+    public boolean isFresh(long now) {
+        return now - expiresAt < 0;
+    }
+
+    /**
+     * Та же запись с новым сроком жизни (после подтверждения сервисом, что она не изменилась).
+     */
+    public CachedResponse withExpiresAt(long expiresAt) {
+        return new CachedResponse(status, headers, body, etag, expiresAt);
+    }
+}
@@ -0,0 +1,115 @@
+package mr.demonid.gateway.server.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Хранилище ответов шлюза в памяти, ограниченное суммарным размером записей.
+ * Вытесняются давно не использованные записи (LRU), пока суммарный размер
+ * не уложится в лимит; запись крупнее maxEntryBytes не сохраняется вовсе,
+ * чтобы одна большая картинка не вытеснила весь каталог.
+ * Устаревшие записи не удаляются сразу: по их ETag шлюз спрашивает сервис,
+ * изменился ли ответ, и при 304 продлевает запись без передачи тела.
+ */
+public class ResponseCache implements MeterBinder {
+
+    private static final String NAME = "gateway-responses";
+
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    private final LinkedHashMap<String, CachedResponse> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long bytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong revalidated = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public ResponseCache(long maxBytes, long maxEntryBytes) {
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = maxEntryBytes;
+    }
+
+    public long getMaxEntryBytes() {
+        return maxEntryBytes;
+    }
+
+    public synchronized CachedResponse get(String key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Сохраняет запись, вытесняя самые старые по использованию, если не хватает места.
+     * @return false, если запись слишком велика для кэша.
+     */
+    public synchronized boolean put(String key, CachedResponse response) {
+        long weight = response.weight();
+        if (weight > maxEntryBytes) {
+            return false;
+        }
+        CachedResponse previous = entries.put(key, response);
+        if (previous != null) {
+            bytes -= previous.weight();
+        }
+        bytes += weight;
+        Iterator<Map.Entry<String, CachedResponse>> eldest = entries.entrySet().iterator();
+        while (bytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, CachedResponse> entry = eldest.next();
+            if (entry.getKey().equals(key)) {
+                continue;
+            }
+            bytes -= entry.getValue().weight();
+            eldest.remove();
+            evictions.incrementAndGet();
+        }
+        return true;
+    }
+
+    public synchronized void remove(String key) {
+        CachedResponse previous = entries.remove(key);
+        if (previous != null) {
+            bytes -= previous.weight();
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long bytes() {
+        return bytes;
+    }
+
+    public void recordHit() {
+        hits.incrementAndGet();
+    }
+
+    public void recordMiss() {
+        misses.incrementAndGet();
+    }
+
+    public void recordRevalidated() {
+        revalidated.incrementAndGet();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("cache.size", this, ResponseCache::size).tag("cache", NAME).register(registry);
+        Gauge.builder("cache.bytes", this, ResponseCache::bytes).tag("cache", NAME)
+                .description("Total size of cached responses")
+                .register(registry);
+        FunctionCounter.builder("cache.gets", hits, AtomicLong::get).tag("cache", NAME).tag("result", "hit").register(registry);
+        FunctionCounter.builder("cache.gets", misses, AtomicLong::get).tag("cache", NAME).tag("result", "miss").register(registry);
+        FunctionCounter.builder("cache.gets", revalidated, AtomicLong::get).tag("cache", NAME).tag("result", "revalidated")
+                .description("Stale entries confirmed by the service with 304 Not Modified")
+                .register(registry);
+        FunctionCounter.builder("cache.evictions", evictions, AtomicLong::get).tag("cache", NAME).register(registry);
+    }
+}
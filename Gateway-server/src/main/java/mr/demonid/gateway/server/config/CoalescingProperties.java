@@ -0,0 +1,19 @@
+package mr.demonid.gateway.server.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Настройки объединения одинаковых запросов (gateway.coalescing.*).
+ * @param maxResponseSize Ответы крупнее не раздаются ожидающим, те идут к сервису сами.
+ * @param routes          id маршрута -> заголовки, которые входят в ключ запроса
+ *                        (кроме метода, пути и параметров). Маршруты без записи не объединяются.
+ */
+@ConfigurationProperties(prefix = "gateway.coalescing")
+public record CoalescingProperties(@DefaultValue("2MB") DataSize maxResponseSize,
+                                   @DefaultValue Map<String, List<String>> routes) {
+}
@@ -0,0 +1,43 @@
+package mr.demonid.gateway.server.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import mr.demonid.gateway.server.filters.RequestTimingFilter;
+import mr.demonid.gateway.server.filters.UpstreamTimingFilter;
+import mr.demonid.gateway.server.metrics.RouteTimings;
+import org.springframework.cloud.gateway.config.HttpClientCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Метрики задержек шлюза: таймеры по маршрутам (RouteTimings) и метрики
+ * HTTP-клиента Reactor Netty, которым шлюз ходит в сервисы.
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public RouteTimings routeTimings(MeterRegistry registry) {
+        return new RouteTimings(registry);
+    }
+
+    @Bean
+    public RequestTimingFilter requestTimingFilter(RouteTimings routeTimings) {
+        return new RequestTimingFilter(routeTimings);
+    }
+
+    @Bean
+    public UpstreamTimingFilter upstreamTimingFilter() {
+        return new UpstreamTimingFilter();
+    }
+
+    /**
+     * Время соединения, TLS, отправки запроса и ответа по адресам экземпляров
+     * (reactor.netty.http.client.*, тег remote.address). Путь в теги не попадает:
+     * с id товаров в пути число рядов метрики росло бы без ограничений,
+     * разбивку по маршрутам дает RouteTimings.
+     */
+    @Bean
+    public HttpClientCustomizer httpClientMetrics() {
+        return httpClient -> httpClient.metrics(true, uri -> "/");
+    }
+}
@@ -0,0 +1,36 @@
+package mr.demonid.gateway.server.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.util.Map;
+
+/**
+ * Настройки ограничения частоты запросов (gateway.rate-limit.*).
+ * Лимит маршрута берется из routes.<id маршрута>, а если его там нет - из defaults.
+ * Лимит действует только на запросы через шлюз: Web-client в режиме discovery
+ * ходит в сервисы напрямую, и его заказы не ограничиваются.
+ * @param userHeader      Заголовок с id пользователя, который проставляет Web-client.
+ * @param signatureHeader Заголовок с подписью id (HMAC-SHA256, см. UserSignature).
+ * @param userSigningKey  Общий с Web-client ключ подписи. Обязателен: без него id не проверить,
+ *                        и шлюз не запускается (см. RouteConfig).
+ */
+@ConfigurationProperties(prefix = "gateway.rate-limit")
+public record RateLimitProperties(@DefaultValue("X-User-Id") String userHeader,
+                                  @DefaultValue("X-User-Signature") String signatureHeader,
+                                  String userSigningKey,
+                                  @DefaultValue Limit defaults,
+                                  @DefaultValue Map<String, Limit> routes) {
+
+    public Limit forRoute(String routeId) {
+        return routes.getOrDefault(routeId, defaults);
+    }
+
+    /**
+     * @param capacity      Размер "ведра" - сколько запросов можно сделать подряд.
+     * @param replenishRate Сколько запросов в секунду добавляется в ведро.
+     */
+    public record Limit(@DefaultValue("20") int capacity,
+                        @DefaultValue("10") double replenishRate) {
+    }
+}
@@ -0,0 +1,19 @@
+package mr.demonid.gateway.server.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Настройки кэша ответов шлюза (gateway.cache.*).
+ * @param maxSize      Суммарный размер сохраненных ответов.
+ * @param maxEntrySize Ответы крупнее не кэшируются.
+ * @param defaultTtl   Срок жизни ответа, если сервис не прислал Cache-Control с max-age.
+ */
+@ConfigurationProperties(prefix = "gateway.cache")
+public record ResponseCacheProperties(@DefaultValue("64MB") DataSize maxSize,
+                                      @DefaultValue("2MB") DataSize maxEntrySize,
+                                      @DefaultValue("10s") Duration defaultTtl) {
+}
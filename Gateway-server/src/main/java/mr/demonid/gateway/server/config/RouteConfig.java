@@ -0,0 +1,98 @@
+package mr.demonid.gateway.server.config;
+
+import mr.demonid.gateway.server.cache.ResponseCache;
+import mr.demonid.gateway.server.filters.CoalescingFilter;
+import mr.demonid.gateway.server.filters.ResponseCacheFilter;
+import mr.demonid.gateway.server.filters.UserHeaderFilter;
+import mr.demonid.gateway.server.ratelimit.ClientKeyResolver;
+import mr.demonid.gateway.server.ratelimit.TokenBucketRateLimiter;
+import mr.demonid.gateway.server.ratelimit.UserSignature;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cloud.gateway.route.RouteLocator;
+import org.springframework.cloud.gateway.route.builder.RouteLocatorBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
+
+/**
+ * Маршруты шлюза, которым нужны собственные фильтры.
+ * Остальные маршруты (/<SERVICE>/**) по-прежнему строятся по Eureka из общей конфигурации;
+ * маршруты отсюда имеют больший приоритет (order -1) и перехватывают только свои пути.
+ */
+@Configuration
+@EnableConfigurationProperties({ResponseCacheProperties.class, RateLimitProperties.class, CoalescingProperties.class})
+public class RouteConfig {
+
+    // фильтр, подменяющий ответ, должен обернуть его раньше, чем NettyWriteResponseFilter начнет запись;
+    // кэш стоит перед объединением запросов, чтобы попадания в кэш не ждали ведущий запрос
+    private static final int CACHE_FILTER_ORDER = CoalescingFilter.ORDER - 1;
+
+    @Bean
+    public ResponseCache responseCache(ResponseCacheProperties properties) {
+        return new ResponseCache(properties.maxSize().toBytes(), properties.maxEntrySize().toBytes());
+    }
+
+    @Bean
+    public ResponseCacheFilter responseCacheFilter(ResponseCache responseCache, ResponseCacheProperties properties) {
+        return new ResponseCacheFilter(responseCache, properties.defaultTtl());
+    }
+
+    /**
+     * Объединение одинаковых GET-запросов; маршруты и ключевые заголовки - в gateway.coalescing.routes.
+     */
+    @Bean
+    public CoalescingFilter coalescingFilter(CoalescingProperties properties) {
+        return new CoalescingFilter(properties);
+    }
+
+    @Bean
+    public TokenBucketRateLimiter tokenBucketRateLimiter(RateLimitProperties properties) {
+        return new TokenBucketRateLimiter(properties);
+    }
+
+    /**
+     * Без ключа подписи шлюз не отличит пользователей Web-client друг от друга:
+     * все их заказы приходят с одного IP и делили бы одно ведро orders-limited.
+     * Поэтому ключ обязателен, и без него шлюз не запускается.
+     */
+    @Bean
+    public UserHeaderFilter userHeaderFilter(RateLimitProperties properties) {
+        if (properties.userSigningKey() == null || properties.userSigningKey().isBlank()) {
+            throw new IllegalStateException("Не задан ключ подписи gateway.rate-limit.user-signing-key (USER_SIGNING_KEY): "
+                    + "без него лимит заказов orders-limited был бы общим для всех пользователей Web-client");
+        }
+        return new UserHeaderFilter(properties.userHeader(), properties.signatureHeader(), new UserSignature(properties.userSigningKey()));
+    }
+
+    @Bean
+    public ClientKeyResolver clientKeyResolver() {
+        return new ClientKeyResolver();
+    }
+
+    /**
+     * Каталог: список товаров и карточки товаров (вместе с картинками) кэшируются в шлюзе,
+     * а одновременные промахи кэша объединяются в один запрос к сервису (CoalescingFilter).
+     * Заказы: частота ограничена для каждого пользователя Web-client или IP-адреса
+     * (лимит - gateway.rate-limit.routes.orders-limited),
+     * сверх лимита - 429 Too Many Requests с заголовками X-RateLimit-* и Retry-After.
+     */
+    @Bean
+    public RouteLocator gatewayRoutes(RouteLocatorBuilder builder,
+                                      ResponseCacheFilter responseCacheFilter,
+                                      TokenBucketRateLimiter rateLimiter,
+                                      ClientKeyResolver clientKeyResolver) {
+        return builder.routes()
+                .route("catalog-cached", r -> r.order(-1)
+                        .method(HttpMethod.GET)
+                        .and().path("/CATALOG-SERVICE/api/catalog/get-all", "/CATALOG-SERVICE/api/catalog/get-product/**")
+                        .filters(f -> f.filter(responseCacheFilter, CACHE_FILTER_ORDER)
+                                .stripPrefix(1))
+                        .uri("lb://CATALOG-SERVICE"))
+                .route("orders-limited", r -> r.order(-1)
+                        .path("/ORDER-SERVICE/api/orders", "/ORDER-SERVICE/api/orders/**")
+                        .filters(f -> f.requestRateLimiter(c -> c.setRateLimiter(rateLimiter).setKeyResolver(clientKeyResolver))
+                                .stripPrefix(1))
+                        .uri("lb://ORDER-SERVICE"))
+                .build();
+    }
+}
@@ -0,0 +1,136 @@
+package mr.demonid.gateway.server.filters;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import mr.demonid.gateway.server.config.CoalescingProperties;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.NettyWriteResponseFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Объединение одинаковых одновременных GET-запросов (single-flight).
+ * Первый запрос с данным ключом (ведущий) идет к сервису, остальные, пришедшие,
+ * пока он выполняется, ждут и получают копию его ответа. Ключ - маршрут, путь с
+ * параметрами и заголовки из CoalescingProperties для этого маршрута.
+ * Если ведущий не дал ответа для раздачи (ошибка, отмена клиентом, ответ больше
+ * maxResponseSize), ожидающие выполняют свои запросы к сервису сами.
+ * В памяти на ведущий запрос держится не больше maxResponseSize (см. ResponseCapture).
+ * Работает после кэша ответов: в сервис уходят только промахи кэша.
+ */
+public class CoalescingFilter implements GlobalFilter, Ordered, MeterBinder {
+
+    // как и кэш ответов, подменяет ответ до NettyWriteResponseFilter, но после кэша
+    public static final int ORDER = NettyWriteResponseFilter.WRITE_RESPONSE_FILTER_ORDER - 1;
+
+    /**
+     * Ответ ведущего запроса.
+     */
+    private record SharedResponse(HttpStatusCode status, HttpHeaders headers, byte[] body) {
+    }
+
+    private final Map<String, List<String>> routes;
+    private final long maxResponseBytes;
+    private final Map<String, Sinks.One<SharedResponse>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong leaders = new AtomicLong();
+    private final AtomicLong followers = new AtomicLong();
+    private final AtomicLong fallbacks = new AtomicLong();
+
+    public CoalescingFilter(CoalescingProperties properties) {
+        this.routes = properties.routes();
+        this.maxResponseBytes = properties.maxResponseSize().toBytes();
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        List<String> keyHeaders = route == null ? null : routes.get(route.getId());
+        if (keyHeaders == null || exchange.getRequest().getMethod() != HttpMethod.GET) {
+            return chain.filter(exchange);
+        }
+        String key = key(route.getId(), exchange.getRequest(), keyHeaders);
+        Sinks.One<SharedResponse> sink = Sinks.one();
+        Sinks.One<SharedResponse> leader = inFlight.putIfAbsent(key, sink);
+        if (leader != null) {
+            followers.incrementAndGet();
+            return leader.asMono()
+                    .onErrorResume(e -> Mono.empty())
+                    .flatMap(shared -> write(exchange.getResponse(), shared).thenReturn(true))
+                    .switchIfEmpty(Mono.defer(() -> {
+                        fallbacks.incrementAndGet();
+                        return chain.filter(exchange).thenReturn(true);
+                    }))
+                    .then();
+        }
+        leaders.incrementAndGet();
+        ResponseCapture capture = new ResponseCapture(exchange.getResponse(), maxResponseBytes, (response, body) -> {
+            // новые запросы с этим ключом пойдут уже к сервису, а ждущие получат этот ответ
+            inFlight.remove(key, sink);
+            sink.tryEmitValue(new SharedResponse(response.getStatusCode(), ResponseCapture.snapshot(response.getHeaders()), body));
+            return body;
+        });
+        return chain.filter(exchange.mutate().response(capture).build())
+                .doFinally(signal -> {
+                    if (inFlight.remove(key, sink)) {
+                        sink.tryEmitError(new IllegalStateException("Ответ на " + key + " не получен"));
+                    }
+                });
+    }
+
+    private static Mono<Void> write(ServerHttpResponse response, SharedResponse shared) {
+        response.setStatusCode(shared.status());
+        response.getHeaders().putAll(shared.headers());
+        response.getHeaders().setContentLength(shared.body().length);
+        return shared.body().length == 0
+                ? response.setComplete()
+                : response.writeWith(Mono.just(response.bufferFactory().wrap(shared.body())));
+    }
+
+    private static String key(String routeId, ServerHttpRequest request, List<String> keyHeaders) {
+        StringBuilder key = new StringBuilder(routeId).append('|').append(request.getURI().getRawPath());
+        if (request.getURI().getRawQuery() != null) {
+            key.append('?').append(request.getURI().getRawQuery());
+        }
+        for (String header : keyHeaders) {
+            key.append('|').append(header).append('=').append(request.getHeaders().getOrEmpty(header));
+        }
+        return key.toString();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("gateway.coalescing.requests", leaders, AtomicLong::get).tag("role", "leader")
+                .description("Requests sent to the service")
+                .register(registry);
+        FunctionCounter.builder("gateway.coalescing.requests", followers, AtomicLong::get).tag("role", "follower")
+                .description("Requests that waited for an identical in-flight request")
+                .register(registry);
+        FunctionCounter.builder("gateway.coalescing.fallbacks", fallbacks, AtomicLong::get)
+                .description("Followers that called the service themselves because the leader had no shareable response")
+                .register(registry);
+        Gauge.builder("gateway.coalescing.in-flight", inFlight, Map::size).register(registry);
+    }
+}
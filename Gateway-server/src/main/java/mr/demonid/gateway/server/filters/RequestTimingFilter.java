@@ -0,0 +1,35 @@
+package mr.demonid.gateway.server.filters;
+
+import mr.demonid.gateway.server.metrics.RouteTimings;
+import org.springframework.core.Ordered;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+/**
+ * Начало и конец запроса для RouteTimings.
+ * Это WebFilter, а не GlobalFilter: он срабатывает раньше выбора маршрута,
+ * так что в общее время входит и сопоставление с предикатами маршрутов.
+ */
+public class RequestTimingFilter implements WebFilter, Ordered {
+
+    private final RouteTimings timings;
+
+    public RequestTimingFilter(RouteTimings timings) {
+        this.timings = timings;
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        exchange.getAttributes().put(RouteTimings.START_ATTR, System.nanoTime());
+        return chain.filter(exchange)
+                .doOnError(e -> exchange.getAttributes().put(RouteTimings.ERROR_ATTR, e))
+                .doFinally(signal -> timings.record(exchange, signal, System.nanoTime()));
+    }
+}
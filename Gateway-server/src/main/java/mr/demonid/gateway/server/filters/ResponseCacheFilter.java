@@ -0,0 +1,187 @@
+package mr.demonid.gateway.server.filters;
+
+import mr.demonid.gateway.server.cache.CachedResponse;
+import mr.demonid.gateway.server.cache.ResponseCache;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Кэширование ответов на GET-запросы в шлюзе.
+ * Свежий ответ из кэша отдается без обращения к сервису (и без балансировки).
+ * Устаревший ответ с ETag перепроверяется условным запросом: на 304 шлюз продлевает
+ * запись и отдает сохраненное тело, на 200 - заменяет запись.
+ * Срок жизни берется из Cache-Control сервиса (s-maxage, max-age), по умолчанию - defaultTtl;
+ * no-store, private, Set-Cookie и Vary: * запрещают сохранение, no-cache - перепроверку каждый раз.
+ * Если сервис не прислал ETag, шлюз вычисляет его по телу, так что клиенты
+ * с If-None-Match получают 304 без тела. Ключ включает Accept: JSON и CBOR хранятся отдельно.
+ */
+public class ResponseCacheFilter implements GatewayFilter {
+
+    private final ResponseCache cache;
+    private final long defaultTtlNanos;
+
+    public ResponseCacheFilter(ResponseCache cache, Duration defaultTtl) {
+        this.cache = cache;
+        this.defaultTtlNanos = defaultTtl.toNanos();
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        ServerHttpRequest request = exchange.getRequest();
+        if (request.getMethod() != HttpMethod.GET) {
+            return chain.filter(exchange);
+        }
+        String key = key(request);
+        CachedResponse cached = hasDirective(request.getHeaders(), "no-cache") ? null : cache.get(key);
+        if (cached != null && cached.isFresh(System.nanoTime())) {
+            cache.recordHit();
+            return writeCached(exchange, cached);
+        }
+        // If-None-Match клиента сервису не передаем: нужно тело для кэша, 304 клиенту шлюз отдаст сам
+        ServerHttpRequest upstream = request.mutate()
+                .headers(headers -> {
+                    headers.remove(HttpHeaders.IF_NONE_MATCH);
+                    if (cached != null && cached.etag() != null) {
+                        headers.setIfNoneMatch(cached.etag());
+                    }
+                })
+                .build();
+        ResponseCapture capture = new ResponseCapture(exchange.getResponse(), cache.getMaxEntryBytes(),
+                (response, body) -> onResponse(request, key, cached, response, body));
+        return chain.filter(exchange.mutate().request(upstream).response(capture).build());
+    }
+
+    /**
+     * Ответ сервиса: сохранить, продлить запись или просто передать клиенту.
+     */
+    private byte[] onResponse(ServerHttpRequest request, String key, CachedResponse cached, ServerHttpResponse response, byte[] body) {
+        int status = response.getStatusCode() == null ? 200 : response.getStatusCode().value();
+        HttpHeaders headers = response.getHeaders();
+        if (status == HttpStatus.NOT_MODIFIED.value() && cached != null) {
+            cache.recordRevalidated();
+            CachedResponse refreshed = cached.withExpiresAt(expiresAt(headers));
+            cache.put(key, refreshed);
+            headers.clear();
+            return applyCached(request, response, refreshed);
+        }
+        cache.recordMiss();
+        if (status != HttpStatus.OK.value() || !isStorable(headers)) {
+            cache.remove(key);
+            return body;
+        }
+        String etag = headers.getETag();
+        if (etag == null) {
+            etag = "W/\"" + DigestUtils.md5DigestAsHex(body) + "\"";
+            headers.setETag(etag);
+        }
+        cache.put(key, new CachedResponse(status, ResponseCapture.snapshot(headers), body, etag, expiresAt(headers)));
+        if (matches(request, etag)) {
+            response.setStatusCode(HttpStatus.NOT_MODIFIED);
+            return new byte[0];
+        }
+        return body;
+    }
+
+    private Mono<Void> writeCached(ServerWebExchange exchange, CachedResponse cached) {
+        ServerHttpResponse response = exchange.getResponse();
+        byte[] body = applyCached(exchange.getRequest(), response, cached);
+        response.getHeaders().setContentLength(body.length);
+        return body.length == 0 ? response.setComplete() : response.writeWith(Mono.just(response.bufferFactory().wrap(body)));
+    }
+
+    /**
+     * Переносит сохраненный ответ в ответ клиенту.
+     * @return тело для отправки (пустое, если у клиента уже эта версия).
+     */
+    private byte[] applyCached(ServerHttpRequest request, ServerHttpResponse response, CachedResponse cached) {
+        response.getHeaders().putAll(cached.headers());
+        if (matches(request, cached.etag())) {
+            response.setStatusCode(HttpStatus.NOT_MODIFIED);
+            return new byte[0];
+        }
+        response.setStatusCode(HttpStatusCode.valueOf(cached.status()));
+        return cached.body();
+    }
+
+    private long expiresAt(HttpHeaders headers) {
+        long ttl = defaultTtlNanos;
+        if (hasDirective(headers, "no-cache")) {
+            ttl = 0;
+        } else {
+            Long maxAge = maxAge(headers, "s-maxage");
+            if (maxAge == null) {
+                maxAge = maxAge(headers, "max-age");
+            }
+            if (maxAge != null) {
+                ttl = Duration.ofSeconds(maxAge).toNanos();
+            }
+        }
+        return System.nanoTime() + ttl;
+    }
+
+    private static boolean isStorable(HttpHeaders headers) {
+        return !hasDirective(headers, "no-store")
+                && !hasDirective(headers, "private")
+                && !headers.containsKey(HttpHeaders.SET_COOKIE)
+                && !headers.getVary().contains("*");
+    }
+
+    private static boolean matches(ServerHttpRequest request, String etag) {
+        if (etag == null) {
+            return false;
+        }
+        List<String> expected = request.getHeaders().getIfNoneMatch();
+        return expected.contains("*") || expected.stream().anyMatch(tag -> weak(tag).equals(weak(etag)));
+    }
+
+    private static String weak(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+
+    private static boolean hasDirective(HttpHeaders headers, String directive) {
+        for (String value : headers.getOrEmpty(HttpHeaders.CACHE_CONTROL)) {
+            for (String part : value.split(",")) {
+                if (part.trim().toLowerCase(Locale.ROOT).equals(directive)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static Long maxAge(HttpHeaders headers, String directive) {
+        for (String value : headers.getOrEmpty(HttpHeaders.CACHE_CONTROL)) {
+            for (String part : value.split(",")) {
+                String[] pair = part.trim().toLowerCase(Locale.ROOT).split("=", 2);
+                if (pair.length == 2 && pair[0].equals(directive)) {
+                    try {
+                        return Long.parseLong(pair[1].replace("\"", ""));
+                    } catch (NumberFormatException e) {
+                        return null;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    static String key(ServerHttpRequest request) {
+        String accept = request.getHeaders().getFirst(HttpHeaders.ACCEPT);
+        return request.getURI().getRawPath()
+                + (request.getURI().getRawQuery() == null ? "" : "?" + request.getURI().getRawQuery())
+                + "|" + (accept == null ? "" : accept);
+    }
+}
@@ -0,0 +1,93 @@
+package mr.demonid.gateway.server.filters;
+
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiFunction;
+
+/**
+ * Перехват ответа сервиса целиком, перед отправкой клиенту.
+ * Тело собирается в массив и передается обработчику вместе с ответом (статус и
+ * заголовки обработчик может поменять); клиенту уходит то, что вернул обработчик.
+ * Ответы длиннее maxBytes идут мимо обработчика как есть: с известным Content-Length - сразу,
+ * а без него (chunked) - как только накопленное превысит maxBytes; тогда клиенту уходит
+ * накопленная часть и остаток потока. Так в памяти на ответ держится не больше maxBytes.
+ * Фильтр, подменяющий ответ этим декоратором, должен стоять раньше NettyWriteResponseFilter.
+ */
+public class ResponseCapture extends ServerHttpResponseDecorator {
+
+    // не переносятся в сохраненный ответ: длину и кодировку задает запись тела
+    private static final Set<String> SKIPPED_HEADERS = Set.of(
+            HttpHeaders.CONTENT_LENGTH, HttpHeaders.TRANSFER_ENCODING, HttpHeaders.CONNECTION, HttpHeaders.DATE);
+
+    private final long maxBytes;
+    private final BiFunction<ServerHttpResponse, byte[], byte[]> handler;
+
+    public ResponseCapture(ServerHttpResponse delegate, long maxBytes, BiFunction<ServerHttpResponse, byte[], byte[]> handler) {
+        super(delegate);
+        this.maxBytes = maxBytes;
+        this.handler = handler;
+    }
+
+    @Override
+    public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+        if (getHeaders().getContentLength() > maxBytes) {
+            return super.writeWith(body);
+        }
+        return Mono.defer(() -> {
+            long[] size = {0};
+            // части тела копятся, пока их сумма не превысит maxBytes; весь ответ в пределах
+            // лимита придет одним списком по завершении потока, переполнение - раньше
+            return Flux.<DataBuffer>from(body)
+                    .bufferUntil(buffer -> (size[0] += buffer.readableByteCount()) > maxBytes)
+                    .switchOnFirst((first, parts) -> size[0] > maxBytes
+                            ? super.writeWith(parts.concatMapIterable(part -> part))
+                            : parts.singleOrEmpty()
+                                    .map(ResponseCapture::toBytes)
+                                    .defaultIfEmpty(new byte[0])
+                                    .flatMap(this::handle))
+                    .doOnDiscard(DataBuffer.class, DataBufferUtils::release)
+                    .then();
+        });
+    }
+
+    private Mono<Void> handle(byte[] bytes) {
+        byte[] out = handler.apply(getDelegate(), bytes);
+        getHeaders().remove(HttpHeaders.TRANSFER_ENCODING);
+        getHeaders().setContentLength(out.length);
+        return out.length == 0 ? super.setComplete() : super.writeWith(Mono.just(bufferFactory().wrap(out)));
+    }
+
+    private static byte[] toBytes(List<DataBuffer> parts) {
+        byte[] bytes = new byte[parts.stream().mapToInt(DataBuffer::readableByteCount).sum()];
+        int offset = 0;
+        for (DataBuffer part : parts) {
+            int length = part.readableByteCount();
+            part.read(bytes, offset, length);
+            offset += length;
+            DataBufferUtils.release(part);
+        }
+        return bytes;
+    }
+
+    /**
+     * Неизменяемая копия заголовков ответа для повторной отдачи другим клиентам.
+     */
+    public static HttpHeaders snapshot(HttpHeaders headers) {
+        HttpHeaders copy = new HttpHeaders();
+        headers.forEach((name, values) -> {
+            if (SKIPPED_HEADERS.stream().noneMatch(name::equalsIgnoreCase)) {
+                copy.put(name, List.copyOf(values));
+            }
+        });
+        return HttpHeaders.readOnlyHttpHeaders(copy);
+    }
+}
@@ -0,0 +1,32 @@
+package mr.demonid.gateway.server.filters;
+
+import mr.demonid.gateway.server.metrics.RouteTimings;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.core.Ordered;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+/**
+ * Отметки обращения к сервису для RouteTimings.
+ * Стоит последним перед маршрутизирующими фильтрами (NettyRoutingFilter и
+ * WebsocketRoutingFilter): к этому моменту балансировщик уже выбрал экземпляр.
+ * NettyRoutingFilter завершается, получив заголовки ответа сервиса, - это и есть
+ * время до первого байта; тело ответа передается клиенту уже после.
+ */
+public class UpstreamTimingFilter implements GlobalFilter, Ordered {
+
+    public static final int ORDER = Ordered.LOWEST_PRECEDENCE - 2;
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        exchange.getAttributes().put(RouteTimings.UPSTREAM_START_ATTR, System.nanoTime());
+        return chain.filter(exchange)
+                .doOnSuccess(v -> exchange.getAttributes().put(RouteTimings.FIRST_BYTE_ATTR, System.nanoTime()));
+    }
+}
@@ -0,0 +1,58 @@
+package mr.demonid.gateway.server.filters;
+
+import mr.demonid.gateway.server.ratelimit.UserSignature;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.core.Ordered;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+/**
+ * Проверка заголовка с id пользователя до всех остальных фильтров.
+ * Id с верной подписью Web-client кладется в атрибут VERIFIED_USER_ATTR
+ * (по нему ClientKeyResolver ведет ведро пользователя). Id без подписи или
+ * с неверной подписью пришел от внешнего клиента и удаляется из запроса,
+ * а сама подпись сервисам не нужна и не передается никогда.
+ */
+public class UserHeaderFilter implements GlobalFilter, Ordered {
+
+    public static final String VERIFIED_USER_ATTR = UserHeaderFilter.class.getName() + ".user";
+
+    private final String userHeader;
+    private final String signatureHeader;
+    private final UserSignature signature;
+
+    public UserHeaderFilter(String userHeader, String signatureHeader, UserSignature signature) {
+        this.userHeader = userHeader;
+        this.signatureHeader = signatureHeader;
+        this.signature = signature;
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        ServerHttpRequest request = exchange.getRequest();
+        String user = request.getHeaders().getFirst(userHeader);
+        if (user == null && !request.getHeaders().containsKey(signatureHeader)) {
+            return chain.filter(exchange);
+        }
+        boolean verified = signature.verify(user, request.getHeaders().getFirst(signatureHeader));
+        if (verified) {
+            exchange.getAttributes().put(VERIFIED_USER_ATTR, user.trim());
+        }
+        ServerHttpRequest cleaned = request.mutate()
+                .headers(headers -> {
+                    headers.remove(signatureHeader);
+                    if (!verified) {
+                        headers.remove(userHeader);
+                    }
+                })
+                .build();
+        return chain.filter(exchange.mutate().request(cleaned).build());
+    }
+}
@@ -0,0 +1,110 @@
+package mr.demonid.gateway.server.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.SignalType;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Таймеры запросов через шлюз по маршрутам и экземплярам сервисов:
+ * - gateway.route.queue - от приема запроса до отправки в сервис (фильтры шлюза, балансировка);
+ * - gateway.route.ttfb  - от отправки в сервис до получения заголовков его ответа;
+ * - gateway.route.total - весь запрос, включая передачу тела клиенту.
+ * Теги: route, instance (host:port после балансировки), status (2xx, 4xx, ..., cancelled).
+ * Запись идет до обработчика исключений WebFlux, так что у запроса, завершенного
+ * ошибкой (нет экземпляра, таймаут, отказ соединения), в ответе еще статус по умолчанию.
+ * Статус такого запроса берется из ошибки - тот, что выставит обработчик:
+ * код ResponseStatusException (503 - нет экземпляра, 504 - таймаут), иначе 500.
+ * Запросы, обслуженные без сервиса (кэш, объединение, отказ по лимиту), имеют instance=none
+ * и только общее время. Время соединения с сервисом пишет Reactor Netty
+ * (reactor.netty.http.client.connect.time, по remote.address), см. MetricsConfig.
+ * Таймеры публикуют гистограммы для перцентилей (histogram_quantile в Prometheus).
+ */
+public class RouteTimings {
+
+    public static final String START_ATTR = RouteTimings.class.getName() + ".start";
+    public static final String UPSTREAM_START_ATTR = RouteTimings.class.getName() + ".upstreamStart";
+    public static final String FIRST_BYTE_ATTR = RouteTimings.class.getName() + ".firstByte";
+    public static final String ERROR_ATTR = RouteTimings.class.getName() + ".error";
+
+    private static final String NONE = "none";
+
+    private record Key(String route, String instance, String status) {
+    }
+
+    private record Timers(Timer queue, Timer ttfb, Timer total) {
+    }
+
+    private final MeterRegistry registry;
+    private final Map<Key, Timers> timers = new ConcurrentHashMap<>();
+
+    public RouteTimings(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Записывает времена завершенного запроса по отметкам из атрибутов обмена.
+     */
+    public void record(ServerWebExchange exchange, SignalType signal, long end) {
+        Long start = exchange.getAttribute(START_ATTR);
+        if (start == null) {
+            return;
+        }
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        URI upstream = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR);
+        Long upstreamStart = exchange.getAttribute(UPSTREAM_START_ATTR);
+        Long firstByte = exchange.getAttribute(FIRST_BYTE_ATTR);
+
+        Timers t = timers(route == null ? NONE : route.getId(),
+                upstream == null || upstreamStart == null ? NONE : upstream.getHost() + ":" + upstream.getPort(),
+                statusClass(signal, exchange.getResponse().getStatusCode(), exchange.getAttribute(ERROR_ATTR)));
+        t.total().record(end - start, TimeUnit.NANOSECONDS);
+        if (upstreamStart != null) {
+            t.queue().record(upstreamStart - start, TimeUnit.NANOSECONDS);
+            if (firstByte != null) {
+                t.ttfb().record(firstByte - upstreamStart, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    private Timers timers(String route, String instance, String status) {
+        // таймеры одной комбинации тегов регистрируются один раз, дальше - поиск в карте
+        return timers.computeIfAbsent(new Key(route, instance, status), k -> new Timers(
+                timer("gateway.route.queue", "Time in the gateway before the request is sent to the service", k),
+                timer("gateway.route.ttfb", "Time from sending the request to the service until its response headers", k),
+                timer("gateway.route.total", "Total request time in the gateway", k)));
+    }
+
+    private Timer timer(String name, String description, Key key) {
+        return Timer.builder(name)
+                .description(description)
+                .tag("route", key.route())
+                .tag("instance", key.instance())
+                .tag("status", key.status())
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(100_000))
+                .maximumExpectedValue(Duration.ofSeconds(30))
+                .register(registry);
+    }
+
+    private static String statusClass(SignalType signal, HttpStatusCode status, Throwable error) {
+        if (signal == SignalType.CANCEL) {
+            return "cancelled";
+        }
+        if (signal == SignalType.ON_ERROR) {
+            status = error instanceof ResponseStatusException e ? e.getStatusCode() : HttpStatus.INTERNAL_SERVER_ERROR;
+        }
+        return status == null ? "unknown" : (status.value() / 100) + "xx";
+    }
+}
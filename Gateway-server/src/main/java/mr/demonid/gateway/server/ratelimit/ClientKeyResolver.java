@@ -0,0 +1,28 @@
+package mr.demonid.gateway.server.ratelimit;
+
+import mr.demonid.gateway.server.filters.UserHeaderFilter;
+import org.springframework.cloud.gateway.filter.ratelimit.KeyResolver;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+
+/**
+ * Ключ клиента для ограничения частоты запросов: id пользователя, если его
+ * подпись Web-client проверил UserHeaderFilter, иначе IP-адрес соединения.
+ * Все, что клиент может подставить сам (id без подписи, cookie сессии,
+ * X-Forwarded-For), в ключ не идет: иначе случайное значение в каждом запросе
+ * давало бы новое ведро, а чужой id - расходовало бы чужой лимит.
+ */
+public class ClientKeyResolver implements KeyResolver {
+
+    @Override
+    public Mono<String> resolve(ServerWebExchange exchange) {
+        String user = exchange.getAttribute(UserHeaderFilter.VERIFIED_USER_ATTR);
+        if (user != null) {
+            return Mono.just("user:" + user);
+        }
+        InetSocketAddress address = exchange.getRequest().getRemoteAddress();
+        return Mono.just("ip:" + (address == null || address.getAddress() == null ? "unknown" : address.getAddress().getHostAddress()));
+    }
+}
@@ -0,0 +1,134 @@
+package mr.demonid.gateway.server.ratelimit;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import mr.demonid.gateway.server.config.RateLimitProperties;
+import org.springframework.cloud.gateway.filter.ratelimit.RateLimiter;
+import org.springframework.http.HttpHeaders;
+import reactor.core.publisher.Mono;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Ограничение частоты запросов "ведром токенов" в памяти шлюза, без Redis.
+ * Ведро хранится одним числом - моментом, когда оно снова станет полным
+ * (алгоритм GCRA, эквивалентный ведру токенов), и меняется одним CAS,
+ * поэтому проверка не берет блокировок и стоит порядка сотни наносекунд.
+ * Ведро заводится на пару (маршрут, клиент), лимит - по маршруту из RateLimitProperties.
+ * Полные ведра периодически удаляются: полное ведро ничем не отличается от нового,
+ * так что память занимают только клиенты, недавно делавшие запросы.
+ * Лимит действует на один экземпляр шлюза и только на запросы через шлюз
+ * (Web-client в режиме discovery вызывает сервисы напрямую).
+ */
+public class TokenBucketRateLimiter implements RateLimiter<RateLimitProperties.Limit>, MeterBinder {
+
+    public static final String LIMIT_HEADER = "X-RateLimit-Limit";
+    public static final String REMAINING_HEADER = "X-RateLimit-Remaining";
+
+    private static final int SWEEP_EVERY = 4096;        // запросов между чистками
+
+    private final RateLimitProperties properties;
+    private final LongSupplier clock;                   // наносекунды, как System.nanoTime()
+    private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong allowed = new AtomicLong();
+    private final AtomicLong denied = new AtomicLong();
+
+    public TokenBucketRateLimiter(RateLimitProperties properties) {
+        this(properties, System::nanoTime);
+    }
+
+    TokenBucketRateLimiter(RateLimitProperties properties, LongSupplier clock) {
+        this.properties = properties;
+        this.clock = clock;
+    }
+
+    @Override
+    public Mono<Response> isAllowed(String routeId, String id) {
+        return Mono.just(tryAcquire(routeId, id));
+    }
+
+    /**
+     * Забирает один токен из ведра клиента.
+     */
+    public Response tryAcquire(String routeId, String id) {
+        RateLimitProperties.Limit limit = properties.forRoute(routeId);
+        long interval = (long) (TimeUnit.SECONDS.toNanos(1) / limit.replenishRate());   // один токен
+        long burst = interval * limit.capacity();                                         // все ведро
+        String key = routeId + "|" + id;
+        long now = clock.getAsLong();
+        AtomicLong bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = buckets.computeIfAbsent(key, k -> new AtomicLong(clock.getAsLong()));
+        }
+        if (calls.incrementAndGet() % SWEEP_EVERY == 0) {
+            sweep(now);
+        }
+        while (true) {
+            long full = bucket.get();                               // когда ведро станет полным
+            long next = (full - now > 0 ? full : now) + interval;
+            long allowAt = next - burst;                            // раньше этого момента токена нет
+            if (allowAt - now > 0) {
+                denied.incrementAndGet();
+                return new Response(false, headers(limit, 0, allowAt - now));
+            }
+            if (bucket.compareAndSet(full, next)) {
+                allowed.incrementAndGet();
+                return new Response(true, headers(limit, (int) ((now - allowAt) / interval), 0));
+            }
+            now = clock.getAsLong();
+        }
+    }
+
+    /**
+     * Удаляет полные ведра. Запрос, попавший между проверкой и удалением,
+     * может потерять свой токен в пользу клиента - это не более одного лишнего запроса.
+     */
+    private void sweep(long now) {
+        buckets.values().removeIf(bucket -> bucket.get() - now <= 0);
+    }
+
+    private static Map<String, String> headers(RateLimitProperties.Limit limit, int remaining, long retryAfterNanos) {
+        Map<String, String> headers = new HashMap<>();
+        headers.put(LIMIT_HEADER, String.valueOf(limit.capacity()));
+        headers.put(REMAINING_HEADER, String.valueOf(remaining));
+        if (retryAfterNanos > 0) {
+            // в секундах с округлением вверх
+            headers.put(HttpHeaders.RETRY_AFTER, String.valueOf((retryAfterNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1)));
+        }
+        return headers;
+    }
+
+    @Override
+    public Map<String, RateLimitProperties.Limit> getConfig() {
+        return properties.routes();
+    }
+
+    @Override
+    public Class<RateLimitProperties.Limit> getConfigClass() {
+        return RateLimitProperties.Limit.class;
+    }
+
+    @Override
+    public RateLimitProperties.Limit newConfig() {
+        return properties.defaults();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("gateway.ratelimit.requests", allowed, AtomicLong::get).tag("result", "allowed").register(registry);
+        FunctionCounter.builder("gateway.ratelimit.requests", denied, AtomicLong::get).tag("result", "denied")
+                .description("Requests rejected with 429 Too Many Requests")
+                .register(registry);
+        Gauge.builder("gateway.ratelimit.buckets", buckets, Map::size)
+                .description("Clients with a partially used bucket")
+                .register(registry);
+    }
+}
@@ -0,0 +1,39 @@
+package mr.demonid.gateway.server.ratelimit;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+
+/**
+ * Проверка подписи id пользователя, которую ставит Web-client:
+ * HMAC-SHA256 от id на общем ключе, в base64url без выравнивания.
+ * Без ключа подпись не проверить, и заголовку с id не доверяем вовсе.
+ */
+public class UserSignature {
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private final SecretKeySpec key;
+
+    public UserSignature(String secret) {
+        this.key = secret == null || secret.isBlank() ? null : new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+    }
+
+    public boolean verify(String userId, String signature) {
+        if (key == null || userId == null || signature == null) {
+            return false;
+        }
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            byte[] expected = mac.doFinal(userId.getBytes(StandardCharsets.UTF_8));
+            byte[] actual = Base64.getUrlDecoder().decode(signature);
+            return MessageDigest.isEqual(expected, actual);
+        } catch (IllegalArgumentException | GeneralSecurityException e) {
+            return false;
+        }
+    }
+}
@@ -3,7 +3,7 @@ package mr.demonid.gateway.server;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+@SpringBootTest(properties = "gateway.rate-limit.user-signing-key=test-key")
 class GatewayServerApplicationTests {
 
     @Test
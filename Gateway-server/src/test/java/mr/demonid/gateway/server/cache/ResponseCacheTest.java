@@ -0,0 +1,108 @@
+package mr.demonid.gateway.server.cache;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResponseCacheTest {
+
+    /**
+     * При нехватке места вытесняется давно не использованная запись, а не самая старая.
+     */
+    @Test
+    void put_EvictsLeastRecentlyUsedByBytes() {
+        /*
+            Подготовка.
+         */
+        ResponseCache cache = new ResponseCache(25, 20);
+        cache.put("a", entry(10));
+        cache.put("b", entry(10));
+        /*
+            Выполнение.
+         */
+        cache.get("a");
+        cache.put("c", entry(10));
+        /*
+            Проверка.
+         */
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+        assertEquals(20, cache.bytes());
+    }
+
+    /**
+     * Крупная запись вытесняет столько, сколько нужно, и учитывается в размере.
+     */
+    @Test
+    void put_EvictsUntilFits() {
+        /*
+            Подготовка.
+         */
+        ResponseCache cache = new ResponseCache(25, 20);
+        cache.put("a", entry(10));
+        cache.put("b", entry(10));
+        /*
+            Выполнение.
+         */
+        cache.put("c", entry(20));
+        /*
+            Проверка.
+         */
+        assertEquals(1, cache.size());
+        assertNotNull(cache.get("c"));
+        assertEquals(20, cache.bytes());
+    }
+
+    /**
+     * Запись крупнее maxEntryBytes не сохраняется и ничего не вытесняет.
+     */
+    @Test
+    void put_RejectsOversizedEntry() {
+        /*
+            Подготовка.
+         */
+        ResponseCache cache = new ResponseCache(25, 20);
+        cache.put("a", entry(10));
+        /*
+            Выполнение.
+         */
+        boolean stored = cache.put("b", entry(21));
+        /*
+            Проверка.
+         */
+        assertFalse(stored);
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("a"));
+        assertEquals(10, cache.bytes());
+    }
+
+    /**
+     * Замена и удаление записи корректно меняют суммарный размер.
+     */
+    @Test
+    void putAndRemove_TrackBytes() {
+        /*
+            Подготовка.
+         */
+        ResponseCache cache = new ResponseCache(100, 50);
+        cache.put("a", entry(10));
+        /*
+            Выполнение.
+         */
+        cache.put("a", entry(15));
+        long replaced = cache.bytes();
+        cache.remove("a");
+        /*
+            Проверка.
+         */
+        assertEquals(15, replaced);
+        assertEquals(0, cache.bytes());
+        assertEquals(0, cache.size());
+    }
+
+    private static CachedResponse entry(int bodySize) {
+        return new CachedResponse(200, HttpHeaders.readOnlyHttpHeaders(new HttpHeaders()), new byte[bodySize], "\"e\"", 0);
+    }
+}
@@ -0,0 +1,145 @@
+package mr.demonid.gateway.server.filters;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import mr.demonid.gateway.server.config.CoalescingProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.net.ConnectException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CoalescingFilterTest {
+
+    private static final Route ROUTE = Route.builder().id("catalog").uri("lb://CATALOG-SERVICE").predicate(e -> true).build();
+
+    private SimpleMeterRegistry registry;
+    private CoalescingFilter filter;
+    // ответ "сервиса" задерживается до сигнала, чтобы второй запрос пришел, пока первый выполняется
+    private Sinks.Empty<Void> gate;
+    private AtomicInteger upstreamCalls;
+
+    @BeforeEach
+    public void setup() {
+        registry = new SimpleMeterRegistry();
+        filter = new CoalescingFilter(new CoalescingProperties(DataSize.ofBytes(8), Map.of("catalog", List.of("Accept"))));
+        filter.bindTo(registry);
+        gate = Sinks.empty();
+        upstreamCalls = new AtomicInteger();
+    }
+
+    /**
+     * Одновременные одинаковые запросы дают один вызов сервиса, ответ получают все.
+     */
+    @Test
+    void filter_FollowersShareLeaderResponse() throws Exception {
+        GatewayFilterChain upstream = exchange -> {
+            upstreamCalls.incrementAndGet();
+            return gate.asMono().then(Mono.defer(() -> {
+                exchange.getResponse().setStatusCode(HttpStatus.OK);
+                return exchange.getResponse().writeWith(Flux.just(buffer("list")));
+            }));
+        };
+        MockServerWebExchange leader = exchange();
+        MockServerWebExchange follower = exchange();
+
+        CompletableFuture<Void> leaderDone = filter.filter(leader, upstream).toFuture();
+        CompletableFuture<Void> followerDone = filter.filter(follower, upstream).toFuture();
+        gate.tryEmitEmpty();
+        leaderDone.get(5, TimeUnit.SECONDS);
+        followerDone.get(5, TimeUnit.SECONDS);
+
+        assertEquals(1, upstreamCalls.get());
+        assertEquals("list", leader.getResponse().getBodyAsString().block(Duration.ofSeconds(5)));
+        assertEquals(HttpStatus.OK, follower.getResponse().getStatusCode());
+        assertEquals("list", follower.getResponse().getBodyAsString().block(Duration.ofSeconds(5)));
+        assertEquals(1, requests("leader"));
+        assertEquals(1, requests("follower"));
+    }
+
+    /**
+     * Ошибка ведущего не раздается: ожидающий сам идет в сервис.
+     */
+    @Test
+    void filter_FollowerFallsBackWhenLeaderFails() throws Exception {
+        GatewayFilterChain upstream = exchange -> {
+            if (upstreamCalls.incrementAndGet() == 1) {
+                return gate.asMono().then(Mono.error(new ConnectException("refused")));
+            }
+            exchange.getResponse().setStatusCode(HttpStatus.OK);
+            return exchange.getResponse().writeWith(Flux.just(buffer("list")));
+        };
+        MockServerWebExchange follower = exchange();
+
+        CompletableFuture<Void> leaderDone = filter.filter(exchange(), upstream).toFuture();
+        CompletableFuture<Void> followerDone = filter.filter(follower, upstream).toFuture();
+        gate.tryEmitEmpty();
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> leaderDone.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(ConnectException.class, e.getCause());
+        followerDone.get(5, TimeUnit.SECONDS);
+        assertEquals(2, upstreamCalls.get());
+        assertEquals("list", follower.getResponse().getBodyAsString().block(Duration.ofSeconds(5)));
+        assertEquals(1, registry.get("gateway.coalescing.fallbacks").functionCounter().count());
+    }
+
+    /**
+     * Ответ больше maxResponseSize ведущий получает целиком, а ожидающий запрашивает сам.
+     */
+    @Test
+    void filter_OversizedResponseNotShared() throws Exception {
+        GatewayFilterChain upstream = exchange -> {
+            upstreamCalls.incrementAndGet();
+            return gate.asMono().then(Mono.defer(() -> {
+                exchange.getResponse().setStatusCode(HttpStatus.OK);
+                return exchange.getResponse().writeWith(Flux.just("12345", "67890").map(CoalescingFilterTest::buffer));
+            }));
+        };
+        MockServerWebExchange leader = exchange();
+        MockServerWebExchange follower = exchange();
+
+        CompletableFuture<Void> leaderDone = filter.filter(leader, upstream).toFuture();
+        CompletableFuture<Void> followerDone = filter.filter(follower, upstream).toFuture();
+        gate.tryEmitEmpty();
+        leaderDone.get(5, TimeUnit.SECONDS);
+        followerDone.get(5, TimeUnit.SECONDS);
+
+        assertEquals(2, upstreamCalls.get());
+        assertEquals("1234567890", leader.getResponse().getBodyAsString().block(Duration.ofSeconds(5)));
+        assertEquals("1234567890", follower.getResponse().getBodyAsString().block(Duration.ofSeconds(5)));
+    }
+
+    private static MockServerWebExchange exchange() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/CATALOG-SERVICE/api/catalog/get-all"));
+        exchange.getAttributes().put(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR, ROUTE);
+        return exchange;
+    }
+
+    private static DataBuffer buffer(String text) {
+        return DefaultDataBufferFactory.sharedInstance.wrap(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private double requests(String role) {
+        return registry.get("gateway.coalescing.requests").tag("role", role).functionCounter().count();
+    }
+}
@@ -0,0 +1,174 @@
+package mr.demonid.gateway.server.filters;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import mr.demonid.gateway.server.cache.ResponseCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResponseCacheFilterTest {
+
+    private static final String PATH = "/CATALOG-SERVICE/api/catalog/get-all";
+
+    private SimpleMeterRegistry registry;
+    private ResponseCache cache;
+    private ResponseCacheFilter filter;
+    // заголовки запросов, дошедших до "сервиса"
+    private List<HttpHeaders> upstreamRequests;
+
+    @BeforeEach
+    public void setup() {
+        registry = new SimpleMeterRegistry();
+        cache = new ResponseCache(1024 * 1024, 64 * 1024);
+        cache.bindTo(registry);
+        filter = new ResponseCacheFilter(cache, Duration.ofSeconds(30));
+        upstreamRequests = new ArrayList<>();
+    }
+
+    /**
+     * Первый запрос идет в сервис и сохраняется, повторный отдается из кэша.
+     */
+    @Test
+    void filter_MissThenHit() {
+        GatewayFilterChain upstream = respond(HttpStatus.OK, "products", headers -> {});
+
+        MockServerWebExchange first = exchange();
+        filter.filter(first, upstream).block();
+        MockServerWebExchange second = exchange();
+        filter.filter(second, upstream).block();
+
+        assertEquals(1, upstreamRequests.size());
+        assertEquals("products", first.getResponse().getBodyAsString().block());
+        assertEquals(HttpStatus.OK, second.getResponse().getStatusCode());
+        assertEquals("products", second.getResponse().getBodyAsString().block());
+        assertNotNull(second.getResponse().getHeaders().getETag());
+        assertEquals(1, gets("hit"));
+        assertEquals(1, gets("miss"));
+    }
+
+    /**
+     * Клиент с актуальным If-None-Match получает 304 без тела прямо из кэша.
+     */
+    @Test
+    void filter_HitWithMatchingEtagReturnsNotModified() {
+        GatewayFilterChain upstream = respond(HttpStatus.OK, "products", headers -> headers.setETag("\"v1\""));
+        filter.filter(exchange(), upstream).block();
+
+        MockServerWebExchange conditional = MockServerWebExchange.from(MockServerHttpRequest.get(PATH).ifNoneMatch("\"v1\""));
+        filter.filter(conditional, upstream).block();
+
+        assertEquals(1, upstreamRequests.size());
+        assertEquals(HttpStatus.NOT_MODIFIED, conditional.getResponse().getStatusCode());
+        assertEquals("", conditional.getResponse().getBodyAsString().defaultIfEmpty("").block());
+    }
+
+    /**
+     * Устаревшая запись перепроверяется по ETag: на 304 сервиса клиент получает сохраненное тело.
+     */
+    @Test
+    void filter_StaleEntryRevalidated() {
+        GatewayFilterChain upstream = exchange -> {
+            upstreamRequests.add(exchange.getRequest().getHeaders());
+            if (exchange.getRequest().getHeaders().getIfNoneMatch().contains("\"v1\"")) {
+                exchange.getResponse().setStatusCode(HttpStatus.NOT_MODIFIED);
+                exchange.getResponse().getHeaders().setCacheControl("max-age=0");
+                return exchange.getResponse().writeWith(Flux.empty());
+            }
+            return write(exchange.getResponse(), HttpStatus.OK, "products", headers -> {
+                headers.setETag("\"v1\"");
+                headers.setCacheControl("max-age=0");
+            });
+        };
+        filter.filter(exchange(), upstream).block();
+
+        MockServerWebExchange revalidated = exchange();
+        filter.filter(revalidated, upstream).block();
+
+        assertEquals(2, upstreamRequests.size());
+        assertEquals(List.of("\"v1\""), upstreamRequests.get(1).getIfNoneMatch());
+        assertEquals(HttpStatus.OK, revalidated.getResponse().getStatusCode());
+        assertEquals("products", revalidated.getResponse().getBodyAsString().block());
+        assertEquals(1, gets("revalidated"));
+    }
+
+    /**
+     * Ответы с no-store и private не сохраняются: каждый запрос идет в сервис.
+     */
+    @Test
+    void filter_NoStoreAndPrivateNotCached() {
+        for (String directive : List.of("no-store", "private")) {
+            GatewayFilterChain upstream = respond(HttpStatus.OK, "user data", headers -> headers.setCacheControl(directive));
+
+            filter.filter(exchange(), upstream).block();
+            MockServerWebExchange second = exchange();
+            filter.filter(second, upstream).block();
+
+            assertEquals("user data", second.getResponse().getBodyAsString().block());
+        }
+        assertEquals(4, upstreamRequests.size());
+        assertEquals(0, cache.size());
+    }
+
+    /**
+     * Chunked-ответ больше лимита записи передается клиенту целиком и не сохраняется.
+     */
+    @Test
+    void filter_OversizedChunkedResponsePassesThrough() {
+        cache = new ResponseCache(1024, 8);
+        filter = new ResponseCacheFilter(cache, Duration.ofSeconds(30));
+        GatewayFilterChain upstream = exchange -> {
+            upstreamRequests.add(exchange.getRequest().getHeaders());
+            exchange.getResponse().setStatusCode(HttpStatus.OK);
+            return exchange.getResponse().writeWith(Flux.just("12345", "67890", "abc").map(ResponseCacheFilterTest::buffer));
+        };
+
+        MockServerWebExchange exchange = exchange();
+        filter.filter(exchange, upstream).block();
+
+        assertEquals("1234567890abc", exchange.getResponse().getBodyAsString().block());
+        assertEquals(0, cache.size());
+    }
+
+    private GatewayFilterChain respond(HttpStatus status, String body, Consumer<HttpHeaders> headers) {
+        return exchange -> {
+            upstreamRequests.add(exchange.getRequest().getHeaders());
+            return write(exchange.getResponse(), status, body, headers);
+        };
+    }
+
+    private static Mono<Void> write(ServerHttpResponse response,
+                                    HttpStatus status, String body, Consumer<HttpHeaders> headers) {
+        response.setStatusCode(status);
+        headers.accept(response.getHeaders());
+        return response.writeWith(Mono.just(buffer(body)));
+    }
+
+    private static DataBuffer buffer(String text) {
+        return DefaultDataBufferFactory.sharedInstance.wrap(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static MockServerWebExchange exchange() {
+        return MockServerWebExchange.from(MockServerHttpRequest.get(PATH));
+    }
+
+    private double gets(String result) {
+        return registry.get("cache.gets").tag("result", result).functionCounter().count();
+    }
+}
@@ -0,0 +1,188 @@
+package mr.demonid.gateway.server.filters;
+
+import mr.demonid.gateway.server.ratelimit.UserSignature;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserHeaderFilterTest {
+
+    private static final String USER = "X-User-Id";
+    private static final String SIGNATURE = "X-User-Signature";
+    private static final String KEY = "test-key";
+
+    private UserHeaderFilter filter;
+    // запрос, который ушел бы дальше по цепочке фильтров
+    private AtomicReference<ServerWebExchange> forwarded;
+    private GatewayFilterChain chain;
+
+    @BeforeEach
+    public void setup() {
+        filter = new UserHeaderFilter(USER, SIGNATURE, new UserSignature(KEY));
+        forwarded = new AtomicReference<>();
+        chain = exchange -> {
+            forwarded.set(exchange);
+            return Mono.empty();
+        };
+    }
+
+    /**
+     * Id с верной подписью остается в запросе и попадает в атрибут для ключа лимита,
+     * а сама подпись дальше не передается.
+     */
+    @Test
+    void filter_ValidSignatureKeepsUser() {
+        /*
+            Подготовка.
+         */
+        MockServerWebExchange exchange = exchange("42", sign(KEY, "42"));
+        /*
+            Выполнение.
+         */
+        filter.filter(exchange, chain).block();
+        /*
+            Проверка.
+         */
+        HttpHeaders headers = forwarded.get().getRequest().getHeaders();
+        assertEquals("42", headers.getFirst(USER));
+        assertFalse(headers.containsKey(SIGNATURE));
+        assertEquals("42", forwarded.get().getAttribute(UserHeaderFilter.VERIFIED_USER_ATTR));
+    }
+
+    /**
+     * Подпись другим ключом или от другого id - заголовок с id удаляется, атрибута нет.
+     */
+    @Test
+    void filter_BadSignatureRemovesUser() {
+        /*
+            Подготовка.
+         */
+        MockServerWebExchange wrongKey = exchange("42", sign("other-key", "42"));
+        MockServerWebExchange wrongUser = exchange("42", sign(KEY, "43"));
+        /*
+            Выполнение и проверка.
+         */
+        for (MockServerWebExchange exchange : new MockServerWebExchange[] {wrongKey, wrongUser}) {
+            filter.filter(exchange, chain).block();
+            HttpHeaders headers = forwarded.get().getRequest().getHeaders();
+            assertFalse(headers.containsKey(USER));
+            assertFalse(headers.containsKey(SIGNATURE));
+            assertNull(forwarded.get().getAttribute(UserHeaderFilter.VERIFIED_USER_ATTR));
+        }
+    }
+
+    /**
+     * Id без подписи и подпись, которая не разбирается как base64, тоже не проходят.
+     */
+    @Test
+    void filter_MissingOrMalformedSignatureRemovesUser() {
+        /*
+            Подготовка.
+         */
+        MockServerWebExchange unsigned = exchange("42", null);
+        MockServerWebExchange malformed = exchange("42", "%%%");
+        /*
+            Выполнение и проверка.
+         */
+        for (MockServerWebExchange exchange : new MockServerWebExchange[] {unsigned, malformed}) {
+            filter.filter(exchange, chain).block();
+            HttpHeaders headers = forwarded.get().getRequest().getHeaders();
+            assertFalse(headers.containsKey(USER));
+            assertFalse(headers.containsKey(SIGNATURE));
+            assertNull(forwarded.get().getAttribute(UserHeaderFilter.VERIFIED_USER_ATTR));
+        }
+    }
+
+    /**
+     * Одна подпись без id тоже не передается сервису.
+     */
+    @Test
+    void filter_SignatureWithoutUserIsStripped() {
+        /*
+            Подготовка.
+         */
+        MockServerWebExchange exchange = exchange(null, sign(KEY, "42"));
+        /*
+            Выполнение.
+         */
+        filter.filter(exchange, chain).block();
+        /*
+            Проверка.
+         */
+        assertFalse(forwarded.get().getRequest().getHeaders().containsKey(SIGNATURE));
+        assertNull(forwarded.get().getAttribute(UserHeaderFilter.VERIFIED_USER_ATTR));
+    }
+
+    /**
+     * Запрос без этих заголовков проходит без изменений.
+     */
+    @Test
+    void filter_PlainRequestUnchanged() {
+        /*
+            Подготовка.
+         */
+        MockServerWebExchange exchange = exchange(null, null);
+        /*
+            Выполнение.
+         */
+        filter.filter(exchange, chain).block();
+        /*
+            Проверка.
+         */
+        assertSame(exchange, forwarded.get());
+    }
+
+    /**
+     * Без ключа подписи шлюз не доверяет никакому id.
+     */
+    @Test
+    void verify_NoKeyNeverTrusts() {
+        /*
+            Подготовка.
+         */
+        UserSignature noKey = new UserSignature("");
+        /*
+            Проверка.
+         */
+        assertFalse(noKey.verify("42", sign("", "42")));
+        assertTrue(new UserSignature(KEY).verify("42", sign(KEY, "42")));
+    }
+
+    private static MockServerWebExchange exchange(String user, String signature) {
+        MockServerHttpRequest.BaseBuilder<?> request = MockServerHttpRequest.post("/ORDER-SERVICE/api/orders");
+        if (user != null) {
+            request.header(USER, user);
+        }
+        if (signature != null) {
+            request.header(SIGNATURE, signature);
+        }
+        return MockServerWebExchange.from(request);
+    }
+
+    /**
+     * Подпись так же, как ее ставит Web-client (UserSigningInterceptor).
+     */
+    private static String sign(String key, String userId) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            // пустой ключ SecretKeySpec не принимает; подписываем одним байтом, проверка все равно должна отказать
+            mac.init(new SecretKeySpec(key.isEmpty() ? new byte[1] : key.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(mac.doFinal(userId.getBytes(StandardCharsets.UTF_8)));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package mr.demonid.gateway.server.metrics;
+
+import io.micrometer.prometheusmetrics.PrometheusConfig;
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+import mr.demonid.gateway.server.filters.RequestTimingFilter;
+import mr.demonid.gateway.server.filters.UpstreamTimingFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Накладные расходы таймеров шлюза на запрос: цепочка из RequestTimingFilter и
+ * UpstreamTimingFilter вокруг "сервиса", который сразу отвечает 200,
+ * против той же цепочки без них. Создание обмена входит в оба варианта,
+ * разница между ними - цена измерений (с записью в гистограммы Prometheus).
+ * Несколько потоков - чтобы увидеть конкуренцию за общие таймеры.
+ * Запуск: main() из IDE или
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=mr.demonid.gateway.server.metrics.RouteTimingsBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class RouteTimingsBenchmark {
+
+    @Param({"off", "on"})
+    public String timing;
+
+    private static final Route ROUTE = Route.builder()
+            .id("catalog-cached")
+            .uri("lb://CATALOG-SERVICE")
+            .predicate(exchange -> true)
+            .build();
+    private static final URI INSTANCE = URI.create("http://10.0.0.5:8080/api/catalog/get-all");
+
+    private WebFilterChain chain;
+
+    @Setup
+    public void setup() {
+        GatewayFilterChain upstream = exchange -> {
+            exchange.getResponse().setStatusCode(HttpStatus.OK);
+            return Mono.empty();
+        };
+        if ("on".equals(timing)) {
+            RequestTimingFilter requestTiming = new RequestTimingFilter(new RouteTimings(new PrometheusMeterRegistry(PrometheusConfig.DEFAULT)));
+            UpstreamTimingFilter upstreamTiming = new UpstreamTimingFilter();
+            chain = exchange -> requestTiming.filter(exchange, ex -> upstreamTiming.filter(route(ex), upstream));
+        } else {
+            chain = exchange -> upstream.filter(route(exchange));
+        }
+    }
+
+    @Benchmark
+    public ServerWebExchange request() {
+        ServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/CATALOG-SERVICE/api/catalog/get-all"));
+        chain.filter(exchange).block();
+        return exchange;
+    }
+
+    /**
+     * То, что делают RoutePredicateHandlerMapping и балансировщик до обращения к сервису.
+     */
+    private static ServerWebExchange route(ServerWebExchange exchange) {
+        exchange.getAttributes().put(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR, ROUTE);
+        exchange.getAttributes().put(ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR, INSTANCE);
+        return exchange;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(RouteTimingsBenchmark.class.getSimpleName()).build()).run();
+    }
+}
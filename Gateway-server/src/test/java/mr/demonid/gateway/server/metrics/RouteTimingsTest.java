@@ -0,0 +1,69 @@
+package mr.demonid.gateway.server.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import mr.demonid.gateway.server.filters.RequestTimingFilter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.net.ConnectException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RouteTimingsTest {
+
+    private static final Route ROUTE = Route.builder().id("catalog-cached").uri("lb://CATALOG-SERVICE").predicate(e -> true).build();
+
+    private SimpleMeterRegistry registry;
+    private RequestTimingFilter filter;
+
+    @BeforeEach
+    public void setup() {
+        registry = new SimpleMeterRegistry();
+        filter = new RequestTimingFilter(new RouteTimings(registry));
+    }
+
+    /**
+     * Успешный ответ учитывается по классу его статуса.
+     */
+    @Test
+    void record_SuccessByStatusClass() {
+        ServerWebExchange exchange = exchange();
+
+        filter.filter(exchange, ex -> {
+            ex.getResponse().setStatusCode(HttpStatus.NOT_FOUND);
+            return Mono.empty();
+        }).block();
+
+        assertEquals(1, registry.get("gateway.route.total").tag("route", "catalog-cached").tag("status", "4xx").timer().count());
+    }
+
+    /**
+     * Ошибка до ответа учитывается по статусу, который выставит обработчик исключений,
+     * а не по статусу ответа по умолчанию (200).
+     */
+    @Test
+    void record_ErrorByExceptionStatus() {
+        StepVerifier.create(filter.filter(exchange(), ex -> Mono.error(new ResponseStatusException(HttpStatus.GATEWAY_TIMEOUT))))
+                .verifyError(ResponseStatusException.class);
+        StepVerifier.create(filter.filter(exchange(), ex -> Mono.error(new ConnectException("refused"))))
+                .verifyError(ConnectException.class);
+
+        assertEquals(2, registry.get("gateway.route.total").tag("status", "5xx").timer().count());
+        assertTrue(registry.find("gateway.route.total").tag("status", "2xx").timers().isEmpty());
+    }
+
+    private static ServerWebExchange exchange() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/CATALOG-SERVICE/api/catalog/get-all"));
+        exchange.getAttributes().put(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR, ROUTE);
+        return exchange;
+    }
+}
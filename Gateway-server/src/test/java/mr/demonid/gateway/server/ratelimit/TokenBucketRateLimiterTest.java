@@ -0,0 +1,156 @@
+package mr.demonid.gateway.server.ratelimit;
+
+import mr.demonid.gateway.server.config.RateLimitProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.ratelimit.RateLimiter;
+import org.springframework.http.HttpHeaders;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBucketRateLimiterTest {
+
+    private static final String ROUTE = "orders-limited";
+
+    private AtomicLong clock;
+    private TokenBucketRateLimiter limiter;
+
+    @BeforeEach
+    public void setup() {
+        clock = new AtomicLong(TimeUnit.HOURS.toNanos(1));
+        RateLimitProperties properties = new RateLimitProperties("X-User-Id", "X-User-Signature", "key",
+                new RateLimitProperties.Limit(20, 10),
+                Map.of(ROUTE, new RateLimitProperties.Limit(5, 1), "slow", new RateLimitProperties.Limit(2, 0.4)));
+        limiter = new TokenBucketRateLimiter(properties, clock::get);
+    }
+
+    /**
+     * Новый клиент может сразу сделать capacity запросов, остаток убывает до нуля,
+     * следующий запрос - 429 с Retry-After до появления токена.
+     */
+    @Test
+    void tryAcquire_BurstUpToCapacity() {
+        /*
+            Выполнение и проверка.
+         */
+        for (int expected = 4; expected >= 0; expected--) {
+            RateLimiter.Response response = limiter.tryAcquire(ROUTE, "user:1");
+            assertTrue(response.isAllowed());
+            assertEquals("5", response.getHeaders().get(TokenBucketRateLimiter.LIMIT_HEADER));
+            assertEquals(String.valueOf(expected), response.getHeaders().get(TokenBucketRateLimiter.REMAINING_HEADER));
+            assertNull(response.getHeaders().get(HttpHeaders.RETRY_AFTER));
+        }
+        RateLimiter.Response denied = limiter.tryAcquire(ROUTE, "user:1");
+        assertFalse(denied.isAllowed());
+        assertEquals("0", denied.getHeaders().get(TokenBucketRateLimiter.REMAINING_HEADER));
+        assertEquals("1", denied.getHeaders().get(HttpHeaders.RETRY_AFTER));
+    }
+
+    /**
+     * Токены возвращаются со скоростью replenishRate: через секунду - ровно один запрос.
+     */
+    @Test
+    void tryAcquire_RefillsAtReplenishRate() {
+        /*
+            Подготовка.
+         */
+        drain(ROUTE, "user:1", 5);
+        /*
+            Выполнение.
+         */
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(999));
+        RateLimiter.Response early = limiter.tryAcquire(ROUTE, "user:1");
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+        RateLimiter.Response refilled = limiter.tryAcquire(ROUTE, "user:1");
+        RateLimiter.Response next = limiter.tryAcquire(ROUTE, "user:1");
+        /*
+            Проверка.
+         */
+        assertFalse(early.isAllowed());
+        assertTrue(refilled.isAllowed());
+        assertEquals("0", refilled.getHeaders().get(TokenBucketRateLimiter.REMAINING_HEADER));
+        assertFalse(next.isAllowed());
+    }
+
+    /**
+     * За время простоя ведро наполняется, но не больше capacity.
+     */
+    @Test
+    void tryAcquire_RefillCappedAtCapacity() {
+        /*
+            Подготовка.
+         */
+        drain(ROUTE, "user:1", 5);
+        /*
+            Выполнение.
+         */
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(3));
+        RateLimiter.Response partial = limiter.tryAcquire(ROUTE, "user:1");
+        clock.addAndGet(TimeUnit.MINUTES.toNanos(1));
+        RateLimiter.Response full = limiter.tryAcquire(ROUTE, "user:1");
+        /*
+            Проверка.
+         */
+        assertEquals("2", partial.getHeaders().get(TokenBucketRateLimiter.REMAINING_HEADER));
+        assertEquals("4", full.getHeaders().get(TokenBucketRateLimiter.REMAINING_HEADER));
+    }
+
+    /**
+     * Retry-After - в целых секундах с округлением вверх, а не вниз до нуля.
+     */
+    @Test
+    void tryAcquire_RetryAfterRoundedUp() {
+        /*
+            Подготовка.
+         */
+        drain(ROUTE, "user:1", 5);
+        drain("slow", "user:1", 2);
+        /*
+            Выполнение.
+         */
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(900));
+        RateLimiter.Response almost = limiter.tryAcquire(ROUTE, "user:1");    // до токена 0.1 с
+        RateLimiter.Response slow = limiter.tryAcquire("slow", "user:1");     // токен раз в 2.5 с, прошло 0.9 с
+        /*
+            Проверка.
+         */
+        assertFalse(almost.isAllowed());
+        assertEquals("1", almost.getHeaders().get(HttpHeaders.RETRY_AFTER));
+        assertFalse(slow.isAllowed());
+        assertEquals("2", slow.getHeaders().get(HttpHeaders.RETRY_AFTER));
+    }
+
+    /**
+     * Ведра разные для разных клиентов и маршрутов; маршрут без своего лимита берет defaults.
+     */
+    @Test
+    void tryAcquire_SeparateBucketsPerClientAndRoute() {
+        /*
+            Подготовка.
+         */
+        drain(ROUTE, "user:1", 5);
+        /*
+            Выполнение.
+         */
+        RateLimiter.Response other = limiter.tryAcquire(ROUTE, "user:2");
+        RateLimiter.Response otherRoute = limiter.tryAcquire("catalog", "user:1");
+        /*
+            Проверка.
+         */
+        assertTrue(other.isAllowed());
+        assertEquals("4", other.getHeaders().get(TokenBucketRateLimiter.REMAINING_HEADER));
+        assertTrue(otherRoute.isAllowed());
+        assertEquals("20", otherRoute.getHeaders().get(TokenBucketRateLimiter.LIMIT_HEADER));
+        assertEquals("19", otherRoute.getHeaders().get(TokenBucketRateLimiter.REMAINING_HEADER));
+    }
+
+    private void drain(String route, String client, int count) {
+        for (int i = 0; i < count; i++) {
+            assertTrue(limiter.tryAcquire(route, client).isAllowed());
+        }
+    }
+}
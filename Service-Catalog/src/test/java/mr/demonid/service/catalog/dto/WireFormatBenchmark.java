@@ -0,0 +1,100 @@
+package mr.demonid.service.catalog.dto;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+/**
+ * Сравнение JSON и CBOR для каталога товаров (ответ get-all для Web-client):
+ * время кодирования и разбора. Размеры сообщений печатаются перед запуском.
+ * Картинка в ProductInfo - base64-строка, её CBOR не сжимает, поэтому
+ * каталог меряется и с картинками, и без них.
+ * Запуск: main() из IDE или
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=mr.demonid.service.catalog.dto.WireFormatBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WireFormatBenchmark {
+
+    private static final int PRODUCTS = 50;
+    private static final int IMAGE_BYTES = 4096;
+
+    @Param({"json", "cbor"})
+    public String format;
+
+    @Param({"true", "false"})
+    public boolean images;
+
+    private ObjectMapper mapper;
+    private JavaType productsType;
+    private List<ProductInfo> products;
+    private byte[] productsBytes;
+
+    @Setup
+    public void setup() throws Exception {
+        mapper = mapper(format);
+        productsType = mapper.getTypeFactory().constructCollectionType(List.class, ProductInfo.class);
+        products = products(images);
+        productsBytes = mapper.writeValueAsBytes(products);
+    }
+
+    @Benchmark
+    public byte[] encodeProductInfoList() throws Exception {
+        return mapper.writeValueAsBytes(products);
+    }
+
+    @Benchmark
+    public List<ProductInfo> decodeProductInfoList() throws Exception {
+        return mapper.readValue(productsBytes, productsType);
+    }
+
+    public static void main(String[] args) throws Exception {
+        for (String format : new String[] {"json", "cbor"}) {
+            ObjectMapper mapper = mapper(format);
+            System.out.printf("%s: каталог из %d ProductInfo %d байт с картинками, %d байт без картинок%n", format, PRODUCTS,
+                    mapper.writeValueAsBytes(products(true)).length, mapper.writeValueAsBytes(products(false)).length);
+        }
+        new Runner(new OptionsBuilder().include(WireFormatBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    private static ObjectMapper mapper(String format) {
+        // те же настройки, что у конвертеров Spring MVC
+        return "cbor".equals(format) ? Jackson2ObjectMapperBuilder.cbor().build() : Jackson2ObjectMapperBuilder.json().build();
+    }
+
+    private static List<ProductInfo> products(boolean images) {
+        Random random = new Random(42);
+        return LongStream.rangeClosed(1, PRODUCTS)
+                .mapToObj(id -> {
+                    byte[] image = new byte[images ? IMAGE_BYTES : 0];
+                    random.nextBytes(image);
+                    return new ProductInfo(id, "Игра №" + id, new BigDecimal("499.00").add(BigDecimal.valueOf(id)), (int) id % 20,
+                            "Описание игры №" + id + " для PK8000", Base64.getEncoder().encodeToString(image));
+                })
+                .toList();
+    }
+}
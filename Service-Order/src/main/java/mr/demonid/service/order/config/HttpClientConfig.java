@@ -0,0 +1,48 @@
+package mr.demonid.service.order.config;
+
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.DefaultConnectionKeepAliveStrategy;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * HTTP-клиент Feign (Apache HttpClient 5) с общим пулом соединений.
+ * Spring Cloud OpenFeign подхватывает бины CloseableHttpClient и менеджера
+ * соединений вместо своих, так что все Feign-клиенты сервиса ходят через один пул
+ * и переиспользуют соединения вместо установки нового на каждый запрос.
+ * Таймауты соединения и чтения Feign передаёт в каждый запрос сам.
+ */
+@Configuration
+@EnableConfigurationProperties(HttpClientProperties.class)
+public class HttpClientConfig {
+
+    @Bean
+    public PooledConnectionManager pooledConnectionManager(HttpClientProperties properties) {
+        return new PooledConnectionManager(properties);
+    }
+
+    @Bean
+    public CloseableHttpClient feignHttpClient(PooledConnectionManager connectionManager, HttpClientProperties properties) {
+        TimeValue keepAlive = TimeValue.ofMilliseconds(properties.getKeepAlive().toMillis());
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.ofMilliseconds(properties.getConnectionRequestTimeout().toMillis()))
+                        .build())
+                // держим соединение не дольше, чем разрешил сервер, и не дольше своего keep-alive
+                .setKeepAliveStrategy((response, context) -> {
+                    TimeValue server = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                    return TimeValue.isPositive(server) && server.toMilliseconds() < keepAlive.toMilliseconds() ? server : keepAlive;
+                })
+                .evictExpiredConnections()
+                .evictIdleConnections(keepAlive)
+                // повторы делает JitterRetryer и только для идемпотентных запросов
+                .disableAutomaticRetries()
+                .build();
+    }
+}
@@ -0,0 +1,22 @@
+package mr.demonid.service.order.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Настройки пула HTTP-соединений Feign-клиентов (links.http.*).
+ * Таймауты соединения и чтения по-прежнему задаются в spring.cloud.openfeign.client.config.
+ */
+@Data
+@ConfigurationProperties(prefix = "links.http")
+public class HttpClientProperties {
+
+    private int maxTotal = 200;                                         // соединений всего
+    private int maxPerRoute = 50;                                       // соединений на один хост:порт
+    private Duration keepAlive = Duration.ofSeconds(30);                // сколько держать простаивающее соединение
+    private Duration timeToLive = Duration.ofMinutes(5);                // предельный возраст соединения
+    private Duration validateAfterInactivity = Duration.ofSeconds(2);   // проверять соединение после простоя
+    private Duration connectionRequestTimeout = Duration.ofSeconds(1);  // сколько ждать свободное соединение из пула
+}
@@ -0,0 +1,197 @@
+package mr.demonid.service.order.config;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.impl.io.ManagedHttpClientConnectionFactory;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.io.ConnectionEndpoint;
+import org.apache.hc.client5.http.io.HttpClientConnectionManager;
+import org.apache.hc.client5.http.io.LeaseRequest;
+import org.apache.hc.client5.http.ssl.DefaultClientTlsStrategy;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.pool.ConnPoolControl;
+import org.apache.hc.core5.pool.PoolConcurrencyPolicy;
+import org.apache.hc.core5.pool.PoolReusePolicy;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Пул HTTP-соединений Feign-клиентов с метриками.
+ * Кроме заполнения пула считает время ожидания соединения (lease) и количество
+ * открытых соединений: отношение открытых соединений к выдачам из пула показывает,
+ * насколько хорошо соединения переиспользуются.
+ * Свободные соединения выдаются в порядке LIFO, так что при спаде нагрузки лишние
+ * соединения простаивают и закрываются по keep-alive, а не держатся все понемногу.
+ * Сам пул строится штатным PoolingHttpClientConnectionManagerBuilder, а этот класс
+ * только оборачивает его: ConnPoolControl нужен HttpClient для фоновой очистки пула.
+ */
+public class PooledConnectionManager implements HttpClientConnectionManager, ConnPoolControl<HttpRoute>, MeterBinder {
+
+    private final PoolingHttpClientConnectionManager pool;
+    private final AtomicLong created = new AtomicLong();
+    private volatile Timer leaseTimer;
+
+    public PooledConnectionManager(HttpClientProperties properties) {
+        this.pool = PoolingHttpClientConnectionManagerBuilder.create()
+                .setTlsSocketStrategy(DefaultClientTlsStrategy.createDefault())
+                .setPoolConcurrencyPolicy(PoolConcurrencyPolicy.STRICT)
+                .setConnPoolPolicy(PoolReusePolicy.LIFO)
+                .setConnectionFactory(socket -> {
+                    created.incrementAndGet();
+                    return ManagedHttpClientConnectionFactory.INSTANCE.createConnection(socket);
+                })
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setTimeToLive(TimeValue.ofMilliseconds(properties.getTimeToLive().toMillis()))
+                        .setValidateAfterInactivity(TimeValue.ofMilliseconds(properties.getValidateAfterInactivity().toMillis()))
+                        .build())
+                .setMaxConnTotal(properties.getMaxTotal())
+                .setMaxConnPerRoute(properties.getMaxPerRoute())
+                .build();
+    }
+
+    /**
+     * Выдача соединения из пула с замером времени ожидания.
+     */
+    @Override
+    public LeaseRequest lease(String id, HttpRoute route, Timeout requestTimeout, Object state) {
+        LeaseRequest request = pool.lease(id, route, requestTimeout, state);
+        Timer timer = leaseTimer;
+        if (timer == null) {
+            return request;
+        }
+        return new LeaseRequest() {
+            @Override
+            public ConnectionEndpoint get(Timeout timeout) throws InterruptedException, ExecutionException, TimeoutException {
+                long start = System.nanoTime();
+                try {
+                    return request.get(timeout);
+                } finally {
+                    timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                }
+            }
+
+            @Override
+            public boolean cancel() {
+                return request.cancel();
+            }
+        };
+    }
+
+    @Override
+    public void release(ConnectionEndpoint endpoint, Object newState, TimeValue validDuration) {
+        pool.release(endpoint, newState, validDuration);
+    }
+
+    @Override
+    public void connect(ConnectionEndpoint endpoint, TimeValue connectTimeout, HttpContext context) throws IOException {
+        pool.connect(endpoint, connectTimeout, context);
+    }
+
+    @Override
+    public void upgrade(ConnectionEndpoint endpoint, HttpContext context) throws IOException {
+        pool.upgrade(endpoint, context);
+    }
+
+    @Override
+    public void close(CloseMode closeMode) {
+        pool.close(closeMode);
+    }
+
+    @Override
+    public void close() {
+        pool.close();
+    }
+
+    @Override
+    public void closeIdle(TimeValue idleTime) {
+        pool.closeIdle(idleTime);
+    }
+
+    @Override
+    public void closeExpired() {
+        pool.closeExpired();
+    }
+
+    @Override
+    public Set<HttpRoute> getRoutes() {
+        return pool.getRoutes();
+    }
+
+    @Override
+    public void setMaxTotal(int max) {
+        pool.setMaxTotal(max);
+    }
+
+    @Override
+    public int getMaxTotal() {
+        return pool.getMaxTotal();
+    }
+
+    @Override
+    public void setDefaultMaxPerRoute(int max) {
+        pool.setDefaultMaxPerRoute(max);
+    }
+
+    @Override
+    public int getDefaultMaxPerRoute() {
+        return pool.getDefaultMaxPerRoute();
+    }
+
+    @Override
+    public void setMaxPerRoute(HttpRoute route, int max) {
+        pool.setMaxPerRoute(route, max);
+    }
+
+    @Override
+    public int getMaxPerRoute(HttpRoute route) {
+        return pool.getMaxPerRoute(route);
+    }
+
+    @Override
+    public PoolStats getTotalStats() {
+        return pool.getTotalStats();
+    }
+
+    @Override
+    public PoolStats getStats(HttpRoute route) {
+        return pool.getStats(route);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("http.client.pool.connections", this, m -> m.getTotalStats().getLeased())
+                .tag("state", "leased")
+                .description("Connections currently in use")
+                .register(registry);
+        Gauge.builder("http.client.pool.connections", this, m -> m.getTotalStats().getAvailable())
+                .tag("state", "available")
+                .description("Idle connections kept alive in the pool")
+                .register(registry);
+        Gauge.builder("http.client.pool.pending", this, m -> m.getTotalStats().getPending())
+                .description("Requests waiting for a free connection")
+                .register(registry);
+        Gauge.builder("http.client.pool.max", this, m -> m.getTotalStats().getMax())
+                .register(registry);
+        FunctionCounter.builder("http.client.connections.created", created, AtomicLong::get)
+                .description("New connections opened (connection churn)")
+                .register(registry);
+        leaseTimer = Timer.builder("http.client.pool.lease")
+                .description("Time spent waiting for a connection from the pool")
+                .register(registry);
+    }
+}
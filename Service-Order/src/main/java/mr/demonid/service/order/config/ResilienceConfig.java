@@ -0,0 +1,98 @@
+package mr.demonid.service.order.config;
+
+import feign.FeignException;
+import feign.Retryer;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.bulkhead.ThreadPoolBulkheadConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.micrometer.tagged.TaggedBulkheadMetrics;
+import io.github.resilience4j.timelimiter.TimeLimiterConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import mr.demonid.service.order.links.JitterRetryer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cloud.circuitbreaker.resilience4j.Resilience4JCircuitBreakerFactory;
+import org.springframework.cloud.circuitbreaker.resilience4j.Resilience4JConfigBuilder;
+import org.springframework.cloud.circuitbreaker.resilience4j.Resilience4jBulkheadConfigurationBuilder;
+import org.springframework.cloud.circuitbreaker.resilience4j.Resilience4jBulkheadProvider;
+import org.springframework.cloud.client.circuitbreaker.Customizer;
+import org.springframework.cloud.openfeign.CircuitBreakerNameResolver;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Circuit breaker, bulkhead и повторы для Feign-клиентов.
+ * Один circuit breaker и один bulkhead на каждый удалённый сервис, так что
+ * зависание одного сервиса не съедает потоки, нужные для вызова остальных.
+ */
+@Configuration
+@EnableConfigurationProperties(ResilienceProperties.class)
+public class ResilienceConfig {
+
+    /**
+     * Имя circuit breaker = имя Feign-клиента (а не отдельного метода).
+     */
+    @Bean
+    public CircuitBreakerNameResolver circuitBreakerNameResolver() {
+        return (feignClientName, target, method) -> feignClientName;
+    }
+
+    @Bean
+    public Customizer<Resilience4JCircuitBreakerFactory> circuitBreakerCustomizer(ResilienceProperties properties) {
+        return factory -> factory.configureDefault(id -> {
+            ResilienceProperties.Policy policy = properties.forClient(id);
+            return new Resilience4JConfigBuilder(id)
+                    .circuitBreakerConfig(CircuitBreakerConfig.custom()
+                            .failureRateThreshold(policy.getFailureRateThreshold())
+                            .slowCallRateThreshold(policy.getSlowCallRateThreshold())
+                            .slowCallDurationThreshold(policy.getSlowCallDuration())
+                            .slidingWindowSize(policy.getSlidingWindowSize())
+                            .minimumNumberOfCalls(policy.getMinimumNumberOfCalls())
+                            .waitDurationInOpenState(policy.getWaitInOpenState())
+                            .ignoreException(ResilienceConfig::isClientError)
+                            .build())
+                    .timeLimiterConfig(TimeLimiterConfig.custom()
+                            .timeoutDuration(policy.getCallTimeout())
+                            .build())
+                    .build();
+        });
+    }
+
+    @Bean
+    public Customizer<Resilience4jBulkheadProvider> bulkheadCustomizer(ResilienceProperties properties) {
+        return provider -> provider.configureDefault(id -> {
+            ResilienceProperties.Policy policy = properties.forClient(id);
+            return new Resilience4jBulkheadConfigurationBuilder()
+                    .bulkheadConfig(BulkheadConfig.custom()
+                            .maxConcurrentCalls(policy.getMaxConcurrentCalls())
+                            .maxWaitDuration(policy.getMaxWait())
+                            .build())
+                    .threadPoolBulkheadConfig(ThreadPoolBulkheadConfig.ofDefaults())
+                    .build();
+        });
+    }
+
+    @Bean
+    public Retryer feignRetryer(ResilienceProperties properties, MeterRegistry registry) {
+        ResilienceProperties.Retry retry = properties.getRetry();
+        return new JitterRetryer(retry.getMaxAttempts(), retry.getBackoff().toMillis(), retry.getMaxBackoff().toMillis(),
+                registry.counter("feign.client.retries"));
+    }
+
+    /**
+     * Метрики bulkhead (метрики circuit breaker и time limiter регистрирует сам Spring Cloud CircuitBreaker).
+     */
+    @Bean
+    public MeterBinder bulkheadMetrics(ObjectProvider<BulkheadRegistry> bulkheadRegistry) {
+        return registry -> bulkheadRegistry.ifAvailable(e -> TaggedBulkheadMetrics.ofBulkheadRegistry(e).bindTo(registry));
+    }
+
+    /**
+     * Бизнес-ошибки (4xx) - это нормальный ответ сервиса, размыкать из-за них цепь не нужно.
+     */
+    private static boolean isClientError(Throwable e) {
+        return e instanceof FeignException fe && fe.status() >= 400 && fe.status() < 500;
+    }
+}
@@ -8,7 +8,7 @@ import org.springframework.web.bind.annotation.RequestBody;
 
 import java.util.UUID;
 
-@FeignClient(name = "CATALOG-SERVICE")      // имя сервиса, под которым он зарегистрирован в Eureka
+@FeignClient(name = "CATALOG-SERVICE", fallbackFactory = CatalogServiceClientFallback.class)      // имя сервиса, под которым он зарегистрирован в Eureka
 public interface CatalogServiceClient {
 
     @PostMapping("/api/catalog/reserve")
@@ -0,0 +1,11 @@
+package mr.demonid.service.order.links;
+
+import org.springframework.stereotype.Component;
+
+@Component
+public class PaymentServiceClientFallback extends RethrowingFallbackFactory<PaymentServiceClient> {
+
+    public PaymentServiceClientFallback() {
+        super(PaymentServiceClient.class, "PAYMENT-SERVICE");
+    }
+}
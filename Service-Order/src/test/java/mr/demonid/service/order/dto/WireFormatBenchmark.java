@@ -0,0 +1,97 @@
+package mr.demonid.service.order.dto;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение JSON и CBOR для запросов, которые Order-service отправляет
+ * в Payment-service и Catalog-service: время кодирования и разбора.
+ * Размеры сообщений печатаются перед запуском.
+ * Запуск: main() из IDE или
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=mr.demonid.service.order.dto.WireFormatBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WireFormatBenchmark {
+
+    @Param({"json", "cbor"})
+    public String format;
+
+    private ObjectMapper mapper;
+    private PaymentRequest payment;
+    private ProductReservationRequest reservation;
+    private byte[] paymentBytes;
+    private byte[] reservationBytes;
+
+    @Setup
+    public void setup() throws Exception {
+        mapper = mapper(format);
+        payment = payment();
+        reservation = reservation();
+        paymentBytes = mapper.writeValueAsBytes(payment);
+        reservationBytes = mapper.writeValueAsBytes(reservation);
+    }
+
+    @Benchmark
+    public byte[] encodePaymentRequest() throws Exception {
+        return mapper.writeValueAsBytes(payment);
+    }
+
+    @Benchmark
+    public PaymentRequest decodePaymentRequest() throws Exception {
+        return mapper.readValue(paymentBytes, PaymentRequest.class);
+    }
+
+    @Benchmark
+    public byte[] encodeProductReservationRequest() throws Exception {
+        return mapper.writeValueAsBytes(reservation);
+    }
+
+    @Benchmark
+    public ProductReservationRequest decodeProductReservationRequest() throws Exception {
+        return mapper.readValue(reservationBytes, ProductReservationRequest.class);
+    }
+
+    public static void main(String[] args) throws Exception {
+        for (String format : new String[] {"json", "cbor"}) {
+            ObjectMapper mapper = mapper(format);
+            System.out.printf("%s: PaymentRequest %d байт, ProductReservationRequest %d байт%n", format,
+                    mapper.writeValueAsBytes(payment()).length, mapper.writeValueAsBytes(reservation()).length);
+        }
+        new Runner(new OptionsBuilder().include(WireFormatBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    private static ObjectMapper mapper(String format) {
+        // те же настройки, что у конвертеров Spring MVC и CborEncoder
+        return "cbor".equals(format) ? Jackson2ObjectMapperBuilder.cbor().build() : Jackson2ObjectMapperBuilder.json().build();
+    }
+
+    private static PaymentRequest payment() {
+        return new PaymentRequest(UUID.randomUUID(), 12L, 1L, new BigDecimal("1499.90"), "DEBIT");
+    }
+
+    private static ProductReservationRequest reservation() {
+        return new ProductReservationRequest(UUID.randomUUID(), 12L, 1L, 7L, 2, new BigDecimal("749.95"));
+    }
+}
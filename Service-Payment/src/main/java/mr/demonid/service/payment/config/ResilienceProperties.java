@@ -0,0 +1,49 @@
+package mr.demonid.service.payment.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Настройки устойчивости межсервисных вызовов (links.resilience.*).
+ * Политика берётся из clients.<имя Feign-клиента>, а если её там нет - из defaults.
+ * Таймауты соединения и чтения задаются штатно, в spring.cloud.openfeign.client.config.
+ */
+@Data
+@ConfigurationProperties(prefix = "links.resilience")
+public class ResilienceProperties {
+
+    private Policy defaults = new Policy();
+    private Map<String, Policy> clients = new HashMap<>();
+    private Retry retry = new Retry();
+
+    public Policy forClient(String name) {
+        return clients.getOrDefault(name, defaults);
+    }
+
+    @Data
+    public static class Policy {
+        // circuit breaker
+        private float failureRateThreshold = 50;                // % ошибок для размыкания
+        private float slowCallRateThreshold = 80;               // % медленных вызовов для размыкания
+        private Duration slowCallDuration = Duration.ofSeconds(2);
+        private int slidingWindowSize = 20;
+        private int minimumNumberOfCalls = 10;
+        private Duration waitInOpenState = Duration.ofSeconds(10);
+        // общий бюджет времени на вызов, включая повторы
+        private Duration callTimeout = Duration.ofSeconds(5);
+        // семафорный bulkhead: сколько потоков могут одновременно ждать этот сервис
+        private int maxConcurrentCalls = 20;
+        private Duration maxWait = Duration.ZERO;
+    }
+
+    @Data
+    public static class Retry {
+        private int maxAttempts = 3;                            // включая первую попытку
+        private Duration backoff = Duration.ofMillis(50);
+        private Duration maxBackoff = Duration.ofMillis(500);
+    }
+}
@@ -0,0 +1,41 @@
+package mr.demonid.service.payment.config;
+
+import feign.RequestInterceptor;
+import feign.codec.Encoder;
+import mr.demonid.service.payment.links.CborEncoder;
+import org.springframework.beans.factory.ObjectFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.http.HttpMessageConverters;
+import org.springframework.cloud.openfeign.support.SpringEncoder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * Бинарный формат (CBOR) для межсервисных вызовов Feign (links.wire-format=cbor).
+ * Тела запросов кодируются в CBOR, а в Accept CBOR идет первым, с JSON как запасным
+ * вариантом: сервис без CBOR-конвертера просто ответит JSON, а ответ Feign разберет
+ * по Content-Type штатными конвертерами. Строковые ответы (тексты ошибок)
+ * остаются текстом при любом Accept.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "links", name = "wire-format", havingValue = "cbor")
+public class WireFormatConfig {
+
+    private static final String ACCEPT = "application/cbor, application/json;q=0.9";
+
+    @Bean
+    public Encoder feignEncoder(ObjectFactory<HttpMessageConverters> messageConverters) {
+        return new CborEncoder(Jackson2ObjectMapperBuilder.cbor().build(), new SpringEncoder(messageConverters));
+    }
+
+    @Bean
+    public RequestInterceptor cborAcceptInterceptor() {
+        return template -> {
+            if (!template.headers().containsKey(HttpHeaders.ACCEPT)) {
+                template.header(HttpHeaders.ACCEPT, ACCEPT);
+            }
+        };
+    }
+}
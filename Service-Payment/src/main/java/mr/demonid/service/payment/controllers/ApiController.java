@@ -2,6 +2,7 @@ package mr.demonid.service.payment.controllers;
 
 import lombok.AllArgsConstructor;
 import mr.demonid.service.payment.dto.PaymentRequest;
+import mr.demonid.service.payment.services.BalanceCache;
 import mr.demonid.service.payment.services.PaymentService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -9,12 +10,15 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.List;
+
 @AllArgsConstructor
 @RestController
 @RequestMapping("/api/payment")
 public class ApiController {
 
     PaymentService paymentService;
+    BalanceCache balanceCache;
 
     /**
      * Транзакция средств от пользователя в магазин.
@@ -27,4 +31,14 @@ public class ApiController {
         paymentService.transfer(request);
         return ResponseEntity.ok().build();
     }
+
+    /**
+     * Инвалидация кэша балансов. Вызывается USER-SERVICE после изменения счетов.
+     * @param userIds Пользователи, чьи балансы изменились.
+     */
+    @PostMapping("/balance-cache/invalidate")
+    public ResponseEntity<Void> invalidateBalances(@RequestBody List<Long> userIds) {
+        balanceCache.invalidateAll(userIds);
+        return ResponseEntity.ok().build();
+    }
 }
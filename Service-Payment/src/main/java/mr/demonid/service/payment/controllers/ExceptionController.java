@@ -1,10 +1,9 @@
 package mr.demonid.service.payment.controllers;
 
 import lombok.AllArgsConstructor;
-import mr.demonid.service.payment.domain.Payment;
 import mr.demonid.service.payment.exceptions.PaymentException;
 import mr.demonid.service.payment.exceptions.ThrowedPaymentException;
-import mr.demonid.service.payment.repository.PaymentRepository;
+import mr.demonid.service.payment.services.PaymentStatusWriter;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
@@ -16,17 +15,13 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 public class ExceptionController {
 
-    private PaymentRepository paymentRepository;
+    private PaymentStatusWriter paymentStatusWriter;
 
     @ExceptionHandler(PaymentException.class)
     @ResponseStatus(HttpStatus.NOT_FOUND)
     public String catalogException(PaymentException e) {
-        // обновляем статус операции
-        Payment payment = paymentRepository.findById(e.getOrderId()).orElse(null);
-        if (payment != null) {
-            payment.setStatus("FAILED: " + e.getMessage());
-            paymentRepository.save(payment);
-        }
+        // обновляем статус операции в фоне, не задерживая ответ
+        paymentStatusWriter.publish(e.getOrderId(), "FAILED: " + e.getMessage());
         // возвращаем ошибку
         if (e instanceof ThrowedPaymentException) {
             return e.getMessage();
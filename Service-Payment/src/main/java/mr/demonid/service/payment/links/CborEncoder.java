@@ -0,0 +1,44 @@
+package mr.demonid.service.payment.links;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import feign.RequestTemplate;
+import feign.codec.EncodeException;
+import feign.codec.Encoder;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+
+import java.lang.reflect.Type;
+
+/**
+ * Кодирует тела запросов Feign в CBOR (бинарный JSON) вместо текстового JSON.
+ * Строки и массивы байт отдаются штатному кодировщику как есть.
+ * Принимающие сервисы разбирают CBOR стандартным конвертером Spring MVC,
+ * а внешним клиентам по-прежнему доступен JSON.
+ */
+public class CborEncoder implements Encoder {
+
+    private final ObjectMapper mapper;
+    private final Encoder delegate;
+
+    public CborEncoder(ObjectMapper cborMapper, Encoder delegate) {
+        this.mapper = cborMapper;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void encode(Object object, Type bodyType, RequestTemplate template) throws EncodeException {
+        if (object == null || object instanceof String || object instanceof byte[]) {
+            delegate.encode(object, bodyType, template);
+            return;
+        }
+        try {
+            byte[] body = mapper.writerFor(mapper.constructType(bodyType)).writeValueAsBytes(object);
+            template.removeHeader(HttpHeaders.CONTENT_TYPE);
+            template.header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_CBOR_VALUE);
+            template.body(body, null);
+        } catch (JsonProcessingException e) {
+            throw new EncodeException("Не удалось закодировать " + bodyType + " в CBOR", e);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package mr.demonid.service.payment.links;
+
+import feign.Request;
+import feign.RetryableException;
+import feign.Retryer;
+import io.micrometer.core.instrument.Counter;
+
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Повтор запросов Feign с экспоненциальной задержкой и случайным разбросом (full jitter),
+ * чтобы клиенты не били по восстанавливающемуся сервису одновременно.
+ * Повторяются только идемпотентные запросы: повтор POST-перевода на таймауте
+ * мог бы списать деньги дважды.
+ */
+public class JitterRetryer implements Retryer {
+
+    private static final Set<Request.HttpMethod> IDEMPOTENT = Set.of(
+            Request.HttpMethod.GET, Request.HttpMethod.HEAD, Request.HttpMethod.OPTIONS);
+
+    private final int maxAttempts;
+    private final long backoff;
+    private final long maxBackoff;
+    private final Counter retries;      // может быть null
+    private int attempt;
+
+    /**
+     * @param maxAttempts Общее число попыток, включая первую.
+     * @param backoff     Базовая задержка перед повтором, мс.
+     * @param maxBackoff  Верхняя граница задержки, мс.
+     * @param retries     Счётчик повторов для метрик (может быть null).
+     */
+    public JitterRetryer(int maxAttempts, long backoff, long maxBackoff, Counter retries) {
+        this.maxAttempts = maxAttempts;
+        this.backoff = backoff;
+        this.maxBackoff = maxBackoff;
+        this.retries = retries;
+        this.attempt = 1;
+    }
+
+    @Override
+    public void continueOrPropagate(RetryableException e) {
+        if (!IDEMPOTENT.contains(e.method()) || attempt >= maxAttempts) {
+            throw e;
+        }
+        long ceiling = Math.min(maxBackoff, backoff << Math.min(attempt - 1, 20));
+        attempt++;
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw e;
+        }
+        if (retries != null) {
+            retries.increment();
+        }
+    }
+
+    @Override
+    public Retryer clone() {
+        return new JitterRetryer(maxAttempts, backoff, maxBackoff, retries);
+    }
+}
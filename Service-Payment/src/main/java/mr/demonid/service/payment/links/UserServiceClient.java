@@ -10,7 +10,7 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 
 
-@FeignClient(name = "USER-SERVICE")
+@FeignClient(name = "USER-SERVICE", fallbackFactory = UserServiceClientFallback.class)
 public interface UserServiceClient {
 
     /**
@@ -0,0 +1,11 @@
+package mr.demonid.service.payment.links;
+
+import org.springframework.stereotype.Component;
+
+@Component
+public class UserServiceClientFallback extends RethrowingFallbackFactory<UserServiceClient> {
+
+    public UserServiceClientFallback() {
+        super(UserServiceClient.class, "USER-SERVICE");
+    }
+}
@@ -0,0 +1,91 @@
+package mr.demonid.service.payment.services;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import mr.demonid.service.payment.dto.UserPayInfo;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Локальный кэш балансов пользователей для предварительной проверки платежа.
+ * Запись живёт не дольше TTL, а USER-SERVICE присылает инвалидацию после каждого
+ * изменения счёта. Кэш используется только для проверки, само списание всегда
+ * выполняет USER-SERVICE, так что устаревшая запись не может привести к уходу в минус.
+ */
+@Service
+public class BalanceCache implements MeterBinder {
+
+    private final long ttlNanos;
+    private final int maxSize;
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public BalanceCache(@Value("${payment.balance-cache.ttl:30s}") Duration ttl,
+                        @Value("${payment.balance-cache.max-size:10000}") int maxSize) {
+        this.ttlNanos = ttl.toNanos();
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Возвращает баланс из кэша, или null, если его там нет (или запись устарела).
+     */
+    public UserPayInfo get(Long userId) {
+        Entry entry = entries.get(userId);
+        if (entry == null || System.nanoTime() - entry.created() > ttlNanos) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.info();
+    }
+
+    public void put(Long userId, UserPayInfo info) {
+        if (info == null) {
+            return;
+        }
+        if (entries.size() >= maxSize && !entries.containsKey(userId)) {
+            evictExpired();
+            if (entries.size() >= maxSize) {
+                return;                 // кэш полон - просто не кэшируем
+            }
+        }
+        entries.put(userId, new Entry(info, System.nanoTime()));
+    }
+
+    public void invalidate(Long userId) {
+        if (entries.remove(userId) != null) {
+            invalidations.incrementAndGet();
+        }
+    }
+
+    public void invalidateAll(Collection<Long> userIds) {
+        userIds.forEach(this::invalidate);
+    }
+
+    private void evictExpired() {
+        long now = System.nanoTime();
+        entries.values().removeIf(e -> now - e.created() > ttlNanos);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("payment.balance-cache.size", entries, Map::size).register(registry);
+        FunctionCounter.builder("payment.balance-cache.requests", hits, AtomicLong::get).tag("result", "hit").register(registry);
+        FunctionCounter.builder("payment.balance-cache.requests", misses, AtomicLong::get).tag("result", "miss").register(registry);
+        FunctionCounter.builder("payment.balance-cache.invalidations", invalidations, AtomicLong::get).register(registry);
+    }
+
+    private record Entry(UserPayInfo info, long created) {
+    }
+}
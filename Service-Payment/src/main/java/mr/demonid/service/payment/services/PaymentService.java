@@ -22,6 +22,8 @@ public class PaymentService {
 
     private PaymentRepository paymentRepository;
 
+    private BalanceCache balanceCache;
+
     /**
      * Проверка возможности трансфера средств.
      */
@@ -37,8 +39,17 @@ public class PaymentService {
                     "Pending");
             paymentRepository.save(payment);
 
-            // запрашиваем данные о клиенте
-            UserPayInfo user = userServiceClient.getAccount(request.getFromUserId()).getBody();
+            // запрашиваем данные о клиенте, по возможности из кэша
+            UserPayInfo user = balanceCache.get(request.getFromUserId());
+            boolean cached = user != null;
+            if (!cached) {
+                user = loadAccount(request.getFromUserId());
+            }
+            if (cached && user.getBalance().compareTo(request.getTransferAmount()) < 0) {
+                // не отказываем по устаревшим данным, перепроверяем у USER-SERVICE
+                balanceCache.invalidate(request.getFromUserId());
+                user = loadAccount(request.getFromUserId());
+            }
             BigDecimal userBalance = user.getBalance();
             if (userBalance.compareTo(request.getTransferAmount()) < 0) {
                 throw new NotEnoughAmountException(request.getOrderId());
@@ -59,6 +70,8 @@ public class PaymentService {
     public void transfer(PaymentRequest request) throws PaymentException {
         try {
             userServiceClient.transaction(request);
+            // баланс изменился, не ждём инвалидации от USER-SERVICE
+            balanceCache.invalidate(request.getFromUserId());
             // обновляем статус операции на завершенный
             Optional<Payment> payment = paymentRepository.findById(request.getOrderId());
             if (payment.isPresent()) {
@@ -70,4 +83,13 @@ public class PaymentService {
             throw new ThrowedPaymentException(request.getOrderId(), e.contentUTF8());
         }
     }
+
+    /**
+     * Запрашивает счёт пользователя у USER-SERVICE и кладёт его в кэш.
+     */
+    private UserPayInfo loadAccount(Long userId) {
+        UserPayInfo user = userServiceClient.getAccount(userId).getBody();
+        balanceCache.put(userId, user);
+        return user;
+    }
 }
@@ -0,0 +1,155 @@
+package mr.demonid.service.payment.services;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import mr.demonid.service.payment.domain.Payment;
+import mr.demonid.service.payment.repository.PaymentRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Фоновая запись статусов платежей.
+ * Обработчик ошибок только кладёт обновление в ограниченную очередь и сразу
+ * отвечает клиенту, а отдельный поток выбирает накопившиеся обновления
+ * и пишет их в БД пачками: один SELECT ... IN и один saveAll() на пачку.
+ * При переполнении очереди обновление отбрасывается (и учитывается в метриках),
+ * чтобы всплеск ошибок не превратился в ещё и всплеск нагрузки на БД.
+ */
+@Service
+public class PaymentStatusWriter implements MeterBinder {
+
+    private final PaymentRepository paymentRepository;
+    private final BlockingQueue<StatusUpdate> queue;
+    private final int batchSize;
+
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+
+    private volatile boolean running;
+    private Thread worker;
+
+    public PaymentStatusWriter(PaymentRepository paymentRepository,
+                               @Value("${payment.status-writer.capacity:10000}") int capacity,
+                               @Value("${payment.status-writer.batch-size:200}") int batchSize) {
+        this.paymentRepository = paymentRepository;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Ставит обновление статуса в очередь. Никогда не блокирует вызывающий поток.
+     * @return false, если очередь переполнена и обновление отброшено.
+     */
+    public boolean publish(UUID orderId, String status) {
+        if (orderId == null) {
+            return false;
+        }
+        if (!queue.offer(new StatusUpdate(orderId, status))) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        worker = new Thread(this::run, "payment-status-writer");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        worker.interrupt();
+        worker.join(TimeUnit.SECONDS.toMillis(5));
+        // дописываем то, что успело накопиться
+        flush();
+    }
+
+    /**
+     * Записывает в БД всё, что сейчас есть в очереди.
+     */
+    public void flush() {
+        List<StatusUpdate> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    private void run() {
+        List<StatusUpdate> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                // ждём первое обновление, остальные забираем без ожидания
+                StatusUpdate first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                System.out.println("PaymentStatusWriter: ошибка записи статусов: " + e.getMessage());
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<StatusUpdate> batch) {
+        // для одного заказа оставляем только последний статус
+        Map<UUID, String> statuses = new LinkedHashMap<>();
+        batch.forEach(e -> statuses.put(e.orderId(), e.status()));
+
+        List<Payment> payments = paymentRepository.findAllById(statuses.keySet());
+        payments.forEach(p -> p.setStatus(statuses.get(p.getOrderId())));
+        paymentRepository.saveAll(payments);
+        written.addAndGet(payments.size());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("payment.status-writer.queue.depth", queue, BlockingQueue::size)
+                .description("Number of payment status updates waiting to be written")
+                .register(registry);
+        Gauge.builder("payment.status-writer.queue.capacity", queue, q -> q.size() + q.remainingCapacity())
+                .register(registry);
+        FunctionCounter.builder("payment.status-writer.dropped", dropped, AtomicLong::get)
+                .description("Status updates dropped because the queue was full")
+                .register(registry);
+        FunctionCounter.builder("payment.status-writer.written", written, AtomicLong::get)
+                .description("Payment status updates written to the database")
+                .register(registry);
+    }
+
+    private record StatusUpdate(UUID orderId, String status) {
+    }
+}
@@ -0,0 +1,108 @@
+package mr.demonid.service.payment.dto;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+/**
+ * Сравнение JSON и CBOR для сообщений Payment-service: перевода, который
+ * приходит из Order-service и уходит в User-service, и пакета реквизитов
+ * UserPayInfo из User-service: время кодирования и разбора.
+ * Размеры сообщений печатаются перед запуском.
+ * Запуск: main() из IDE или
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=mr.demonid.service.payment.dto.WireFormatBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WireFormatBenchmark {
+
+    private static final int BATCH_SIZE = 100;       // как MAX_PAGE_SIZE пакетного запроса реквизитов
+
+    @Param({"json", "cbor"})
+    public String format;
+
+    private ObjectMapper mapper;
+    private JavaType accountsType;
+    private PaymentRequest payment;
+    private List<UserPayInfo> accounts;
+    private byte[] paymentBytes;
+    private byte[] accountsBytes;
+
+    @Setup
+    public void setup() throws Exception {
+        mapper = mapper(format);
+        accountsType = mapper.getTypeFactory().constructCollectionType(List.class, UserPayInfo.class);
+        payment = payment();
+        accounts = accounts();
+        paymentBytes = mapper.writeValueAsBytes(payment);
+        accountsBytes = mapper.writeValueAsBytes(accounts);
+    }
+
+    @Benchmark
+    public byte[] encodePaymentRequest() throws Exception {
+        return mapper.writeValueAsBytes(payment);
+    }
+
+    @Benchmark
+    public PaymentRequest decodePaymentRequest() throws Exception {
+        return mapper.readValue(paymentBytes, PaymentRequest.class);
+    }
+
+    @Benchmark
+    public byte[] encodeUserPayInfoBatch() throws Exception {
+        return mapper.writeValueAsBytes(accounts);
+    }
+
+    @Benchmark
+    public List<UserPayInfo> decodeUserPayInfoBatch() throws Exception {
+        return mapper.readValue(accountsBytes, accountsType);
+    }
+
+    public static void main(String[] args) throws Exception {
+        for (String format : new String[] {"json", "cbor"}) {
+            ObjectMapper mapper = mapper(format);
+            System.out.printf("%s: PaymentRequest %d байт, UserPayInfo %d байт, пакет из %d UserPayInfo %d байт%n", format,
+                    mapper.writeValueAsBytes(payment()).length, mapper.writeValueAsBytes(accounts().get(0)).length,
+                    BATCH_SIZE, mapper.writeValueAsBytes(accounts()).length);
+        }
+        new Runner(new OptionsBuilder().include(WireFormatBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    private static ObjectMapper mapper(String format) {
+        // те же настройки, что у конвертеров Spring MVC и CborEncoder
+        return "cbor".equals(format) ? Jackson2ObjectMapperBuilder.cbor().build() : Jackson2ObjectMapperBuilder.json().build();
+    }
+
+    private static PaymentRequest payment() {
+        return new PaymentRequest(UUID.randomUUID(), 12L, 1L, new BigDecimal("1499.90"), "DEBIT");
+    }
+
+    private static List<UserPayInfo> accounts() {
+        return LongStream.rangeClosed(1, BATCH_SIZE)
+                .mapToObj(id -> new UserPayInfo(id, 1000 + id, new BigDecimal("25000.00").add(BigDecimal.valueOf(id, 2))))
+                .toList();
+    }
+}
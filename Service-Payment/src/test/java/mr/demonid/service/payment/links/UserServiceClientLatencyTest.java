@@ -0,0 +1,104 @@
+package mr.demonid.service.payment.links;
+
+import com.sun.net.httpserver.HttpServer;
+import feign.Feign;
+import feign.Request;
+import feign.RetryableException;
+import mr.demonid.service.payment.dto.PaymentRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.http.HttpMessageConverters;
+import org.springframework.cloud.openfeign.support.SpringEncoder;
+import org.springframework.cloud.openfeign.support.SpringMvcContract;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Проверка таймаутов и повторов Feign-клиента на локальной заглушке,
+ * которая отвечает с заданной задержкой.
+ */
+public class UserServiceClientLatencyTest {
+
+    private static final int STUB_DELAY_MS = 1000;      // заглушка "подвисает" на секунду
+    private static final int READ_TIMEOUT_MS = 200;
+    private static final int MAX_ATTEMPTS = 3;
+
+    private HttpServer stub;
+    private final AtomicInteger hits = new AtomicInteger();
+    private UserServiceClient client;
+
+    /**
+     * Поднимаем заглушку USER-SERVICE и строим к ней Feign-клиент с нашими таймаутами и повторами.
+     */
+    @BeforeEach
+    public void setup() throws Exception {
+        stub = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        stub.setExecutor(Executors.newCachedThreadPool());
+        stub.createContext("/", exchange -> {
+            hits.incrementAndGet();
+            try {
+                Thread.sleep(STUB_DELAY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = "{}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        stub.start();
+
+        HttpMessageConverters converters = new HttpMessageConverters(new MappingJackson2HttpMessageConverter());
+        client = Feign.builder()
+                .contract(new SpringMvcContract())
+                .encoder(new SpringEncoder(() -> converters))
+                .options(new Request.Options(200, TimeUnit.MILLISECONDS, READ_TIMEOUT_MS, TimeUnit.MILLISECONDS, true))
+                .retryer(new JitterRetryer(MAX_ATTEMPTS, 10, 50, null))
+                .target(UserServiceClient.class, "http://localhost:" + stub.getAddress().getPort());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        stub.stop(0);
+    }
+
+    /**
+     * Медленный GET обрывается по таймауту чтения и повторяется заданное число раз.
+     */
+    @Test
+    public void testSlowGet_TimesOutAndRetries() {
+        long start = System.nanoTime();
+
+        assertThrows(RetryableException.class, () -> client.getAccount(1L));
+
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertEquals(MAX_ATTEMPTS, hits.get());
+        // ждём не задержку заглушки, а только таймауты (плюс небольшие паузы между попытками)
+        assertTrue(elapsedMs < STUB_DELAY_MS * MAX_ATTEMPTS, "elapsed " + elapsedMs + " ms");
+    }
+
+    /**
+     * Перевод средств (POST) при таймауте не повторяется, чтобы не списать деньги дважды.
+     */
+    @Test
+    public void testSlowPost_IsNotRetried() {
+        PaymentRequest request = new PaymentRequest(UUID.randomUUID(), 1L, 2L, BigDecimal.TEN, "DEBIT");
+
+        assertThrows(RetryableException.class, () -> client.transaction(request));
+
+        assertEquals(1, hits.get());
+    }
+}
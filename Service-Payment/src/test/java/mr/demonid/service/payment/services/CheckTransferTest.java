@@ -12,10 +12,12 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.ResponseEntity;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -36,6 +38,9 @@ public class CheckTransferTest {
     @Mock
     private PaymentRepository paymentRepository;
 
+    @Spy
+    private BalanceCache balanceCache = new BalanceCache(Duration.ofSeconds(30), 100);
+
     @InjectMocks
     private PaymentService paymentService; // Сервис, где находятся checkTransfer() и transfer()
 
@@ -104,4 +109,24 @@ public class CheckTransferTest {
          */
         assertThrows(NotFoundException.class, () -> paymentService.checkTransfer(paymentRequest));
     }
+
+    /**
+     * Повторная проверка того же пользователя берёт баланс из кэша, без обращения к USER-SERVICE.
+     */
+    @Test
+    public void testCheckTransfer_RepeatBuyerHitsCache() {
+        /*
+            Подготовка.
+         */
+        when(userServiceClient.getAccount(paymentRequest.getFromUserId())).thenReturn(ResponseEntity.ok(userPayInfo));
+        /*
+            Выполнение.
+         */
+        assertDoesNotThrow(() -> paymentService.checkTransfer(paymentRequest));
+        assertDoesNotThrow(() -> paymentService.checkTransfer(paymentRequest));
+        /*
+            Проверка. USER-SERVICE опрошен только один раз.
+         */
+        verify(userServiceClient, times(1)).getAccount(paymentRequest.getFromUserId());
+    }
 }
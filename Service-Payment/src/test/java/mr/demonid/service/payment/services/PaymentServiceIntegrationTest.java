@@ -16,6 +16,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.test.context.ActiveProfiles;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.Optional;
 import java.util.UUID;
@@ -56,8 +57,13 @@ public class PaymentServiceIntegrationTest {
         }
 
         @Bean
-        public PaymentService paymentService(UserServiceClient userServiceClient, PaymentRepository paymentRepository) {
-            return new PaymentService(userServiceClient, paymentRepository);
+        public BalanceCache balanceCache() {
+            return new BalanceCache(Duration.ofSeconds(30), 100);
+        }
+
+        @Bean
+        public PaymentService paymentService(UserServiceClient userServiceClient, PaymentRepository paymentRepository, BalanceCache balanceCache) {
+            return new PaymentService(userServiceClient, paymentRepository, balanceCache);
         }
     }
 
@@ -0,0 +1,76 @@
+package mr.demonid.service.payment.services;
+
+import mr.demonid.service.payment.domain.Payment;
+import mr.demonid.service.payment.repository.PaymentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class PaymentStatusWriterTest {
+
+    @Mock
+    private PaymentRepository paymentRepository;
+
+    private PaymentStatusWriter writer;
+
+    /**
+     * Подготавливаем данные для каждого тестового метода.
+     * Фоновый поток не запускаем, запись выполняем явно через flush().
+     */
+    @BeforeEach
+    public void setup() {
+        writer = new PaymentStatusWriter(paymentRepository, 2, 10);
+    }
+
+    /**
+     * Обновления пишутся одной пачкой, для заказа остаётся последний статус.
+     */
+    @Test
+    public void testFlush_WritesLastStatusInOneBatch() {
+        /*
+            Подготовка.
+         */
+        UUID orderId = UUID.randomUUID();
+        Payment payment = new Payment(orderId, 1L, 2L, BigDecimal.TEN, "DEBIT", LocalDateTime.now(), "Pending");
+        when(paymentRepository.findAllById(anyIterable())).thenReturn(List.of(payment));
+        /*
+            Выполнение.
+         */
+        assertTrue(writer.publish(orderId, "FAILED: first"));
+        assertTrue(writer.publish(orderId, "FAILED: second"));
+        writer.flush();
+        /*
+            Проверка.
+         */
+        assertEquals("FAILED: second", payment.getStatus());
+        verify(paymentRepository, times(1)).findAllById(anyIterable());
+        verify(paymentRepository, times(1)).saveAll(List.of(payment));
+        assertEquals(0, writer.getQueueDepth());
+    }
+
+    /**
+     * При переполнении очереди обновление отбрасывается, а не блокирует поток.
+     */
+    @Test
+    public void testPublish_DropsWhenQueueIsFull() {
+        assertTrue(writer.publish(UUID.randomUUID(), "FAILED"));
+        assertTrue(writer.publish(UUID.randomUUID(), "FAILED"));
+        assertFalse(writer.publish(UUID.randomUUID(), "FAILED"));
+
+        assertEquals(2, writer.getQueueDepth());
+        assertEquals(1, writer.getDropped());
+        verifyNoInteractions(paymentRepository);
+    }
+}
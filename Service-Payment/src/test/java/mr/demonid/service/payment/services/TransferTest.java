@@ -13,11 +13,13 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.ResponseEntity;
 
 import java.math.BigDecimal;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
 
@@ -37,6 +39,9 @@ public class TransferTest {
     @Mock
     private PaymentRepository paymentRepository;
 
+    @Spy
+    private BalanceCache balanceCache = new BalanceCache(Duration.ofSeconds(30), 100);
+
     @InjectMocks
     private PaymentService paymentService; // Сервис, где находятся checkTransfer() и transfer()
 
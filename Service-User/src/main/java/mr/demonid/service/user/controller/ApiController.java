@@ -1,18 +1,29 @@
 package mr.demonid.service.user.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.AllArgsConstructor;
-import mr.demonid.service.user.domain.Account;
 import mr.demonid.service.user.domain.Role;
+import mr.demonid.service.user.domain.TransferHistory;
 import mr.demonid.service.user.domain.User;
+import mr.demonid.service.user.dto.BatchTransferRequest;
 import mr.demonid.service.user.dto.PaymentRequest;
+import mr.demonid.service.user.dto.TransferResult;
 import mr.demonid.service.user.dto.UserInfo;
 import mr.demonid.service.user.dto.UserPayInfo;
+import mr.demonid.service.user.dto.UserSummary;
 import mr.demonid.service.user.services.RoleService;
+import mr.demonid.service.user.services.StripedAccountService;
+import mr.demonid.service.user.services.TransferJournal;
 import mr.demonid.service.user.services.TransferService;
 import mr.demonid.service.user.services.UserService;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -21,9 +32,14 @@ import java.util.List;
 @RequestMapping("/api/user")
 public class ApiController {
 
+    private static final int MAX_PAGE_SIZE = 1000;
+
     private UserService userService;
     private RoleService roleService;
     private TransferService transferService;
+    private StripedAccountService stripedAccountService;
+    private ObjectMapper objectMapper;
+    private TransferJournal transferJournal;
 
 
     /**
@@ -32,8 +48,22 @@ public class ApiController {
      */
     @GetMapping("/account/{id}")
     public ResponseEntity<UserPayInfo> getAccount(@PathVariable Long id){
-        Account account = userService.getUserAccount(id);
-        return ResponseEntity.ok(new UserPayInfo(id, account.getId(), account.getAmount()));
+        UserSummary summary = userService.getUserSummary(id);
+        return ResponseEntity.ok(new UserPayInfo(id, summary.getAccountId(), summary.getBalance()));
+    }
+
+    /**
+     * Балансы счетов нескольких пользователей одним запросом.
+     * @param ids Пользователи (не больше MAX_PAGE_SIZE); неизвестные в ответ не попадают.
+     */
+    @PostMapping("/account/batch")
+    public ResponseEntity<List<UserPayInfo>> getAccounts(@RequestBody List<Long> ids) {
+        if (ids.size() > MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(userService.getUserSummaries(ids).stream()
+                .map(s -> new UserPayInfo(s.getUserId(), s.getAccountId(), s.getBalance()))
+                .toList());
     }
 
     /**
@@ -46,22 +76,113 @@ public class ApiController {
         return ResponseEntity.ok().build();
     }
 
+    /**
+     * Пакет переводов одним запросом и одной транзакцией.
+     * @param batch Переводы и режим: atomic - все или ни одного (иначе 409 с результатами),
+     *              без atomic - каждый перевод выполняется или отклоняется сам по себе.
+     * @return Результат по каждому переводу, в порядке запроса.
+     */
+    @PostMapping("account/transactions")
+    public ResponseEntity<List<TransferResult>> transactions(@RequestBody BatchTransferRequest batch) {
+        List<PaymentRequest> transfers = batch.getTransfers() == null ? List.of() : batch.getTransfers();
+        if (transfers.size() > MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(transferService.transferAll(transfers, batch.isAtomic()));
+    }
+
+    /**
+     * История переводов пользователя, от новых к старым.
+     * @param userId Пользователь.
+     * @param before Id последней записи предыдущей страницы, для первой страницы не задается.
+     * @param limit  Размер страницы, не больше MAX_PAGE_SIZE.
+     */
+    @GetMapping("/history/{userId}")
+    public ResponseEntity<List<TransferHistory>> getHistory(@PathVariable Long userId,
+                                                            @RequestParam(required = false) Long before,
+                                                            @RequestParam(defaultValue = "20") int limit) {
+        int size = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        return ResponseEntity.ok(transferJournal.getHistory(userId, before, size));
+    }
+
+    /**
+     * Разбивает баланс счёта на полосы (для "горячих" счетов).
+     * @param id    Счет.
+     * @param count Количество полос, 0 - отключить разбиение.
+     */
+    @PostMapping("/account/{id}/stripes")
+    public ResponseEntity<Void> setStripes(@PathVariable Long id, @RequestParam int count) {
+        stripedAccountService.setStripes(id, count);
+        return ResponseEntity.ok().build();
+    }
+
 
     @GetMapping("/get-all-users")
     public ResponseEntity<List<UserInfo>> getAllUsersInfo(){
         try {
-            List<User> users = userService.getAllUsers();
-            List<UserInfo> res = users.stream().map(e -> new UserInfo(e.getId(), e.getUsername(), e.getPaymentAccount().getAmount())).toList();
+            List<UserInfo> res = new ArrayList<>();
+            userService.forEachUsersInfo(MAX_PAGE_SIZE, res::addAll);
             return ResponseEntity.ok(res);
         } catch (Exception e) {
             return ResponseEntity.ok().body(new ArrayList<>());
         }
     }
 
+    /**
+     * Постраничный список пользователей (по возрастанию id).
+     * @param after Id последнего пользователя предыдущей страницы, для первой страницы - 0.
+     * @param limit Размер страницы, не больше MAX_PAGE_SIZE.
+     */
+    @GetMapping("/users")
+    public ResponseEntity<List<UserInfo>> getUsersPage(@RequestParam(defaultValue = "0") Long after,
+                                                       @RequestParam(defaultValue = "100") int limit) {
+        int size = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        return ResponseEntity.ok(userService.getUsersInfo(after, size));
+    }
+
+    /**
+     * Выгрузка всех пользователей одним JSON-массивом.
+     * Массив пишется в ответ по мере чтения страниц, поэтому память
+     * не зависит от количества пользователей.
+     */
+    @GetMapping(value = "/users/export", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportUsers() {
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+                generator.writeStartArray();
+                userService.forEachUsersInfo(MAX_PAGE_SIZE, page -> {
+                    try {
+                        for (UserInfo info : page) {
+                            generator.writeObject(info);
+                        }
+                        generator.flush();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                generator.writeEndArray();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    /**
+     * Краткая информация о нескольких пользователях одним запросом.
+     * @param ids Пользователи (не больше MAX_PAGE_SIZE); неизвестные в ответ не попадают.
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<List<UserInfo>> getUsers(@RequestBody List<Long> ids) {
+        if (ids.size() > MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(userService.getUserSummaries(ids).stream()
+                .map(s -> new UserInfo(s.getUserId(), s.getUsername(), s.getBalance()))
+                .toList());
+    }
+
     @GetMapping("get-user/{id}")
     public ResponseEntity<UserInfo> getUser(@PathVariable Long id){
-        User user = userService.getUserById(id);
-        return ResponseEntity.ok(new UserInfo(user.getId(), user.getUsername(), user.getPaymentAccount().getAmount()));
+        return ResponseEntity.ok(userService.getUserInfo(id));
     }
 
     /**
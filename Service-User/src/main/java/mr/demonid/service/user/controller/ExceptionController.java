@@ -1,5 +1,7 @@
 package mr.demonid.service.user.controller;
 
+import mr.demonid.service.user.dto.TransferResult;
+import mr.demonid.service.user.exceptions.BatchTransferException;
 import mr.demonid.service.user.exceptions.UserException;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -7,6 +9,7 @@ import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 @RestControllerAdvice
 public class ExceptionController {
@@ -17,4 +20,13 @@ public class ExceptionController {
         return "Ошибка: " + LocalDateTime.now() + ": " + e.getMessage();
     }
 
+    /**
+     * Атомарный пакет переводов отменен: результат по каждому переводу.
+     */
+    @ExceptionHandler(BatchTransferException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public List<TransferResult> batchTransferException(BatchTransferException e) {
+        return e.getResults();
+    }
+
 }
@@ -2,16 +2,21 @@ package mr.demonid.service.user.controller;
 
 import lombok.AllArgsConstructor;
 import mr.demonid.service.user.dto.RegistrationRequest;
+import mr.demonid.service.user.services.BulkRegistrationService;
 import mr.demonid.service.user.services.TestService;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.InputStream;
+
 @AllArgsConstructor
 @RestController
 @RequestMapping("/api/user/create")
 public class TestController {
 
     private TestService testService;
+    private BulkRegistrationService bulkRegistrationService;
 
     /**
      * Сервис регистрирует нового пользователя, автоматически добавляя ему счет.
@@ -26,6 +31,31 @@ public class TestController {
         }
     }
 
+    /**
+     * Массовая регистрация из JSON-массива запросов на регистрацию.
+     * Тело запроса читается потоком, в ответе - количество созданных записей и скорость вставки.
+     */
+    @PostMapping(value = "/users", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> createUsersJson(InputStream body) {
+        try {
+            return ResponseEntity.ok(bulkRegistrationService.registerJson(body));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Ошибка регистрации: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Массовая регистрация из CSV (username,password,email).
+     */
+    @PostMapping(value = "/users", consumes = "text/csv")
+    public ResponseEntity<?> createUsersCsv(InputStream body) {
+        try {
+            return ResponseEntity.ok(bulkRegistrationService.registerCsv(body));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Ошибка регистрации: " + e.getMessage());
+        }
+    }
+
     /**
      * Сервис создаёт все возможные роли.
      * @return
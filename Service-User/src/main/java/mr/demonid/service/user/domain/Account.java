@@ -17,10 +17,11 @@ import java.util.Objects;
 @Getter
 @Setter
 @Entity
-@Table(name = "accounts")
+@Table(name = "accounts", indexes = @Index(name = "idx_accounts_user_primary", columnList = "user_id, is_primary"))
 public class Account {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "accounts_seq")
+    @SequenceGenerator(name = "accounts_seq", sequenceName = "accounts_seq", initialValue = 100, allocationSize = 50)
     private Long id;
 
     @Column(unique = true, nullable = false)
@@ -28,15 +29,33 @@ public class Account {
 
     private BigDecimal amount;
 
+    /**
+     * Количество полос (под-балансов), 0 - весь баланс хранится в amount.
+     * Сумма по полосам в сущность не загружается: полный баланс считают
+     * запросы с балансом (UserRepository, AccountRepository), и только для счетов с полосами.
+     */
+    @Column(nullable = false)
+    private int stripes;
+
     @Column(nullable = false)
     private LocalDate creation;
 
+    /**
+     * Основной (платежный) счет пользователя.
+     */
+    @Column(name = "is_primary", nullable = false)
+    private boolean primary;
+
     @JsonBackReference
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", referencedColumnName = "id")
     private User userParen;
 
 
+    public boolean isStriped() {
+        return stripes > 0;
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (this == obj) return true;
@@ -57,6 +76,7 @@ public class Account {
                 "id=" + id +
                 ", name='" + name + '\'' +
                 ", amount=" + amount +
+                ", stripes=" + stripes +
                 ", creation=" + creation +
                 ", user id=" + userParen.getId() +
                 '}';
@@ -0,0 +1,40 @@
+package mr.demonid.service.user.domain;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+
+/**
+ * Полоса (под-баланс) счёта.
+ * Баланс "горячего" счёта делится на несколько строк, чтобы параллельные
+ * переводы блокировали разные строки, а не одну строку в accounts.
+ */
+@NoArgsConstructor
+@Getter
+@Setter
+@Entity
+@Table(name = "account_stripes", uniqueConstraints = @UniqueConstraint(columnNames = {"account_id", "stripe"}))
+public class AccountStripe {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "account_id", nullable = false)
+    private Long accountId;
+
+    @Column(nullable = false)
+    private int stripe;
+
+    @Column(nullable = false)
+    private BigDecimal amount;
+
+    public AccountStripe(Long accountId, int stripe, BigDecimal amount) {
+        this.accountId = accountId;
+        this.stripe = stripe;
+        this.amount = amount;
+    }
+}
@@ -0,0 +1,31 @@
+package mr.demonid.service.user.domain;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Именованный счетчик, из которого экземпляры сервиса берут блоки значений.
+ */
+@NoArgsConstructor
+@Getter
+@Setter
+@Entity
+@Table(name = "counters")
+public class Counter {
+
+    @Id
+    private String name;
+
+    @Column(name = "next_value", nullable = false)
+    private long nextValue;
+
+    public Counter(String name, long nextValue) {
+        this.name = name;
+        this.nextValue = nextValue;
+    }
+}
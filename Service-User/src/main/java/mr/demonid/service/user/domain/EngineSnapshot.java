@@ -0,0 +1,32 @@
+package mr.demonid.service.user.domain;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Отметка последнего снимка балансов движка: номер последней команды журнала,
+ * которая уже отражена в accounts.amount. Пишется в одной транзакции с балансами.
+ */
+@NoArgsConstructor
+@Getter
+@Setter
+@Entity
+@Table(name = "engine_snapshot")
+public class EngineSnapshot {
+
+    @Id
+    private Integer id;
+
+    @Column(name = "last_seq", nullable = false)
+    private long lastSeq;
+
+    public EngineSnapshot(Integer id, long lastSeq) {
+        this.id = id;
+        this.lastSeq = lastSeq;
+    }
+}
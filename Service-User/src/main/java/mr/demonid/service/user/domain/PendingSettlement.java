@@ -0,0 +1,45 @@
+package mr.demonid.service.user.domain;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Отложенное зачисление на счёт.
+ * Записи только добавляются, а SettlementService периодически сворачивает их
+ * в одно изменение баланса счёта и удаляет.
+ */
+@NoArgsConstructor
+@Getter
+@Setter
+@Entity
+@Table(name = "pending_settlements")
+public class PendingSettlement {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "account_id", nullable = false)
+    private Long accountId;
+
+    private UUID orderId;
+
+    @Column(nullable = false)
+    private BigDecimal amount;
+
+    @Column(nullable = false)
+    private LocalDateTime created;
+
+    public PendingSettlement(Long accountId, UUID orderId, BigDecimal amount, LocalDateTime created) {
+        this.accountId = accountId;
+        this.orderId = orderId;
+        this.amount = amount;
+        this.created = created;
+    }
+}
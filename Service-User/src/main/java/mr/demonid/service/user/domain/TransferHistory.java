@@ -0,0 +1,51 @@
+package mr.demonid.service.user.domain;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Запись журнала переводов.
+ */
+@NoArgsConstructor
+@Getter
+@Setter
+@Entity
+@Table(name = "transfer_history", indexes = {
+        @Index(name = "idx_history_from", columnList = "from_user_id, id"),
+        @Index(name = "idx_history_to", columnList = "recipient_id, id")})
+public class TransferHistory {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transfer_history_seq")
+    @SequenceGenerator(name = "transfer_history_seq", sequenceName = "transfer_history_seq", initialValue = 100, allocationSize = 50)
+    private Long id;
+
+    @Column(name = "order_id", unique = true)
+    private UUID orderId;
+
+    @Column(name = "from_user_id", nullable = false)
+    private Long fromUserId;
+
+    @Column(name = "recipient_id", nullable = false)
+    private Long recipientId;
+
+    @Column(nullable = false)
+    private BigDecimal amount;
+
+    @Column(nullable = false)
+    private LocalDateTime created;
+
+    public TransferHistory(UUID orderId, Long fromUserId, Long recipientId, BigDecimal amount, LocalDateTime created) {
+        this.orderId = orderId;
+        this.fromUserId = fromUserId;
+        this.recipientId = recipientId;
+        this.amount = amount;
+        this.created = created;
+    }
+}
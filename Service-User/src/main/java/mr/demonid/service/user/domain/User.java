@@ -8,6 +8,7 @@ import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -20,7 +21,8 @@ import java.util.Set;
 public class User {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_seq")
+    @SequenceGenerator(name = "users_seq", sequenceName = "users_seq", initialValue = 100, allocationSize = 50)
     private Long id;
 
     @Column(unique = true, nullable = false)
@@ -38,7 +40,7 @@ public class User {
     private Set<Role> roles = new HashSet<>();
 
     @JsonManagedReference
-    @OneToMany(mappedBy = "userParen", cascade = CascadeType.ALL)
+    @OneToMany(mappedBy = "userParen", cascade = CascadeType.ALL, orphanRemoval = true)
     private Set<Account> accounts = new HashSet<>();     // счета
 
 
@@ -50,23 +52,27 @@ public class User {
     }
 
     /**
-     * Возвращает платежный аккаунт.
+     * Возвращает платежный аккаунт: основной счет, а если он не назначен - счет с наименьшим id.
+     * Для чтения баланса без загрузки пользователя есть AccountRepository.findPrimaryByUserId().
      */
     public Account getPaymentAccount() {
         if (accounts == null) {
             accounts = new HashSet<>();
         }
-        if (accounts.isEmpty()) {
-            return null;
-        }
-        return accounts.stream().findFirst().orElse(new Account()); // пока это будет первый в списке (множестве)
+        return accounts.stream()
+                .min(Comparator.comparing(Account::isPrimary).reversed()
+                        .thenComparing(Account::getId, Comparator.nullsLast(Comparator.naturalOrder())))
+                .orElse(null);
     }
 
     /**
      * Добавления счёта пользователю, с учётом связей в БД.
+     * Первый добавленный счет становится основным, остальные - нет, даже если
+     * помечены основными: основной счет у пользователя один (uq_accounts_one_primary).
      * @param account Новый счет.
      */
     public void addAccount(Account account) {
+        account.setPrimary(accounts.stream().noneMatch(Account::isPrimary));
         account.setUserParen(this);
         accounts.add(account);
     }
@@ -94,7 +100,8 @@ public class User {
 
     @JsonIgnore
     public String getAccountsList() {
-        return accounts.stream().map(e -> "(" + e.getName() + ": " + e.getAmount() + " уе)").toList().toString();
+        return accounts.stream().map(e -> "(" + e.getName() + ": " + e.getAmount() + " уе"
+                + (e.isStriped() ? " + " + e.getStripes() + " полос(ы)" : "") + ")").toList().toString();
     }
 
     @JsonIgnore
@@ -104,7 +111,7 @@ public class User {
 
     @JsonIgnore
     public String getAccountsAmountList() {
-        return accounts.stream().map(Account::getAmount).toList().toString();
+        return accounts.stream().map(Account::getBalance).toList().toString();
     }
 
     @Override
@@ -0,0 +1,19 @@
+package mr.demonid.service.user.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Пакет переводов.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchTransferRequest {
+    private boolean atomic;         // true - все переводы или ни одного, false - каждый сам по себе
+    private List<PaymentRequest> transfers = new ArrayList<>();
+}
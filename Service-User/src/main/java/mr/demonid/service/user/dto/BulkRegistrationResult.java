@@ -0,0 +1,20 @@
+package mr.demonid.service.user.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Итог массовой регистрации пользователей.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkRegistrationResult {
+    private long received;          // записей во входных данных
+    private long created;           // создано пользователей
+    private long skipped;           // пропущено (неверные данные или имя уже занято)
+    private long rows;              // вставлено строк (пользователи, счета, роли)
+    private long millis;
+    private double rowsPerSecond;
+}
@@ -0,0 +1,27 @@
+package mr.demonid.service.user.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+/**
+ * Результат одного перевода из пакета.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransferResult {
+    private UUID orderId;
+    private boolean success;
+    private String error;           // причина отказа, null - перевод выполнен
+
+    public static TransferResult ok(UUID orderId) {
+        return new TransferResult(orderId, true, null);
+    }
+
+    public static TransferResult failed(UUID orderId, String error) {
+        return new TransferResult(orderId, false, error);
+    }
+}
@@ -0,0 +1,18 @@
+package mr.demonid.service.user.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/**
+ * Краткие данные пользователя и баланс его основного счета (то, что держит кэш).
+ */
+@Data
+@AllArgsConstructor
+public class UserSummary {
+    private Long userId;
+    private String username;
+    private Long accountId;
+    private BigDecimal balance;
+}
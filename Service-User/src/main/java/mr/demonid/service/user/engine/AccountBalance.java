@@ -0,0 +1,11 @@
+package mr.demonid.service.user.engine;
+
+import java.math.BigDecimal;
+
+/**
+ * Основной счет пользователя в том виде, в каком его загружает движок балансов.
+ * @param amount        Основной баланс (accounts.amount).
+ * @param stripedAmount Сумма по полосам счета (0, если полос нет - тогда она и не запрашивается).
+ */
+public record AccountBalance(Long accountId, Long userId, BigDecimal amount, BigDecimal stripedAmount) {
+}
@@ -0,0 +1,588 @@
+package mr.demonid.service.user.engine;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import mr.demonid.service.user.domain.EngineSnapshot;
+import mr.demonid.service.user.dto.PaymentRequest;
+import mr.demonid.service.user.dto.TransferResult;
+import mr.demonid.service.user.exceptions.BadAccountException;
+import mr.demonid.service.user.exceptions.BatchTransferException;
+import mr.demonid.service.user.exceptions.NotEnoughAmountException;
+import mr.demonid.service.user.exceptions.NotFoundException;
+import mr.demonid.service.user.exceptions.UserException;
+import mr.demonid.service.user.repository.AccountRepository;
+import mr.demonid.service.user.repository.EngineSnapshotRepository;
+import mr.demonid.service.user.repository.UserRepository;
+import mr.demonid.service.user.services.SettlementService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Движок балансов в памяти (transfer.engine.mode=memory).
+ * Балансы основных счетов хранятся в массивах long (копейки), индекс счета
+ * выдается при загрузке. Переводы принимаются в ограниченную кольцевую очередь
+ * и выполняются одним потоком, поэтому блокировки строк accounts на пути перевода нет.
+ * Поток берет из очереди пачку команд, применяет их, дописывает в журнал
+ * (BalanceJournal) и делает один fsync на всю пачку - только после этого
+ * вызывающие получают ответ.
+ * Раз в snapshot-interval изменившиеся балансы пишутся в accounts.amount
+ * вместе с номером последней учтенной команды (engine_snapshot), а старые
+ * сегменты журнала удаляются. При старте балансы читаются из БД и к ним
+ * повторяются команды журнала после снимка - результат детерминирован,
+ * т.к. в журнал попадают только уже проверенные и примененные переводы.
+ * Пока движок включен, балансы в БД отстают не больше чем на интервал снимка;
+ * менять accounts.amount и полосы счетов в обход движка нельзя - снимок перезапишет.
+ */
+@Service
+@ConditionalOnProperty(prefix = "transfer.engine", name = "mode", havingValue = "memory")
+public class BalanceEngine implements MeterBinder {
+
+    private static final int SNAPSHOT_ID = 1;
+    private static final int LOAD_PAGE = 10_000;
+    private static final long POLL_MS = 100;
+
+    private final AccountRepository accountRepository;
+    private final UserRepository userRepository;
+    private final EngineSnapshotRepository snapshotRepository;
+    private final SettlementService settlementService;
+    private final TransactionTemplate transactionTemplate;
+    private final Path journalDir;
+    private final BlockingQueue<Command> queue;
+    private final int maxBatch;
+    private final long snapshotIntervalNanos;
+
+    // состояние движка, изменяет только его поток
+    private final Map<Long, Integer> indexByAccount = new ConcurrentHashMap<>();
+    private final Map<Long, Integer> indexByUser = new ConcurrentHashMap<>();
+    private volatile long[] balances = new long[1024];
+    private long[] offsets = new long[1024];        // сумма по полосам: в amount пишется баланс минус она
+    private long[] accountIds = new long[1024];
+    private int size;
+    private final BitSet dirty = new BitSet();
+    private volatile long seq;
+    private long segmentStart;
+    private BalanceJournal journal;
+
+    private final AtomicBoolean fullSnapshot = new AtomicBoolean();
+    private final AtomicBoolean snapshotRunning = new AtomicBoolean();
+    private final AtomicLong snapshotSeq = new AtomicLong();
+    private final ExecutorService snapshotExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "balance-engine-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicLong applied = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong syncs = new AtomicLong();
+    private final AtomicLong snapshots = new AtomicLong();
+
+    private volatile boolean running;
+    private Thread worker;
+
+    public BalanceEngine(AccountRepository accountRepository,
+                         UserRepository userRepository,
+                         EngineSnapshotRepository snapshotRepository,
+                         SettlementService settlementService,
+                         PlatformTransactionManager transactionManager,
+                         @Value("${transfer.engine.journal-dir:./data/balance-journal}") Path journalDir,
+                         @Value("${transfer.engine.queue-capacity:65536}") int queueCapacity,
+                         @Value("${transfer.engine.max-batch:1024}") int maxBatch,
+                         @Value("${transfer.engine.snapshot-interval:5s}") Duration snapshotInterval) {
+        this.accountRepository = accountRepository;
+        this.userRepository = userRepository;
+        this.snapshotRepository = snapshotRepository;
+        this.settlementService = settlementService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.journalDir = journalDir;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxBatch = maxBatch;
+        this.snapshotIntervalNanos = snapshotInterval.toNanos();
+    }
+
+    /**
+     * Выполняет перевод и ждет его фиксации в журнале.
+     */
+    public void transfer(PaymentRequest request) throws UserException {
+        UserException error = await(submit(request.getFromUserId(), request.getRecipientId(), request.getTransferAmount(), request.getOrderId()));
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Ставит перевод в очередь движка. Если очередь заполнена, вызывающий поток ждет.
+     * @return завершится после fsync журнала, либо с UserException при отказе.
+     */
+    public CompletableFuture<Void> submit(Long fromUserId, Long recipientId, BigDecimal amount, UUID orderId) {
+        if (!isValidAmount(amount)) {
+            return CompletableFuture.failedFuture(new NotEnoughAmountException());
+        }
+        return enqueue(new Command(fromUserId, recipientId, toCents(amount), orderId));
+    }
+
+    /**
+     * Пакет переводов.
+     * Атомарный пакет ставится в очередь одной командой: движок применяет части
+     * по порядку и при первой же ошибке возвращает уже примененные.
+     * В журнал пакет пишется группой записей, и при восстановлении группа
+     * без последней записи (сбой посреди записи пакета) отбрасывается целиком. Неатомарный - отдельными командами,
+     * которые обычно попадают в одну пачку и фиксируются одним fsync.
+     * @return результаты в порядке переводов.
+     */
+    public List<TransferResult> transferAll(List<PaymentRequest> transfers, boolean atomic) throws UserException {
+        List<TransferResult> results = new ArrayList<>(transfers.size());
+        if (atomic) {
+            List<Command> legs = new ArrayList<>(transfers.size());
+            for (int i = 0; i < transfers.size(); i++) {
+                PaymentRequest request = transfers.get(i);
+                if (!isValidAmount(request.getTransferAmount())) {
+                    throw new BatchTransferException(transfers, i, new NotEnoughAmountException().getMessage());
+                }
+                legs.add(new Command(request.getFromUserId(), request.getRecipientId(), toCents(request.getTransferAmount()), request.getOrderId()));
+            }
+            Command group = new Command(legs);
+            UserException error = await(enqueue(group));
+            if (error != null) {
+                throw new BatchTransferException(transfers, group.failedIndex, error.getMessage());
+            }
+            transfers.forEach(t -> results.add(TransferResult.ok(t.getOrderId())));
+            return results;
+        }
+        List<CompletableFuture<Void>> futures = new ArrayList<>(transfers.size());
+        for (PaymentRequest request : transfers) {
+            futures.add(submit(request.getFromUserId(), request.getRecipientId(), request.getTransferAmount(), request.getOrderId()));
+        }
+        for (int i = 0; i < transfers.size(); i++) {
+            UserException error = await(futures.get(i));
+            UUID orderId = transfers.get(i).getOrderId();
+            results.add(error == null ? TransferResult.ok(orderId) : TransferResult.failed(orderId, error.getMessage()));
+        }
+        return results;
+    }
+
+    /**
+     * Ждет результат команды.
+     * @return причина отказа или null, если команда выполнена.
+     */
+    private static UserException await(CompletableFuture<Void> result) {
+        try {
+            result.get();
+            return null;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UserException userException) {
+                return userException;
+            }
+            throw new IllegalStateException("Движок балансов: перевод не выполнен", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Движок балансов: ожидание прервано", e);
+        }
+    }
+
+    private CompletableFuture<Void> enqueue(Command command) {
+        if (!running) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Движок балансов остановлен"));
+        }
+        try {
+            queue.put(command);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(e);
+        }
+        return command.result;
+    }
+
+    /**
+     * Текущий баланс счета по данным движка, null - счет движку неизвестен.
+     * Чтение без блокировок: значение может отставать на выполняемую пачку.
+     */
+    public BigDecimal getBalance(Long accountId) {
+        Integer index = accountId == null ? null : indexByAccount.get(accountId);
+        long[] current = balances;
+        if (index == null || index >= current.length) {
+            return null;
+        }
+        return BigDecimal.valueOf(current[index], 2);
+    }
+
+    /**
+     * Текущий баланс основного счета пользователя по данным движка,
+     * null - счет пользователя движку неизвестен.
+     */
+    public BigDecimal getUserBalance(Long userId) {
+        Integer index = userId == null ? null : indexByUser.get(userId);
+        long[] current = balances;
+        if (index == null || index >= current.length) {
+            return null;
+        }
+        return BigDecimal.valueOf(current[index], 2);
+    }
+
+    public long getSequence() {
+        return seq;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        // отложенные зачисления, накопленные до включения движка, сводим в БД заранее
+        while (settlementService.settle() > 0) {
+            // пока есть несведенные записи
+        }
+        load();
+        long lastSeq = snapshotRepository.findById(SNAPSHOT_ID).map(EngineSnapshot::getLastSeq).orElse(0L);
+        snapshotSeq.set(lastSeq);
+        journal = new BalanceJournal(journalDir, maxBatch);
+        seq = journal.replay(lastSeq, this::replay);
+        segmentStart = seq + 1;
+        journal.open(segmentStart);
+        System.out.println("BalanceEngine: загружено счетов " + size + ", повторено команд журнала " + (seq - lastSeq));
+
+        running = true;
+        worker = new Thread(this::run, "balance-engine");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @PreDestroy
+    public void stop() throws Exception {
+        running = false;
+        worker.join(TimeUnit.SECONDS.toMillis(5));
+        if (worker.isAlive()) {
+            // очередь не разобрана вовремя: прерываем, оставшиеся команды получат отказ.
+            // Снимок можно делать только после выхода потока - иначе он читает балансы на ходу
+            System.out.println("BalanceEngine: поток не завершился за 5 с, прерываем");
+            worker.interrupt();
+            worker.join();
+        }
+        // поток движка завершен - дожидаемся текущего снимка и делаем последний
+        while (snapshotRunning.get()) {
+            Thread.sleep(10);
+        }
+        snapshot();
+        snapshotExecutor.shutdown();
+        snapshotExecutor.awaitTermination(30, TimeUnit.SECONDS);
+        journal.close();
+    }
+
+    private void run() {
+        List<Command> batch = new ArrayList<>(maxBatch);
+        long nextSnapshot = System.nanoTime() + snapshotIntervalNanos;
+        while (running || !queue.isEmpty()) {
+            try {
+                Command first = queue.poll(POLL_MS, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, maxBatch - 1);
+                    process(batch);
+                    batch.clear();
+                }
+                if (System.nanoTime() - nextSnapshot >= 0) {
+                    snapshot();
+                    nextSnapshot = System.nanoTime() + snapshotIntervalNanos;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (IOException e) {
+                // журнал недоступен: результат пачки неизвестен, дальше работать нельзя
+                System.out.println("BalanceEngine: ошибка журнала, движок остановлен: " + e.getMessage());
+                running = false;
+                batch.forEach(c -> c.result.completeExceptionally(e));
+                batch.clear();
+            }
+        }
+        Command left;
+        while ((left = queue.poll()) != null) {
+            left.result.completeExceptionally(new IllegalStateException("Движок балансов остановлен"));
+        }
+    }
+
+    /**
+     * Применяет пачку команд и фиксирует ее одним fsync.
+     */
+    private void process(List<Command> batch) throws IOException {
+        long before = seq;
+        for (Command command : batch) {
+            try {
+                apply(command);
+            } catch (RuntimeException e) {
+                // отказ (UserException) или ошибка чтения счета из БД - только этой команде
+                command.error = e;
+            }
+        }
+        if (seq != before) {
+            journal.sync();
+            syncs.incrementAndGet();
+        }
+        for (Command command : batch) {
+            if (command.error == null) {
+                applied.incrementAndGet();
+                command.result.complete(null);
+            } else {
+                rejected.incrementAndGet();
+                command.result.completeExceptionally(command.error);
+            }
+        }
+    }
+
+    private void apply(Command command) throws IOException {
+        if (command.legs != null) {
+            applyGroup(command);
+            return;
+        }
+        int from = resolveUser(command.fromUserId);
+        int to = resolveUser(command.recipientId);
+        if (balances[from] < command.cents) {
+            throw new NotEnoughAmountException();
+        }
+        move(from, to, command.cents);
+        seq = seq + 1;
+        journal.append(seq, accountIds[from], accountIds[to], command.cents, command.orderId);
+    }
+
+    /**
+     * Атомарный пакет: все части или ни одной.
+     */
+    private void applyGroup(Command group) throws IOException {
+        List<Command> legs = group.legs;
+        int[] from = new int[legs.size()];
+        int[] to = new int[legs.size()];
+        int done = 0;
+        try {
+            for (; done < legs.size(); done++) {
+                Command leg = legs.get(done);
+                group.failedIndex = done;
+                from[done] = resolveUser(leg.fromUserId);
+                to[done] = resolveUser(leg.recipientId);
+                if (balances[from[done]] < leg.cents) {
+                    throw new NotEnoughAmountException();
+                }
+                move(from[done], to[done], leg.cents);
+            }
+        } catch (RuntimeException e) {
+            // возвращаем примененные части в обратном порядке, в журнал они еще не попали
+            for (int i = done - 1; i >= 0; i--) {
+                move(to[i], from[i], legs.get(i).cents);
+            }
+            throw e;
+        }
+        group.failedIndex = -1;
+        for (int i = 0; i < legs.size(); i++) {
+            seq = seq + 1;
+            journal.append(seq, accountIds[from[i]], accountIds[to[i]], legs.get(i).cents, legs.get(i).orderId, legs.size() - 1 - i);
+        }
+    }
+
+    private void replay(long recordSeq, long fromAccountId, long toAccountId, long cents, UUID orderId) {
+        Integer from = resolveAccount(fromAccountId);
+        Integer to = resolveAccount(toAccountId);
+        if (from == null || to == null) {
+            System.out.println("BalanceEngine: пропущена команда " + recordSeq + ", счет удален");
+            return;
+        }
+        move(from, to, cents);
+    }
+
+    private void move(int from, int to, long cents) {
+        long[] current = balances;
+        current[from] -= cents;
+        current[to] += cents;
+        dirty.set(from);
+        dirty.set(to);
+    }
+
+    /**
+     * Индекс основного счета пользователя; неизвестный счет подгружается из БД.
+     */
+    private int resolveUser(Long userId) {
+        Integer index = userId == null ? null : indexByUser.get(userId);
+        if (index != null) {
+            return index;
+        }
+        AccountBalance account = userId == null ? null
+                : transactionTemplate.execute(s -> accountRepository.findPrimaryBalanceByUserId(userId).orElse(null));
+        if (account == null) {
+            throw userId != null && userRepository.existsById(userId) ? new BadAccountException() : new NotFoundException();
+        }
+        return register(account);
+    }
+
+    private Integer resolveAccount(long accountId) {
+        Integer index = indexByAccount.get(accountId);
+        if (index != null) {
+            return index;
+        }
+        AccountBalance account = transactionTemplate.execute(s -> accountRepository.findBalanceById(accountId).orElse(null));
+        return account == null ? null : register(account);
+    }
+
+    private void load() {
+        long afterId = 0L;
+        List<AccountBalance> page;
+        do {
+            long from = afterId;
+            page = transactionTemplate.execute(s -> accountRepository.findPrimaryBalancesAfter(from, Limit.of(LOAD_PAGE)));
+            page.forEach(this::register);
+            if (!page.isEmpty()) {
+                afterId = page.get(page.size() - 1).accountId();
+            }
+        } while (page.size() == LOAD_PAGE);
+    }
+
+    private int register(AccountBalance account) {
+        int index = size;
+        if (index == balances.length) {
+            int capacity = index * 2;
+            offsets = Arrays.copyOf(offsets, capacity);
+            accountIds = Arrays.copyOf(accountIds, capacity);
+            balances = Arrays.copyOf(balances, capacity);
+        }
+        long offset = toCents(account.stripedAmount());
+        offsets[index] = offset;
+        accountIds[index] = account.accountId();
+        balances[index] = toCents(account.amount()) + offset;
+        size++;
+        // индекс публикуется последним: читатель getBalance увидит уже заполненный массив
+        indexByAccount.put(account.accountId(), index);
+        if (account.userId() != null) {
+            indexByUser.put(account.userId(), index);
+        }
+        return index;
+    }
+
+    /**
+     * Снимает изменившиеся балансы и отдает их на запись в БД.
+     * Вызывается потоком движка (или после его остановки).
+     */
+    private void snapshot() throws IOException {
+        boolean full = fullSnapshot.get();
+        if ((dirty.isEmpty() && !full) || !snapshotRunning.compareAndSet(false, true)) {
+            return;
+        }
+        fullSnapshot.set(false);
+        long snapSeq = seq;
+        if (segmentStart != snapSeq + 1) {
+            // команды после снимка пойдут в новый сегмент, старые можно будет удалить
+            segmentStart = snapSeq + 1;
+            journal.roll(segmentStart);
+        }
+        int count = full ? size : dirty.cardinality();
+        long[] ids = new long[count];
+        long[] amounts = new long[count];
+        long[] current = balances;
+        int i = 0;
+        for (int index = full ? 0 : dirty.nextSetBit(0); index >= 0 && index < size && i < count;
+             index = full ? index + 1 : dirty.nextSetBit(index + 1)) {
+            ids[i] = accountIds[index];
+            amounts[i] = current[index] - offsets[index];
+            i++;
+        }
+        dirty.clear();
+        snapshotExecutor.execute(() -> writeSnapshot(ids, amounts, snapSeq));
+    }
+
+    private void writeSnapshot(long[] ids, long[] amounts, long snapSeq) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                for (int i = 0; i < ids.length; i++) {
+                    accountRepository.setAmount(ids[i], BigDecimal.valueOf(amounts[i], 2));
+                }
+                snapshotRepository.save(new EngineSnapshot(SNAPSHOT_ID, snapSeq));
+            });
+            snapshotSeq.set(snapSeq);
+            snapshots.incrementAndGet();
+            journal.deleteUpTo(snapSeq);
+        } catch (Exception e) {
+            // изменения этого снимка уже сняты с учета - следующий запишет все балансы
+            fullSnapshot.set(true);
+            System.out.println("BalanceEngine: ошибка записи снимка: " + e.getMessage());
+        } finally {
+            snapshotRunning.set(false);
+        }
+    }
+
+    private static boolean isValidAmount(BigDecimal amount) {
+        return amount != null && amount.signum() > 0 && amount.stripTrailingZeros().scale() <= 2;
+    }
+
+    private static long toCents(BigDecimal value) {
+        return value == null ? 0 : value.movePointRight(2).setScale(0, RoundingMode.UNNECESSARY).longValueExact();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("transfer.engine.queue.depth", queue, BlockingQueue::size)
+                .description("Transfers waiting for the balance engine")
+                .register(registry);
+        Gauge.builder("transfer.engine.snapshot.lag", this, e -> e.seq - e.snapshotSeq.get())
+                .description("Journal commands not yet written to the database")
+                .register(registry);
+        FunctionCounter.builder("transfer.engine.commands", applied, AtomicLong::get).tag("result", "applied").register(registry);
+        FunctionCounter.builder("transfer.engine.commands", rejected, AtomicLong::get).tag("result", "rejected").register(registry);
+        FunctionCounter.builder("transfer.engine.syncs", syncs, AtomicLong::get)
+                .description("Journal fsync calls, one per batch")
+                .register(registry);
+        FunctionCounter.builder("transfer.engine.snapshots", snapshots, AtomicLong::get).register(registry);
+    }
+
+    /**
+     * Команда перевода в очереди движка (или атомарный пакет переводов - legs).
+     */
+    private static class Command {
+        final Long fromUserId;
+        final Long recipientId;
+        final long cents;
+        final UUID orderId;
+        final List<Command> legs;
+        final CompletableFuture<Void> result = new CompletableFuture<>();
+        RuntimeException error;
+        int failedIndex = -1;       // для пакета: какая часть не прошла
+
+        Command(Long fromUserId, Long recipientId, long cents, UUID orderId) {
+            this.fromUserId = fromUserId;
+            this.recipientId = recipientId;
+            this.cents = cents;
+            this.orderId = orderId;
+            this.legs = null;
+        }
+
+        Command(List<Command> legs) {
+            this.fromUserId = null;
+            this.recipientId = null;
+            this.cents = 0;
+            this.orderId = null;
+            this.legs = legs;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package mr.demonid.service.user.engine;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Журнал команд движка балансов (только дозапись).
+ * Журнал разбит на сегменты journal-<первый seq>.log; новый сегмент начинается
+ * после каждого снимка балансов в БД, а сегменты, целиком вошедшие в снимок, удаляются.
+ * Запись фиксированной длины: seq, счет-источник, счет-получатель, сумма в копейках,
+ * orderId, число следующих записей той же группы и CRC32 - по нему при восстановлении
+ * отбрасывается недописанный хвост.
+ * Атомарный пакет переводов пишется группой записей, у последней из которых счетчик 0;
+ * группа может не уместиться в буфер и попасть на диск частично, поэтому при
+ * восстановлении группа без последней записи отбрасывается целиком.
+ * Класс не потокобезопасен: пишет только поток движка.
+ */
+public class BalanceJournal implements Closeable {
+
+    static final int RECORD_SIZE = 8 + 8 + 8 + 8 + 16 + 4 + 4;
+    private static final int FOLLOWING_OFFSET = RECORD_SIZE - 8;
+    private static final String PREFIX = "journal-";
+    private static final String SUFFIX = ".log";
+
+    private final Path dir;
+    private final ByteBuffer buffer;
+    private final CRC32 crc = new CRC32();
+    private FileChannel channel;
+
+    /**
+     * Обработчик записей при восстановлении.
+     */
+    public interface RecordHandler {
+        void apply(long seq, long fromAccountId, long toAccountId, long cents, UUID orderId);
+    }
+
+    public BalanceJournal(Path dir, int bufferRecords) throws IOException {
+        this.dir = dir;
+        this.buffer = ByteBuffer.allocateDirect(RECORD_SIZE * Math.max(1, bufferRecords));
+        Files.createDirectories(dir);
+    }
+
+    /**
+     * Начинает новый сегмент, первая запись которого будет иметь номер firstSeq.
+     */
+    public void open(long firstSeq) throws IOException {
+        close();
+        channel = FileChannel.open(segment(firstSeq),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * Добавляет запись в буфер. На диск она гарантированно попадет после sync().
+     */
+    public void append(long seq, long fromAccountId, long toAccountId, long cents, UUID orderId) throws IOException {
+        append(seq, fromAccountId, toAccountId, cents, orderId, 0);
+    }
+
+    /**
+     * Добавляет запись группы (атомарного пакета).
+     * @param following Сколько записей группы идет за этой; 0 - последняя запись группы.
+     */
+    public void append(long seq, long fromAccountId, long toAccountId, long cents, UUID orderId, int following) throws IOException {
+        if (buffer.remaining() < RECORD_SIZE) {
+            writeBuffer();
+        }
+        int start = buffer.position();
+        buffer.putLong(seq).putLong(fromAccountId).putLong(toAccountId).putLong(cents);
+        buffer.putLong(orderId == null ? 0 : orderId.getMostSignificantBits());
+        buffer.putLong(orderId == null ? 0 : orderId.getLeastSignificantBits());
+        buffer.putInt(following);
+        buffer.putInt(checksum(buffer, start));
+    }
+
+    /**
+     * Сбрасывает накопленные записи на диск одним fsync (групповая фиксация).
+     */
+    public void sync() throws IOException {
+        writeBuffer();
+        channel.force(false);
+    }
+
+    /**
+     * Закрывает текущий сегмент и начинает следующий.
+     */
+    public void roll(long nextSeq) throws IOException {
+        sync();
+        open(nextSeq);
+    }
+
+    /**
+     * Удаляет сегменты, все записи которых не новее seq (уже есть в снимке).
+     * Трогает только закрытые сегменты, поэтому может вызываться из потока записи снимков.
+     */
+    public void deleteUpTo(long seq) throws IOException {
+        for (Path path : segments()) {
+            if (firstSeq(path) <= seq) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    /**
+     * Проходит по записям с номером больше afterSeq, в порядке номеров.
+     * Записи группы передаются обработчику только после того, как прочитана вся группа.
+     * @return номер последней прочитанной записи (или afterSeq, если новых нет).
+     */
+    public long replay(long afterSeq, RecordHandler handler) throws IOException {
+        long last = afterSeq;
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        List<ByteBuffer> group = new ArrayList<>();
+        for (Path path : segments()) {
+            try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+                while (true) {
+                    record.clear();
+                    while (record.hasRemaining() && in.read(record) > 0) {
+                        // дочитываем запись целиком
+                    }
+                    if (record.hasRemaining() || checksum(record, 0) != record.getInt(RECORD_SIZE - 4)) {
+                        break;      // недописанный хвост сегмента
+                    }
+                    int following = record.getInt(FOLLOWING_OFFSET);
+                    if (!group.isEmpty() && following != group.get(group.size() - 1).getInt(FOLLOWING_OFFSET) - 1) {
+                        group.clear();      // группа оборвалась, а дальше пошли новые записи
+                    }
+                    if (following > 0) {
+                        group.add(ByteBuffer.allocate(RECORD_SIZE).put(record.flip()));
+                        continue;
+                    }
+                    for (ByteBuffer leg : group) {
+                        last = apply(leg, last, handler);
+                    }
+                    group.clear();
+                    last = apply(record, last, handler);
+                }
+            }
+            // группа, не дописанная до конца сегмента, не применяется
+            group.clear();
+        }
+        return last;
+    }
+
+    private static long apply(ByteBuffer record, long last, RecordHandler handler) {
+        long seq = record.getLong(0);
+        if (seq <= last) {
+            return last;
+        }
+        handler.apply(seq, record.getLong(8), record.getLong(16), record.getLong(24),
+                orderId(record.getLong(32), record.getLong(40)));
+        return seq;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            sync();
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private void writeBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private int checksum(ByteBuffer source, int start) {
+        crc.reset();
+        ByteBuffer view = source.duplicate();
+        view.limit(start + RECORD_SIZE - 4).position(start);
+        crc.update(view);
+        return (int) crc.getValue();
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            List<Path> list = new ArrayList<>(files
+                    .filter(p -> p.getFileName().toString().startsWith(PREFIX) && p.getFileName().toString().endsWith(SUFFIX))
+                    .toList());
+            list.sort((a, b) -> Long.compare(firstSeq(a), firstSeq(b)));
+            return list;
+        }
+    }
+
+    private Path segment(long firstSeq) {
+        return dir.resolve(String.format("%s%020d%s", PREFIX, firstSeq, SUFFIX));
+    }
+
+    private static long firstSeq(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    private static UUID orderId(long msb, long lsb) {
+        return msb == 0 && lsb == 0 ? null : new UUID(msb, lsb);
+    }
+}
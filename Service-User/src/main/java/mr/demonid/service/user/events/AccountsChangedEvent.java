@@ -0,0 +1,11 @@
+package mr.demonid.service.user.events;
+
+import java.util.Collection;
+
+/**
+ * Изменились данные или балансы пользователей не в результате перевода
+ * (сведение отложенных зачислений, регистрация).
+ * Публикуется внутри транзакции, слушатели срабатывают после коммита.
+ */
+public record AccountsChangedEvent(Collection<Long> userIds) {
+}
@@ -0,0 +1,13 @@
+package mr.demonid.service.user.events;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * Событие о проведённом переводе средств.
+ * Публикуется внутри транзакции перевода, слушатели обрабатывают его после коммита.
+ * Переводы движка балансов (transfer.engine.mode=memory) идут без транзакции -
+ * тогда событие публикуется после записи в журнал движка и обрабатывается сразу.
+ */
+public record TransferCompletedEvent(UUID orderId, Long fromUserId, Long recipientId, BigDecimal amount) {
+}
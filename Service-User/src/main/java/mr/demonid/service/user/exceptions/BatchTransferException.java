@@ -0,0 +1,30 @@
+package mr.demonid.service.user.exceptions;
+
+import lombok.Getter;
+import mr.demonid.service.user.dto.PaymentRequest;
+import mr.demonid.service.user.dto.TransferResult;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Атомарный пакет переводов отменен из-за ошибки в одном из них.
+ * Транзакция пакета откатывается, а клиент получает результат по каждому переводу.
+ */
+@Getter
+public class BatchTransferException extends RuntimeException {
+
+    private final List<TransferResult> results;
+
+    public BatchTransferException(List<PaymentRequest> transfers, int failedIndex, String error) {
+        results = new ArrayList<>(transfers.size());
+        for (int i = 0; i < transfers.size(); i++) {
+            results.add(TransferResult.failed(transfers.get(i).getOrderId(), i == failedIndex ? error : "Пакет отменен."));
+        }
+    }
+
+    @Override
+    public String getMessage() {
+        return "Пакет переводов отменен.";
+    }
+}
@@ -0,0 +1,93 @@
+package mr.demonid.service.user.links;
+
+import mr.demonid.service.user.events.AccountsChangedEvent;
+import mr.demonid.service.user.events.TransferCompletedEvent;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.client.RestClient;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Рассылает PAYMENT-SERVICE инвалидации кэша балансов после изменения счетов.
+ * Отправка идёт в отдельном потоке и не задерживает перевод; изменения,
+ * накопившиеся за время отправки, уходят одним запросом. Рассылка идёт на все
+ * экземпляры PAYMENT-SERVICE из Eureka, т.к. кэш у каждого экземпляра свой.
+ * Если инвалидация потеряется, запись в кэше всё равно устареет по TTL.
+ */
+@Component
+public class PaymentCacheNotifier {
+
+    private static final String PAYMENT_SERVICE = "PAYMENT-SERVICE";
+    private static final String INVALIDATE_PATH = "/api/payment/balance-cache/invalidate";
+
+    private final ObjectProvider<DiscoveryClient> discoveryClient;
+    private final RestClient restClient;
+
+    private final Set<Long> pending = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "payment-cache-notifier");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public PaymentCacheNotifier(ObjectProvider<DiscoveryClient> discoveryClient, RestClient.Builder restClientBuilder) {
+        this.discoveryClient = discoveryClient;
+        this.restClient = restClientBuilder.build();
+    }
+
+    // переводы движка (transfer.engine.mode=memory) идут без транзакции - тогда уведомляем сразу
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTransfer(TransferCompletedEvent event) {
+        invalidate(List.of(event.fromUserId(), event.recipientId()));
+    }
+
+    @TransactionalEventListener
+    public void onAccountsChanged(AccountsChangedEvent event) {
+        invalidate(List.copyOf(event.userIds()));
+    }
+
+    /**
+     * Ставит пользователей в очередь на инвалидацию.
+     */
+    public void invalidate(List<Long> userIds) {
+        pending.addAll(userIds);
+        if (scheduled.compareAndSet(false, true)) {
+            executor.execute(this::send);
+        }
+    }
+
+    private void send() {
+        scheduled.set(false);
+        List<Long> userIds = new ArrayList<>(pending);
+        pending.removeAll(userIds);
+        if (userIds.isEmpty()) {
+            return;
+        }
+        DiscoveryClient discovery = discoveryClient.getIfAvailable();
+        if (discovery == null) {
+            return;
+        }
+        for (ServiceInstance instance : discovery.getInstances(PAYMENT_SERVICE)) {
+            try {
+                restClient.post()
+                        .uri(instance.getUri() + INVALIDATE_PATH)
+                        .body(userIds)
+                        .retrieve()
+                        .toBodilessEntity();
+            } catch (Exception e) {
+                System.out.println("PaymentCacheNotifier: не удалось уведомить " + instance.getUri() + ": " + e.getMessage());
+            }
+        }
+    }
+}
@@ -1,12 +1,106 @@
 package mr.demonid.service.user.repository;
 
+import jakarta.persistence.LockModeType;
 import mr.demonid.service.user.domain.Account;
+import mr.demonid.service.user.engine.AccountBalance;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
 @Repository
 public interface AccountRepository extends JpaRepository<Account, Long> {
     Account findAccountByName(String name);
 
     Boolean existsAccountByName(String name);
+
+    /**
+     * Основной счет пользователя. Читается только строка accounts (по индексу user_id, is_primary),
+     * пользователь и его роли не загружаются.
+     */
+    @Query("SELECT a FROM Account a WHERE a.userParen.id = :userId AND a.primary = true")
+    Optional<Account> findPrimaryByUserId(Long userId);
+
+    /**
+     * Атомарно изменяет баланс счёта на заданную величину, без чтения сущности.
+     */
+    @Modifying
+    @Query("UPDATE Account a SET a.amount = a.amount + :delta WHERE a.id = :id")
+    int addAmount(Long id, BigDecimal delta);
+
+    /**
+     * Атомарное списание с основного баланса, только если средств хватает.
+     * Контекст сбрасывается, чтобы загруженные раньше сущности счетов не затерли новое значение.
+     * @return 0 - средств недостаточно.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Account a SET a.amount = COALESCE(a.amount, 0) - :amount WHERE a.id = :id AND COALESCE(a.amount, 0) >= :amount")
+    int debit(Long id, BigDecimal amount);
+
+    /**
+     * Атомарное зачисление на основной баланс (см. debit()).
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Account a SET a.amount = COALESCE(a.amount, 0) + :amount WHERE a.id = :id")
+    int credit(Long id, BigDecimal amount);
+
+    /**
+     * Владельцы счетов.
+     */
+    @Query("SELECT DISTINCT a.userParen.id FROM Account a WHERE a.id IN :ids")
+    List<Long> findUserIdsByAccountIds(Collection<Long> ids);
+
+    /**
+     * Текущее значение основного баланса (без полос), минуя кэш контекста.
+     */
+    @Query("SELECT a.amount FROM Account a WHERE a.id = :id")
+    BigDecimal findAmountById(Long id);
+
+    /**
+     * Записывает основной баланс счёта (снимок движка балансов).
+     */
+    @Modifying
+    @Query("UPDATE Account a SET a.amount = :amount WHERE a.id = :id")
+    int setAmount(Long id, BigDecimal amount);
+
+    /**
+     * Основные счета пользователей страницами по возрастанию id, без загрузки сущностей.
+     */
+    @Query("SELECT new mr.demonid.service.user.engine.AccountBalance(a.id, a.userParen.id, a.amount, " +
+            "CASE WHEN a.stripes > 0 THEN (SELECT COALESCE(SUM(s.amount), 0) FROM AccountStripe s WHERE s.accountId = a.id) ELSE 0 END) " +
+            "FROM Account a WHERE a.primary = true AND a.id > :afterId ORDER BY a.id")
+    List<AccountBalance> findPrimaryBalancesAfter(Long afterId, Limit limit);
+
+    @Query("SELECT new mr.demonid.service.user.engine.AccountBalance(a.id, a.userParen.id, a.amount, " +
+            "CASE WHEN a.stripes > 0 THEN (SELECT COALESCE(SUM(s.amount), 0) FROM AccountStripe s WHERE s.accountId = a.id) ELSE 0 END) " +
+            "FROM Account a WHERE a.userParen.id = :userId AND a.primary = true")
+    Optional<AccountBalance> findPrimaryBalanceByUserId(Long userId);
+
+    @Query("SELECT new mr.demonid.service.user.engine.AccountBalance(a.id, a.userParen.id, a.amount, " +
+            "CASE WHEN a.stripes > 0 THEN (SELECT COALESCE(SUM(s.amount), 0) FROM AccountStripe s WHERE s.accountId = a.id) ELSE 0 END) " +
+            "FROM Account a WHERE a.id = :id")
+    Optional<AccountBalance> findBalanceById(Long id);
+
+    /**
+     * Основные счета пользователей с блокировкой на запись.
+     * Строки блокируются в порядке id, поэтому пакеты с пересекающимися
+     * счетами не взаимоблокируются.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT a FROM Account a WHERE a.userParen.id IN :userIds AND a.primary = true ORDER BY a.id")
+    List<Account> lockPrimaryByUserIds(Collection<Long> userIds);
+
+    @Query("SELECT a FROM Account a WHERE a.userParen.id IN :userIds AND a.primary = true")
+    List<Account> findPrimaryByUserIds(Collection<Long> userIds);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT a FROM Account a WHERE a.id = :id")
+    Optional<Account> lockById(Long id);
 }
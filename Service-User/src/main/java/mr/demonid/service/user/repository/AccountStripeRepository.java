@@ -0,0 +1,39 @@
+package mr.demonid.service.user.repository;
+
+import jakarta.persistence.LockModeType;
+import mr.demonid.service.user.domain.AccountStripe;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Repository
+public interface AccountStripeRepository extends JpaRepository<AccountStripe, Long> {
+
+    /**
+     * Все полосы счёта, с блокировкой на запись (для перебалансировки).
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM AccountStripe s WHERE s.accountId = :accountId ORDER BY s.stripe")
+    List<AccountStripe> lockAllByAccountId(Long accountId);
+
+    /**
+     * Зачисление на полосу.
+     */
+    @Modifying
+    @Query("UPDATE AccountStripe s SET s.amount = s.amount + :delta WHERE s.accountId = :accountId AND s.stripe = :stripe")
+    int credit(Long accountId, int stripe, BigDecimal delta);
+
+    /**
+     * Списание с полосы, только если на ней хватает средств.
+     * @return 1 - списано, 0 - на полосе недостаточно средств.
+     */
+    @Modifying
+    @Query("UPDATE AccountStripe s SET s.amount = s.amount - :delta " +
+            "WHERE s.accountId = :accountId AND s.stripe = :stripe AND s.amount >= :delta")
+    int debit(Long accountId, int stripe, BigDecimal delta);
+}
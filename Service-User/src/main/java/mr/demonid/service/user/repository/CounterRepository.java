@@ -0,0 +1,18 @@
+package mr.demonid.service.user.repository;
+
+import jakarta.persistence.LockModeType;
+import mr.demonid.service.user.domain.Counter;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface CounterRepository extends JpaRepository<Counter, String> {
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM Counter c WHERE c.name = :name")
+    Optional<Counter> lockByName(String name);
+}
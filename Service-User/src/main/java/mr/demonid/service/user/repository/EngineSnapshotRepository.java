@@ -0,0 +1,9 @@
+package mr.demonid.service.user.repository;
+
+import mr.demonid.service.user.domain.EngineSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface EngineSnapshotRepository extends JpaRepository<EngineSnapshot, Integer> {
+}
@@ -0,0 +1,17 @@
+package mr.demonid.service.user.repository;
+
+import mr.demonid.service.user.domain.PendingSettlement;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface PendingSettlementRepository extends JpaRepository<PendingSettlement, Long> {
+
+    /**
+     * Самые старые отложенные зачисления.
+     */
+    List<PendingSettlement> findByOrderByIdAsc(Limit limit);
+}
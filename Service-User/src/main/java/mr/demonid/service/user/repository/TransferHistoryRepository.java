@@ -0,0 +1,32 @@
+package mr.demonid.service.user.repository;
+
+import mr.demonid.service.user.domain.TransferHistory;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+@Repository
+public interface TransferHistoryRepository extends JpaRepository<TransferHistory, Long> {
+
+    /**
+     * Какие заказы из пачки уже есть в журнале.
+     */
+    @Query("SELECT h.orderId FROM TransferHistory h WHERE h.orderId IN :orderIds")
+    Set<UUID> findExistingOrderIds(Collection<UUID> orderIds);
+
+    /**
+     * Исходящие переводы пользователя, от новых к старым, начиная до beforeId.
+     */
+    List<TransferHistory> findByFromUserIdAndIdLessThanOrderByIdDesc(Long userId, Long beforeId, Limit limit);
+
+    /**
+     * Входящие переводы пользователя, от новых к старым, начиная до beforeId.
+     */
+    List<TransferHistory> findByRecipientIdAndIdLessThanOrderByIdDesc(Long userId, Long beforeId, Limit limit);
+}
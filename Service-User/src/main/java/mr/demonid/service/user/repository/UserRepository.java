@@ -1,13 +1,17 @@
 package mr.demonid.service.user.repository;
 
 import mr.demonid.service.user.domain.User;
-import org.springframework.data.domain.Pageable;
+import mr.demonid.service.user.dto.UserInfo;
+import mr.demonid.service.user.dto.UserSummary;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
@@ -25,10 +29,39 @@ public interface UserRepository extends JpaRepository<User, Long> {
     List<User> findAllUsers();
 
     /**
-     * Постраничная выборка данных из БД.
+     * Краткая информация о пользователях, сразу в виде DTO (без загрузки сущностей).
+     * Постраничная выборка по ключу: следующая страница начинается после последнего
+     * id предыдущей, так что каждая страница - это один проход по индексу первичного ключа,
+     * без OFFSET и без пагинации в памяти.
+     * Баланс берется с основного счета пользователя, с учетом полос
+     * (сумма по полосам запрашивается только для счетов, у которых они есть).
+     * @param afterId Последний id предыдущей страницы (0 - с начала).
+     * @param limit   Размер страницы.
      */
-    @Query("SELECT u FROM User u JOIN FETCH u.accounts JOIN FETCH u.roles")
-    List<User> findAllUsersWithLimit(Pageable pageable);
+    @Query("SELECT new mr.demonid.service.user.dto.UserInfo(u.id, u.username, COALESCE(a.amount, 0) + " +
+            "CASE WHEN a.stripes > 0 THEN (SELECT COALESCE(SUM(s.amount), 0) FROM AccountStripe s WHERE s.accountId = a.id) ELSE 0 END) " +
+            "FROM User u JOIN u.accounts a " +
+            "WHERE u.id > :afterId AND a.primary = true " +
+            "ORDER BY u.id")
+    List<UserInfo> findUserInfoAfter(Long afterId, Limit limit);
+
+    /**
+     * Краткие данные пользователя и его основного счета, одним запросом.
+     */
+    @Query("SELECT new mr.demonid.service.user.dto.UserSummary(u.id, u.username, a.id, COALESCE(a.amount, 0) + " +
+            "CASE WHEN a.stripes > 0 THEN (SELECT COALESCE(SUM(s.amount), 0) FROM AccountStripe s WHERE s.accountId = a.id) ELSE 0 END) " +
+            "FROM User u JOIN u.accounts a WHERE u.id = :id AND a.primary = true")
+    Optional<UserSummary> findUserSummaryById(Long id);
+
+    /**
+     * Краткие данные нескольких пользователей одним запросом (IN по id).
+     * Несуществующие id и пользователи без основного счета в результат не попадают.
+     */
+    @Query("SELECT new mr.demonid.service.user.dto.UserSummary(u.id, u.username, a.id, COALESCE(a.amount, 0) + " +
+            "CASE WHEN a.stripes > 0 THEN (SELECT COALESCE(SUM(s.amount), 0) FROM AccountStripe s WHERE s.accountId = a.id) ELSE 0 END) " +
+            "FROM User u JOIN u.accounts a WHERE u.id IN :ids AND a.primary = true")
+    List<UserSummary> findUserSummariesByIds(Collection<Long> ids);
+
 
     /**
      * Проверяет наличие пользователя в БД по его имени.
@@ -38,4 +71,10 @@ public interface UserRepository extends JpaRepository<User, Long> {
 
     boolean existsUserByEmail(String email);
 
+    /**
+     * Какие из переданных имен уже заняты (одним запросом на пачку).
+     */
+    @Query("SELECT u.username FROM User u WHERE u.username IN :usernames")
+    Set<String> findExistingUsernames(Collection<String> usernames);
+
 }
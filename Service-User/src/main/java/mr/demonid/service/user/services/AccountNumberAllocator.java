@@ -0,0 +1,131 @@
+package mr.demonid.service.user.services;
+
+import mr.demonid.service.user.domain.Counter;
+import mr.demonid.service.user.repository.CounterRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Выдает номера счетов вида "123-456-789" без проверочных запросов к БД.
+ * Номер - это значение счетчика, пропущенное через ключевую перестановку
+ * (сеть Фейстеля на 30 бит, 4 раунда, с "прогулкой по циклу" в диапазон 900 млн номеров).
+ * Перестановка взаимно однозначна, поэтому разные значения счетчика дают разные
+ * номера, а без ключа следующий номер по предыдущему не угадать.
+ * Счетчик хранится в таблице counters; каждый экземпляр сервиса забирает из него
+ * блок значений отдельной короткой транзакцией и дальше выдает номера из памяти.
+ * Номера, выданные до появления счетчика (случайные), уникальностью не покрываются:
+ * совпадение с ними маловероятно, и от него страхует unique на accounts.name.
+ */
+@Service
+public class AccountNumberAllocator {
+
+    static final String COUNTER_NAME = "account_number";
+
+    private static final long DOMAIN = 900_000_000L;     // номеров от 100-000-000 до 999-999-999
+    private static final long OFFSET = 100_000_000L;
+    private static final int HALF_BITS = 15;
+    private static final int HALF_MASK = (1 << HALF_BITS) - 1;
+    private static final int ROUNDS = 4;
+
+    private final CounterRepository counterRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final long[] roundKeys = new long[ROUNDS];
+    private final int blockSize;
+
+    private long next;
+    private long blockEnd;
+
+    public AccountNumberAllocator(CounterRepository counterRepository,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${account.number.key:0}") long key,
+                                  @Value("${account.number.block-size:1000}") int blockSize) {
+        this.counterRepository = counterRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.blockSize = blockSize;
+        // раундовые ключи из основного (splitmix64)
+        long state = key;
+        for (int i = 0; i < ROUNDS; i++) {
+            state += 0x9E3779B97F4A7C15L;
+            roundKeys[i] = mix(state);
+        }
+    }
+
+    /**
+     * Следующий свободный номер счета.
+     */
+    public synchronized String nextAccountNumber() {
+        if (next >= blockEnd) {
+            allocateBlock();
+        }
+        return format(permute(next++));
+    }
+
+    /**
+     * Взаимно однозначное отображение [0, DOMAIN) на себя.
+     */
+    long permute(long value) {
+        long x = value;
+        do {
+            x = feistel(x);
+        } while (x >= DOMAIN);      // значения за пределами диапазона пропускаем дальше по циклу
+        return x;
+    }
+
+    static String format(long value) {
+        long number = value + OFFSET;
+        return String.format("%03d-%03d-%03d", number / 1000000L, (number % 1000000L) / 1000, number % 1000);
+    }
+
+    private long feistel(long x) {
+        int left = (int) (x >>> HALF_BITS) & HALF_MASK;
+        int right = (int) x & HALF_MASK;
+        for (int i = 0; i < ROUNDS; i++) {
+            int tmp = left ^ ((int) mix(right ^ roundKeys[i]) & HALF_MASK);
+            left = right;
+            right = tmp;
+        }
+        return ((long) left << HALF_BITS) | right;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Забирает из счетчика блок значений в отдельной транзакции,
+     * чтобы блокировка строки счетчика не держалась до конца регистрации.
+     */
+    private void allocateBlock() {
+        long start;
+        try {
+            start = reserve();
+        } catch (DataIntegrityViolationException e) {
+            // счетчик одновременно создал другой экземпляр
+            start = reserve();
+        }
+        if (start >= DOMAIN) {
+            throw new IllegalStateException("Номера счетов исчерпаны");
+        }
+        next = start;
+        blockEnd = Math.min(start + blockSize, DOMAIN);
+    }
+
+    private long reserve() {
+        Long start = transactionTemplate.execute(status -> {
+            Counter counter = counterRepository.lockByName(COUNTER_NAME)
+                    .orElseGet(() -> counterRepository.saveAndFlush(new Counter(COUNTER_NAME, 0)));
+            long value = counter.getNextValue();
+            counter.setNextValue(value + blockSize);
+            counterRepository.save(counter);
+            return value;
+        });
+        return start == null ? 0 : start;
+    }
+}
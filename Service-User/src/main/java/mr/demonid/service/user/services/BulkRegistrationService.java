@@ -0,0 +1,183 @@
+package mr.demonid.service.user.services;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import mr.demonid.service.user.domain.User;
+import mr.demonid.service.user.dto.BulkRegistrationResult;
+import mr.demonid.service.user.dto.RegistrationRequest;
+import mr.demonid.service.user.repository.RoleRepository;
+import mr.demonid.service.user.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Массовая регистрация пользователей (заливка и миграция данных).
+ * Входной массив читается потоком и обрабатывается пачками по chunk-size записей,
+ * каждая пачка - в своей транзакции: один запрос на проверку занятых имен,
+ * затем вставка пользователей, счетов и связей с ролями. Id берутся из
+ * последовательностей блоками, поэтому Hibernate отправляет вставки пакетами JDBC.
+ */
+@Service
+public class BulkRegistrationService {
+
+    private final UserRepository userRepository;
+    private final RoleService roleService;
+    private final RoleRepository roleRepository;
+    private final TestService testService;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+
+    public BulkRegistrationService(UserRepository userRepository,
+                                   RoleService roleService,
+                                   RoleRepository roleRepository,
+                                   TestService testService,
+                                   ObjectMapper objectMapper,
+                                   PlatformTransactionManager transactionManager,
+                                   @Value("${registration.bulk.chunk-size:1000}") int chunkSize) {
+        this.userRepository = userRepository;
+        this.roleService = roleService;
+        this.roleRepository = roleRepository;
+        this.testService = testService;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Регистрация из JSON-массива RegistrationRequest.
+     */
+    public BulkRegistrationResult registerJson(InputStream in) throws Exception {
+        Loader loader = new Loader(roleService.getRoleId("USER"));
+        try (JsonParser parser = objectMapper.getFactory().createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("Ожидается JSON-массив");
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                loader.add(parser.readValueAs(RegistrationRequest.class));
+            }
+        }
+        return loader.finish();
+    }
+
+    /**
+     * Регистрация из CSV: username,password,email (строка заголовка необязательна).
+     */
+    public BulkRegistrationResult registerCsv(InputStream in) throws Exception {
+        Loader loader = new Loader(roleService.getRoleId("USER"));
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            String[] fields = line.split(",", -1);
+            if (fields.length > 0 && fields[0].trim().equalsIgnoreCase("username")) {
+                continue;
+            }
+            if (fields.length < 3) {
+                loader.add(null);
+                continue;
+            }
+            String password = fields[1].trim();
+            loader.add(new RegistrationRequest(fields[0].trim(), password, password, fields[2].trim()));
+        }
+        return loader.finish();
+    }
+
+    /**
+     * Сохраняет одну пачку.
+     * @return количество созданных пользователей.
+     */
+    private int insertChunk(List<RegistrationRequest> chunk, Long roleId) {
+        Integer created = transactionTemplate.execute(status -> {
+            // отсеиваем неверные записи и повторы внутри пачки, затем занятые имена
+            Set<String> names = new HashSet<>();
+            List<RegistrationRequest> valid = chunk.stream()
+                    .filter(BulkRegistrationService::isValid)
+                    .filter(r -> names.add(r.getUsername()))
+                    .toList();
+            if (valid.isEmpty()) {
+                return 0;
+            }
+            Set<String> existing = userRepository.findExistingUsernames(names);
+            List<User> users = new ArrayList<>(valid.size());
+            for (RegistrationRequest request : valid) {
+                if (existing.contains(request.getUsername())) {
+                    continue;
+                }
+                User user = new User();
+                user.setUsername(request.getUsername());
+                user.setPassword(request.getPassword());
+                user.setEmail(request.getEmail());
+                // только ссылка на роль: ни запроса за ролью, ни загрузки role.users
+                user.getRoles().add(roleRepository.getReferenceById(roleId));
+                user.addAccount(testService.createNewAccount());
+                users.add(user);
+            }
+            userRepository.saveAll(users);
+            return users.size();
+        });
+        return created == null ? 0 : created;
+    }
+
+    private static boolean isValid(RegistrationRequest request) {
+        return request != null
+                && request.getUsername() != null && !request.getUsername().isBlank()
+                && request.getPassword() != null && !request.getPassword().isBlank()
+                && request.getEmail() != null && !request.getEmail().isBlank();
+    }
+
+    /**
+     * Накапливает записи и отправляет их в БД пачками, считая статистику.
+     */
+    private class Loader {
+        private final Long roleId;
+        private final long start = System.nanoTime();
+        private final List<RegistrationRequest> chunk = new ArrayList<>(chunkSize);
+        private long received;
+        private long created;
+
+        Loader(Long roleId) {
+            this.roleId = roleId;
+        }
+
+        void add(RegistrationRequest request) {
+            received++;
+            chunk.add(request);
+            if (chunk.size() >= chunkSize) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (!chunk.isEmpty()) {
+                created += insertChunk(chunk, roleId);
+                chunk.clear();
+            }
+        }
+
+        BulkRegistrationResult finish() {
+            flush();
+            long millis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+            long rows = created * 3;    // пользователь, счет и связь с ролью
+            BulkRegistrationResult result = new BulkRegistrationResult(
+                    received, created, received - created, rows, millis, rows * 1000.0 / millis);
+            System.out.println("BulkRegistrationService: " + result);
+            return result;
+        }
+    }
+}
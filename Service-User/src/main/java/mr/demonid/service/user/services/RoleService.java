@@ -1,32 +1,123 @@
 package mr.demonid.service.user.services;
 
-import lombok.AllArgsConstructor;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import mr.demonid.service.user.domain.Role;
 import mr.demonid.service.user.repository.RoleRepository;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
-@AllArgsConstructor
+/**
+ * Справочник ролей.
+ * Роли меняются крайне редко, поэтому весь справочник держится в памяти
+ * и читается из БД только при первом обращении и после invalidate().
+ * Из кэша отдаются отсоединенные сущности: связь role.users у них не загружена,
+ * для привязки роли к пользователю используйте getRoleId() и ссылку из репозитория.
+ */
 @Service
-public class RoleService {
+public class RoleService implements MeterBinder {
 
-    private RoleRepository roleRepository;
+    private final RoleRepository roleRepository;
+
+    private volatile Map<String, Role> roles;       // null - справочник не загружен
+    private final AtomicLong version = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public RoleService(RoleRepository roleRepository) {
+        this.roleRepository = roleRepository;
+    }
 
     public Role getRole(String name) throws Exception {
         if (!name.startsWith("ROLE_")) {
             name = "ROLE_" + name;
         }
-        Optional<Role> role = roleRepository.findRoleByName(name);
-        if (role.isEmpty()) {
+        Role role = getRoles().get(name);
+        if (role == null) {
             throw new Exception("Такой роли не существует!");
         }
-        return role.get();
+        return role;
     }
 
+    /**
+     * Id роли по имени, без обращения к БД (кроме первой загрузки справочника).
+     */
+    public Long getRoleId(String name) throws Exception {
+        return getRole(name).getId();
+    }
 
     public List<Role> getAllRoles() throws Exception {
-        return roleRepository.findAll();
+        return List.copyOf(getRoles().values());
+    }
+
+    /**
+     * Сбрасывает справочник. Внутри транзакции сброс выполняется после коммита,
+     * чтобы параллельный запрос не успел загрузить в кэш ещё старые данные.
+     */
+    public void invalidate() {
+        version.incrementAndGet();
+        roles = null;
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    version.incrementAndGet();
+                    roles = null;
+                }
+            });
+        }
+    }
+
+    private Map<String, Role> getRoles() {
+        Map<String, Role> current = roles;
+        if (current != null) {
+            hits.incrementAndGet();
+            return current;
+        }
+        return load();
+    }
+
+    private synchronized Map<String, Role> load() {
+        Map<String, Role> current = roles;
+        if (current != null) {
+            // пока ждали блокировку, справочник загрузил другой поток
+            hits.incrementAndGet();
+            return current;
+        }
+        misses.incrementAndGet();
+        long loadVersion = version.get();
+        Map<String, Role> loaded = new LinkedHashMap<>();
+        roleRepository.findAll().forEach(role -> loaded.put(role.getName(), role));
+        current = Collections.unmodifiableMap(loaded);
+        if (version.get() == loadVersion) {
+            // справочник не сбрасывали во время загрузки - можно кэшировать
+            roles = current;
+        }
+        return current;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("cache.gets", hits, AtomicLong::get)
+                .tag("cache", "roles").tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("cache.gets", misses, AtomicLong::get)
+                .tag("cache", "roles").tag("result", "miss")
+                .register(registry);
+        Gauge.builder("cache.hit.ratio", this, s -> {
+                    long total = s.hits.get() + s.misses.get();
+                    return total == 0 ? 0 : (double) s.hits.get() / total;
+                })
+                .tag("cache", "roles")
+                .register(registry);
     }
 }
@@ -0,0 +1,93 @@
+package mr.demonid.service.user.services;
+
+import mr.demonid.service.user.domain.Account;
+import mr.demonid.service.user.domain.PendingSettlement;
+import mr.demonid.service.user.events.AccountsChangedEvent;
+import mr.demonid.service.user.repository.AccountRepository;
+import mr.demonid.service.user.repository.PendingSettlementRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Отложенные (неттинговые) зачисления.
+ * Почти все покупки зачисляются на один и тот же счёт магазина, и при
+ * немедленном зачислении все переводы выстраиваются в очередь за блокировкой
+ * одной строки в accounts. Для получателей из списка transfer.settlement.deferred-users
+ * зачисление только добавляется в pending_settlements (новая строка, без блокировок),
+ * а раз в transfer.settlement.interval мс накопленные суммы сворачиваются
+ * в одно обновление баланса на счёт.
+ * Списания у покупателей остаются немедленными, поэтому проверка средств
+ * не меняется; баланс магазина отстаёт не больше чем на интервал сведения.
+ */
+@Service
+public class SettlementService {
+
+    private final PendingSettlementRepository pendingRepository;
+    private final AccountRepository accountRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Set<Long> deferredUsers;
+    private final int batchSize;
+
+    public SettlementService(PendingSettlementRepository pendingRepository,
+                             AccountRepository accountRepository,
+                             ApplicationEventPublisher eventPublisher,
+                             @Value("${transfer.settlement.deferred-users:}") Set<Long> deferredUsers,
+                             @Value("${transfer.settlement.batch-size:1000}") int batchSize) {
+        this.pendingRepository = pendingRepository;
+        this.accountRepository = accountRepository;
+        this.eventPublisher = eventPublisher;
+        this.deferredUsers = Set.copyOf(deferredUsers);
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Зачисляются ли средства этому пользователю отложенно.
+     */
+    public boolean isDeferred(Long userId) {
+        return userId != null && deferredUsers.contains(userId);
+    }
+
+    /**
+     * Ставит зачисление в очередь. Выполняется в транзакции перевода,
+     * поэтому при откате перевода откатывается и зачисление.
+     */
+    public void defer(Account account, UUID orderId, BigDecimal amount) {
+        pendingRepository.save(new PendingSettlement(account.getId(), orderId, amount, LocalDateTime.now()));
+    }
+
+    /**
+     * Сворачивает накопленные зачисления в балансы счетов.
+     * Обрабатываются только видимые (закоммиченные) записи, и удаляются ровно они,
+     * так что записи, закоммиченные во время сведения, дождутся следующего раза.
+     * @return количество обработанных записей.
+     */
+    @Scheduled(fixedDelayString = "${transfer.settlement.interval:1000}")
+    @Transactional
+    public int settle() {
+        List<PendingSettlement> batch = pendingRepository.findByOrderByIdAsc(Limit.of(batchSize));
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        // суммируем по счетам; обновляем в порядке id, чтобы не ловить взаимных блокировок
+        Map<Long, BigDecimal> totals = new TreeMap<>();
+        batch.forEach(p -> totals.merge(p.getAccountId(), p.getAmount(), BigDecimal::add));
+        totals.forEach(accountRepository::addAmount);
+        pendingRepository.deleteAllInBatch(batch);
+        // балансы владельцев изменились - сбросить кэши после коммита
+        eventPublisher.publishEvent(new AccountsChangedEvent(accountRepository.findUserIdsByAccountIds(totals.keySet())));
+        System.out.println("SettlementService: сведено " + batch.size() + " зачислений по " + totals.size() + " счетам");
+        return batch.size();
+    }
+}
@@ -0,0 +1,145 @@
+package mr.demonid.service.user.services;
+
+import mr.demonid.service.user.domain.Account;
+import mr.demonid.service.user.domain.AccountStripe;
+import mr.demonid.service.user.exceptions.BadAccountException;
+import mr.demonid.service.user.exceptions.NotEnoughAmountException;
+import mr.demonid.service.user.repository.AccountRepository;
+import mr.demonid.service.user.repository.AccountStripeRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Операции со счетами, баланс которых разбит на полосы (account_stripes).
+ * Баланс такого счёта = accounts.amount + сумма по полосам.
+ * Зачисление идёт на случайную полосу, списание - с первой (начиная со случайной)
+ * полосы, на которой хватает средств. Так параллельные переводы блокируют
+ * разные строки и пропускная способность растёт с числом полос.
+ * Если ни одна полоса не может покрыть списание, все полосы счёта блокируются,
+ * средства (вместе с основным балансом) сводятся и заново делятся поровну.
+ */
+@Service
+public class StripedAccountService {
+
+    private final AccountRepository accountRepository;
+    private final AccountStripeRepository stripeRepository;
+    private final int maxStripes;
+
+    public StripedAccountService(AccountRepository accountRepository,
+                                 AccountStripeRepository stripeRepository,
+                                 @Value("${transfer.stripes.max:64}") int maxStripes) {
+        this.accountRepository = accountRepository;
+        this.stripeRepository = stripeRepository;
+        this.maxStripes = maxStripes;
+    }
+
+    /**
+     * Меняет количество полос счёта, перераспределяя весь баланс.
+     * @param count Новое количество полос, 0 - вернуть весь баланс в accounts.amount.
+     */
+    @Transactional
+    public void setStripes(Long accountId, int count) {
+        if (count < 0 || count > maxStripes) {
+            throw new BadAccountException();
+        }
+        Account account = accountRepository.lockById(accountId).orElseThrow(BadAccountException::new);
+        List<AccountStripe> stripes = stripeRepository.lockAllByAccountId(accountId);
+        BigDecimal total = sum(stripes).add(nvl(account.getAmount()));
+
+        stripeRepository.deleteAllInBatch(stripes);
+        if (count > 0) {
+            List<AccountStripe> created = new ArrayList<>(count);
+            List<BigDecimal> parts = split(total, count);
+            for (int i = 0; i < count; i++) {
+                created.add(new AccountStripe(accountId, i, parts.get(i)));
+            }
+            stripeRepository.saveAll(created);
+            account.setAmount(BigDecimal.ZERO);
+        } else {
+            account.setAmount(total);
+        }
+        account.setStripes(count);
+        System.out.println("StripedAccountService: счёт " + accountId + " разбит на " + count + " полос(ы)");
+    }
+
+    /**
+     * Зачисление на случайную полосу.
+     */
+    public void credit(Account account, BigDecimal amount) {
+        int stripe = ThreadLocalRandom.current().nextInt(account.getStripes());
+        if (stripeRepository.credit(account.getId(), stripe, amount) == 0) {
+            // полосы успели перестроить - зачисляем на основной баланс
+            accountRepository.addAmount(account.getId(), amount);
+        }
+    }
+
+    /**
+     * Списание с полосы, на которой хватает средств, при необходимости - с перебалансировкой.
+     * Для счёта без полос - сразу списание под блокировкой с проверкой всего баланса.
+     */
+    public void debit(Account account, BigDecimal amount) throws NotEnoughAmountException {
+        int count = account.getStripes();
+        if (count > 0) {
+            int start = ThreadLocalRandom.current().nextInt(count);
+            for (int i = 0; i < count; i++) {
+                if (stripeRepository.debit(account.getId(), (start + i) % count, amount) == 1) {
+                    return;
+                }
+            }
+        }
+        rebalance(account.getId(), amount);
+    }
+
+    /**
+     * Сводит основной баланс и все полосы счёта, списывает сумму и делит остаток поровну.
+     */
+    private void rebalance(Long accountId, BigDecimal amount) throws NotEnoughAmountException {
+        // порядок блокировок тот же, что и в setStripes(): счёт, затем полосы
+        accountRepository.lockById(accountId).orElseThrow(BadAccountException::new);
+        List<AccountStripe> stripes = stripeRepository.lockAllByAccountId(accountId);
+        // сущность счёта могла быть загружена раньше, поэтому баланс читаем запросом
+        BigDecimal base = nvl(accountRepository.findAmountById(accountId));
+        BigDecimal total = sum(stripes).add(base);
+        if (amount.compareTo(total) > 0) {
+            throw new NotEnoughAmountException();
+        }
+        if (stripes.isEmpty()) {
+            accountRepository.addAmount(accountId, amount.negate());
+            return;
+        }
+        List<BigDecimal> parts = split(total.subtract(amount), stripes.size());
+        for (int i = 0; i < stripes.size(); i++) {
+            stripes.get(i).setAmount(parts.get(i));
+        }
+        accountRepository.addAmount(accountId, base.negate());
+        System.out.println("StripedAccountService: перебалансировка счёта " + accountId);
+    }
+
+    /**
+     * Делит сумму на count равных частей (с точностью до копейки), остаток - в первую часть.
+     */
+    static List<BigDecimal> split(BigDecimal total, int count) {
+        BigDecimal part = total.divide(BigDecimal.valueOf(count), 2, RoundingMode.DOWN);
+        List<BigDecimal> parts = new ArrayList<>(count);
+        parts.add(total.subtract(part.multiply(BigDecimal.valueOf(count - 1))));
+        for (int i = 1; i < count; i++) {
+            parts.add(part);
+        }
+        return parts;
+    }
+
+    private static BigDecimal sum(List<AccountStripe> stripes) {
+        return stripes.stream().map(AccountStripe::getAmount).reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    private static BigDecimal nvl(BigDecimal value) {
+        return value == null ? BigDecimal.ZERO : value;
+    }
+}
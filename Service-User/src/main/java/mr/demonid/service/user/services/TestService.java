@@ -5,28 +5,27 @@ import mr.demonid.service.user.domain.Account;
 import mr.demonid.service.user.domain.Role;
 import mr.demonid.service.user.domain.User;
 import mr.demonid.service.user.dto.RegistrationRequest;
-import mr.demonid.service.user.repository.AccountRepository;
+import mr.demonid.service.user.events.AccountsChangedEvent;
 import mr.demonid.service.user.repository.RoleRepository;
 import mr.demonid.service.user.repository.UserRepository;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.Arrays;
-import java.util.Random;
+import java.util.List;
 
 @Service
 @AllArgsConstructor
 public class TestService {
 
-    private static Random random = new Random();
-
-
     private UserRepository userRepository;
     private RoleService roleService;
     private RoleRepository roleRepository;
-    private AccountRepository accountRepository;
+    private AccountNumberAllocator accountNumberAllocator;
+    private ApplicationEventPublisher eventPublisher;
 
 
     @Transactional
@@ -41,9 +40,12 @@ public class TestService {
         user.setUsername(reques.getUsername());
         user.setPassword(reques.getPassword());
         user.setEmail(reques.getEmail());
-        user.addRole(roleService.getRole("USER"));
+        // роль из справочника в памяти: берем только ссылку, без запроса в БД
+        user.getRoles().add(roleRepository.getReferenceById(roleService.getRoleId("USER")));
         user.addAccount(createNewAccount());
-        return userRepository.save(user);
+        user = userRepository.save(user);
+        eventPublisher.publishEvent(new AccountsChangedEvent(List.of(user.getId())));
+        return user;
     }
 
     @Transactional
@@ -57,6 +59,7 @@ public class TestService {
                 role.setName(name);
                 role.setDescription("");
                 role = roleRepository.save(role);
+                roleService.invalidate();
                 System.out.println("-- add role '" + role.getName() + "'");
             }
         });
@@ -67,12 +70,8 @@ public class TestService {
      */
     public Account createNewAccount() {
         Account account = new Account();
-        // добавляем имя счета (карты, тут это не важно)
-        do {
-            Long nameStr = random.nextLong(100000000, 999999999 + 1);
-            account.setName(String.format(
-                    "%03d-%03d-%03d", nameStr / 1000000L, (nameStr % 1000000L) / 1000, nameStr % 1000));
-        } while (accountRepository.existsAccountByName((account.getName())));
+        // добавляем имя счета (карты, тут это не важно), номер уникален без проверки в БД
+        account.setName(accountNumberAllocator.nextAccountNumber());
 
         // для примера закидываем денежек
         account.setAmount(BigDecimal.valueOf(1000));
@@ -0,0 +1,270 @@
+package mr.demonid.service.user.services;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import mr.demonid.service.user.domain.TransferHistory;
+import mr.demonid.service.user.events.TransferCompletedEvent;
+import mr.demonid.service.user.repository.TransferHistoryRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Журнал переводов.
+ * После коммита перевода запись только кладётся в ограниченную очередь,
+ * а фоновый поток пишет накопившиеся записи в transfer_history пачками.
+ * Пачка, которую не удалось записать (например, БД недоступна), повторяется,
+ * а повторы отсекаются по orderId (проверка пачки одним запросом и unique в БД).
+ * Гарантия у журнала одна: не больше одной записи на orderId.
+ * Полноты нет: при переполненной очереди запись отбрасывается
+ * (счетчик transfer.journal.dropped), а при падении процесса теряются записи,
+ * еще не дошедшие до БД. Сами переводы при этом зафиксированы, и на время
+ * ответа на перевод журнал не влияет никогда - в потоке перевода нет обращений к БД.
+ * История здесь - вспомогательные данные, а не учет: полную гарантию дала бы
+ * только вставка в транзакции перевода, ценой его задержки.
+ */
+@Service
+public class TransferJournal implements MeterBinder {
+
+    private static final long RETRY_DELAY_MS = 1000;
+    private static final long DROP_LOG_EVERY = 1000;            // сообщение в лог на каждую тысячу отброшенных
+    private static final String UNIQUE_VIOLATION = "23505";     // SQLState нарушения unique (H2, PostgreSQL)
+
+    private final TransferHistoryRepository historyRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final BlockingQueue<TransferHistory> queue;
+    private final int batchSize;
+
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    private volatile boolean running;
+    private Thread worker;
+
+    public TransferJournal(TransferHistoryRepository historyRepository,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${transfer.journal.capacity:10000}") int capacity,
+                           @Value("${transfer.journal.batch-size:500}") int batchSize) {
+        this.historyRepository = historyRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+    }
+
+    // переводы движка (transfer.engine.mode=memory) идут без транзакции - тогда пишем сразу
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTransfer(TransferCompletedEvent event) {
+        append(new TransferHistory(event.orderId(), event.fromUserId(), event.recipientId(), event.amount(), LocalDateTime.now()));
+    }
+
+    /**
+     * Добавляет запись в журнал, не дожидаясь записи в БД.
+     * Если очередь полна (БД не успевает или недоступна), запись отбрасывается.
+     */
+    public void append(TransferHistory record) {
+        if (!queue.offer(record)) {
+            long count = dropped.incrementAndGet();
+            if (count % DROP_LOG_EVERY == 1) {
+                System.out.println("TransferJournal: очередь полна, запись order " + record.getOrderId()
+                        + " отброшена (всего отброшено: " + count + ")");
+            }
+        }
+    }
+
+    /**
+     * История переводов пользователя (входящих и исходящих), от новых к старым.
+     * @param beforeId Id последней записи предыдущей страницы, null - с самой новой.
+     */
+    public List<TransferHistory> getHistory(Long userId, Long beforeId, int limit) {
+        long before = beforeId == null ? Long.MAX_VALUE : beforeId;
+        // два прохода по индексам (from_user_id, id) и (recipient_id, id) вместо OR
+        List<TransferHistory> outgoing = historyRepository.findByFromUserIdAndIdLessThanOrderByIdDesc(userId, before, Limit.of(limit));
+        List<TransferHistory> incoming = historyRepository.findByRecipientIdAndIdLessThanOrderByIdDesc(userId, before, Limit.of(limit));
+        // перевод самому себе попадет в обе выборки - оставляем одну запись
+        Map<Long, TransferHistory> merged = new TreeMap<>(Comparator.reverseOrder());
+        Stream.concat(outgoing.stream(), incoming.stream()).forEach(h -> merged.putIfAbsent(h.getId(), h));
+        return merged.values().stream().limit(limit).toList();
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        worker = new Thread(this::run, "transfer-journal-writer");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        worker.interrupt();
+        worker.join(TimeUnit.SECONDS.toMillis(5));
+        flush();
+    }
+
+    /**
+     * Записывает в БД всё, что сейчас есть в очереди.
+     */
+    public void flush() {
+        List<TransferHistory> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    private void run() {
+        List<TransferHistory> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                if (batch.isEmpty()) {
+                    TransferHistory first = queue.poll(1, TimeUnit.SECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                    queue.drainTo(batch, batchSize - 1);
+                }
+                write(batch);
+                batch.clear();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                // пачку не отбрасываем, повторим после паузы
+                System.out.println("TransferJournal: ошибка записи журнала: " + e.getMessage());
+                try {
+                    Thread.sleep(RETRY_DELAY_MS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        // недописанную пачку вернем в очередь, её допишет stop()
+        batch.forEach(queue::offer);
+    }
+
+    /**
+     * Пишет пачку, пропуская заказы, которые уже есть в журнале.
+     */
+    void write(List<TransferHistory> batch) {
+        Map<UUID, TransferHistory> byOrder = new LinkedHashMap<>();
+        List<TransferHistory> records = new ArrayList<>(batch.size());
+        for (TransferHistory record : batch) {
+            if (record.getOrderId() == null) {
+                records.add(record);
+            } else if (byOrder.putIfAbsent(record.getOrderId(), record) != null) {
+                duplicates.incrementAndGet();
+            }
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                Set<UUID> existing = byOrder.isEmpty() ? Set.of() : historyRepository.findExistingOrderIds(byOrder.keySet());
+                byOrder.forEach((orderId, record) -> {
+                    if (existing.contains(orderId)) {
+                        duplicates.incrementAndGet();
+                    } else {
+                        records.add(record);
+                    }
+                });
+                // id могли остаться от неудачной попытки - пусть выдадутся заново
+                records.forEach(r -> r.setId(null));
+                historyRepository.saveAll(records);
+            });
+            written.addAndGet(records.size());
+        } catch (DataIntegrityViolationException e) {
+            // запись уже есть в БД (например, пачка повторяется после сбоя на коммите) - пишем по одной
+            for (TransferHistory record : batch) {
+                writeOne(record);
+            }
+        }
+    }
+
+    private void writeOne(TransferHistory record) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                if (record.getOrderId() != null && !historyRepository.findExistingOrderIds(List.of(record.getOrderId())).isEmpty()) {
+                    duplicates.incrementAndGet();
+                    return;
+                }
+                record.setId(null);
+                historyRepository.save(record);
+                written.incrementAndGet();
+            });
+        } catch (DataIntegrityViolationException e) {
+            if (isDuplicateKey(e)) {
+                duplicates.incrementAndGet();
+            } else {
+                // not null, внешний ключ и т.п. - повтор не поможет, запись отбрасываем, но не молча
+                rejected.incrementAndGet();
+                System.out.println("TransferJournal: запись отклонена БД (order " + record.getOrderId() + ", "
+                        + record.getFromUserId() + " -> " + record.getRecipientId() + ", " + record.getAmount() + "): " + e.getMostSpecificCause().getMessage());
+            }
+        }
+    }
+
+    /**
+     * Нарушение уникальности (повтор orderId), а не другое ограничение БД.
+     */
+    static boolean isDuplicateKey(DataIntegrityViolationException e) {
+        if (e instanceof DuplicateKeyException) {
+            return true;
+        }
+        for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException sql && sql.getSQLState() != null) {
+                return UNIQUE_VIOLATION.equals(sql.getSQLState());
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("transfer.journal.queue.depth", queue, BlockingQueue::size)
+                .description("Transfer history records waiting to be written")
+                .register(registry);
+        FunctionCounter.builder("transfer.journal.written", written, AtomicLong::get)
+                .register(registry);
+        FunctionCounter.builder("transfer.journal.duplicates", duplicates, AtomicLong::get)
+                .description("Records skipped because their orderId is already in the journal")
+                .register(registry);
+        FunctionCounter.builder("transfer.journal.dropped", dropped, AtomicLong::get)
+                .description("Records dropped because the queue was full")
+                .register(registry);
+        FunctionCounter.builder("transfer.journal.rejected", rejected, AtomicLong::get)
+                .description("Records rejected by the database (not as a duplicate)")
+                .register(registry);
+    }
+}
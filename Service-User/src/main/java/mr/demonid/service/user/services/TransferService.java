@@ -1,55 +1,214 @@
 package mr.demonid.service.user.services;
 
-import lombok.AllArgsConstructor;
 import mr.demonid.service.user.domain.Account;
-import mr.demonid.service.user.domain.User;
 import mr.demonid.service.user.dto.PaymentRequest;
+import mr.demonid.service.user.dto.TransferResult;
+import mr.demonid.service.user.engine.BalanceEngine;
+import mr.demonid.service.user.events.TransferCompletedEvent;
 import mr.demonid.service.user.exceptions.BadAccountException;
+import mr.demonid.service.user.exceptions.BatchTransferException;
 import mr.demonid.service.user.exceptions.NotEnoughAmountException;
 import mr.demonid.service.user.exceptions.NotFoundException;
 import mr.demonid.service.user.exceptions.UserException;
+import mr.demonid.service.user.repository.AccountRepository;
 import mr.demonid.service.user.repository.UserRepository;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
-@AllArgsConstructor
+/**
+ * Переводы между основными счетами пользователей.
+ * Транзакция открывается только для переводов через БД: в режиме движка
+ * (transfer.engine.mode=memory) вызывающий ждет fsync журнала движка,
+ * и держать все это время соединение JDBC незачем. События о переводах
+ * движка публикуются без транзакции, их слушатели срабатывают сразу
+ * (fallbackExecution), т.к. перевод к этому моменту уже в журнале.
+ */
 @Service
 public class TransferService {
 
-    private UserRepository userRepository;
+    private final UserRepository userRepository;
+    private final AccountRepository accountRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final SettlementService settlementService;
+    private final StripedAccountService stripedAccountService;
+    private final ObjectProvider<BalanceEngine> balanceEngine;
+    private final TransactionTemplate transactionTemplate;
+
+    public TransferService(UserRepository userRepository,
+                           AccountRepository accountRepository,
+                           ApplicationEventPublisher eventPublisher,
+                           SettlementService settlementService,
+                           StripedAccountService stripedAccountService,
+                           ObjectProvider<BalanceEngine> balanceEngine,
+                           PlatformTransactionManager transactionManager) {
+        this.userRepository = userRepository;
+        this.accountRepository = accountRepository;
+        this.eventPublisher = eventPublisher;
+        this.settlementService = settlementService;
+        this.stripedAccountService = stripedAccountService;
+        this.balanceEngine = balanceEngine;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
 
 
-    @Transactional
     public void transfer(PaymentRequest request) throws UserException {
-        User userFrom = userRepository.findById(request.getFromUserId()).orElseThrow(NotFoundException::new);
-        User userTo = userRepository.findById(request.getRecipientId()).orElseThrow(NotFoundException::new);
+        BalanceEngine engine = balanceEngine.getIfAvailable();
+        if (engine != null) {
+            // балансы в памяти движка (transfer.engine.mode=memory), строки accounts не читаются и не блокируются
+            engine.transfer(request);
+            eventPublisher.publishEvent(new TransferCompletedEvent(request.getOrderId(), request.getFromUserId(), request.getRecipientId(), request.getTransferAmount()));
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            // читаем только строки счетов, без пользователей и их ролей и без блокировки:
+            // балансы меняются атомарными UPDATE, прочитанные суммы не записываются обратно
+            Account accountFrom = getPaymentAccount(request.getFromUserId());
+            Account accountTo = getPaymentAccount(request.getRecipientId());
+            move(accountFrom, accountTo, request, false);
+        });
+    }
 
-        // проверяем возможность операции
-        BigDecimal amount = request.getTransferAmount();
-        Account accountFrom = userFrom.getPaymentAccount();
-        Account accountTo = userTo.getPaymentAccount();
-        if (accountFrom == null || accountTo == null) {
-            throw new BadAccountException();
+    /**
+     * Пакет переводов в одной транзакции.
+     * Счета всех участников читаются одним запросом с блокировкой в порядке id
+     * (кроме получателей с отложенным зачислением - их строки не блокируются);
+     * одиночный перевод меняет строки в том же порядке, так что с пакетом они не взаимоблокируются.
+     * В атомарном режиме ошибка любого перевода отменяет весь пакет (BatchTransferException),
+     * иначе неудачный перевод пропускается: проверки выполняются до изменений,
+     * поэтому он ничего не успевает записать.
+     * @return результаты в порядке переводов.
+     */
+    public List<TransferResult> transferAll(List<PaymentRequest> transfers, boolean atomic) {
+        BalanceEngine engine = balanceEngine.getIfAvailable();
+        if (engine != null) {
+            List<TransferResult> results = engine.transferAll(transfers, atomic);
+            for (int i = 0; i < transfers.size(); i++) {
+                if (results.get(i).isSuccess()) {
+                    PaymentRequest request = transfers.get(i);
+                    eventPublisher.publishEvent(new TransferCompletedEvent(request.getOrderId(), request.getFromUserId(), request.getRecipientId(), request.getTransferAmount()));
+                }
+            }
+            return results;
         }
-        if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0 || amount.compareTo(accountFrom.getAmount()) > 0) {
+        return transactionTemplate.execute(status -> {
+            Map<Long, Account> accounts = lockAccounts(transfers);
+            List<TransferResult> results = new ArrayList<>(transfers.size());
+            for (int i = 0; i < transfers.size(); i++) {
+                PaymentRequest request = transfers.get(i);
+                try {
+                    move(account(accounts, request.getFromUserId()), account(accounts, request.getRecipientId()), request, true);
+                    results.add(TransferResult.ok(request.getOrderId()));
+                } catch (UserException e) {
+                    if (atomic) {
+                        throw new BatchTransferException(transfers, i, e.getMessage());
+                    }
+                    results.add(TransferResult.failed(request.getOrderId(), e.getMessage()));
+                }
+            }
+            return results;
+        });
+    }
+
+    /**
+     * Списание и зачисление по уже прочитанным счетам.
+     * Балансы меняются атомарными UPDATE (списание - только при достатке средств),
+     * а не записью прочитанной суммы: иначе перевод затер бы изменения,
+     * сделанные после чтения (сведение зачислений, перестройка полос).
+     * @param locked Строки счетов уже заблокированы (пакет): порядок изменений не важен.
+     */
+    private void move(Account accountFrom, Account accountTo, PaymentRequest request, boolean locked) throws UserException {
+        BigDecimal amount = request.getTransferAmount();
+        if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) {
             throw new NotEnoughAmountException();
         }
-        // обновляем и сохраняем данные
-        accountFrom.setAmount(accountFrom.getAmount().subtract(amount));
-        accountTo.setAmount(accountTo.getAmount().add(amount));
-        userRepository.save(userTo);
-        userRepository.save(userFrom);
-//        storeHistory(request);
+        boolean deferred = settlementService.isDeferred(request.getRecipientId());
+        // строки accounts меняются в порядке id и раньше полос, как их блокирует пакет;
+        // зачисление первым безопасно: при нехватке средств исключение откатит транзакцию вместе с ним
+        if (!locked && !deferred && !accountTo.isStriped() && (accountFrom.isStriped() || accountTo.getId() < accountFrom.getId())) {
+            credit(accountTo, amount);
+            debit(accountFrom, amount);
+        } else {
+            debit(accountFrom, amount);
+            if (deferred) {
+                // горячий счёт (магазин): не блокируем его строку, зачисление сведётся позже
+                settlementService.defer(accountTo, request.getOrderId(), amount);
+            } else {
+                credit(accountTo, amount);
+            }
+        }
+        // слушатели (инвалидация кэшей, журнал переводов) сработают после коммита
+        eventPublisher.publishEvent(new TransferCompletedEvent(request.getOrderId(), request.getFromUserId(), request.getRecipientId(), amount));
+    }
+
+    private void debit(Account account, BigDecimal amount) throws UserException {
+        if (account.isStriped()) {
+            stripedAccountService.debit(account, amount);
+        } else if (accountRepository.debit(account.getId(), amount) == 0) {
+            // основного баланса не хватило; счёт могли только что разбить на полосы,
+            // поэтому окончательно проверяем весь баланс под блокировкой
+            stripedAccountService.debit(account, amount);
+        }
     }
-}
 
+    private void credit(Account account, BigDecimal amount) {
+        if (account.isStriped()) {
+            stripedAccountService.credit(account, amount);
+        } else {
+            accountRepository.credit(account.getId(), amount);
+        }
+    }
+
+    /**
+     * Основные счета участников пакета по id пользователя.
+     */
+    private Map<Long, Account> lockAccounts(List<PaymentRequest> transfers) {
+        Set<Long> locked = new HashSet<>();
+        Set<Long> deferred = new HashSet<>();
+        for (PaymentRequest request : transfers) {
+            if (request.getFromUserId() != null) {
+                locked.add(request.getFromUserId());
+            }
+            if (request.getRecipientId() != null) {
+                (settlementService.isDeferred(request.getRecipientId()) ? deferred : locked).add(request.getRecipientId());
+            }
+        }
+        deferred.removeAll(locked);
+        Map<Long, Account> accounts = new HashMap<>();
+        if (!locked.isEmpty()) {
+            accountRepository.lockPrimaryByUserIds(locked).forEach(a -> accounts.put(a.getUserParen().getId(), a));
+        }
+        if (!deferred.isEmpty()) {
+            accountRepository.findPrimaryByUserIds(deferred).forEach(a -> accounts.put(a.getUserParen().getId(), a));
+        }
+        return accounts;
+    }
+
+    private Account account(Map<Long, Account> accounts, Long userId) throws UserException {
+        Account account = userId == null ? null : accounts.get(userId);
+        if (account == null) {
+            throw userId != null && userRepository.existsById(userId) ? new BadAccountException() : new NotFoundException();
+        }
+        return account;
+    }
+
+    /**
+     * Основной счет пользователя.
+     * Пользователя читаем, только если счета нет - чтобы отличить его отсутствие от отсутствия счета.
+     */
+    private Account getPaymentAccount(Long userId) throws UserException {
+        return accountRepository.findPrimaryByUserId(userId).orElseThrow(() ->
+                userId != null && userRepository.existsById(userId) ? new BadAccountException() : new NotFoundException());
+    }
+}
 
-//    private void storeHistory(User from, User to, BigDecimal amount) {
-//        TransactionOperation op = new TransactionOperation();
-//        op.setFromUserId(from.getId());
-//        op.setRecipientId(to.getId());
-//        op.setTransferAmount(amount);
-//        historyRepository.save(op);
-//    }
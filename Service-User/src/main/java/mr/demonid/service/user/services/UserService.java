@@ -3,13 +3,22 @@ package mr.demonid.service.user.services;
 import lombok.AllArgsConstructor;
 import mr.demonid.service.user.domain.Account;
 import mr.demonid.service.user.domain.User;
+import mr.demonid.service.user.dto.UserInfo;
+import mr.demonid.service.user.dto.UserSummary;
+import mr.demonid.service.user.engine.BalanceEngine;
 import mr.demonid.service.user.exceptions.NotFoundException;
 import mr.demonid.service.user.exceptions.UserException;
+import mr.demonid.service.user.repository.AccountRepository;
 import mr.demonid.service.user.repository.UserRepository;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 
+import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 
 @Service
@@ -17,25 +26,100 @@ import java.util.Optional;
 public class UserService {
 
     private UserRepository userRepository;
+    private AccountRepository accountRepository;
+    private UserSummaryCache userSummaryCache;
+    private ObjectProvider<BalanceEngine> balanceEngine;
 
+    /**
+     * Основной счет пользователя (одна строка из accounts).
+     */
     public Account getUserAccount(Long userId) throws UserException {
-        Optional<User> userOptional = userRepository.findUserById(userId);
-        if (userOptional.isEmpty()) {
+        return accountRepository.findPrimaryByUserId(userId).orElseThrow(NotFoundException::new);
+    }
+
+    /**
+     * Краткая информация о пользователе с балансом основного счета.
+     */
+    public UserInfo getUserInfo(Long userId) throws UserException {
+        UserSummary summary = getUserSummary(userId);
+        return new UserInfo(summary.getUserId(), summary.getUsername(), summary.getBalance());
+    }
+
+    /**
+     * Краткие данные пользователя и баланс основного счета, через кэш.
+     * При включенном движке балансов баланс берется из него: в БД он отстает до снимка.
+     */
+    public UserSummary getUserSummary(Long userId) throws UserException {
+        UserSummary summary = userSummaryCache.get(userId, id -> userRepository.findUserSummaryById(id).orElse(null));
+        if (summary == null) {
             throw new NotFoundException();
         }
-        User user = userOptional.get();
-        // по дефолту активным будет первый счет
-        Account account = user.getPaymentAccount();
-        if (account == null || account.getId() == null) {
-            throw new NotFoundException();
+        return withEngineBalance(summary, balanceEngine.getIfAvailable());
+    }
+
+    /**
+     * Краткие данные нескольких пользователей: из кэша, остальные одним запросом.
+     * Неизвестные id пропускаются.
+     */
+    public List<UserSummary> getUserSummaries(Collection<Long> userIds) {
+        BalanceEngine engine = balanceEngine.getIfAvailable();
+        return userSummaryCache.getAll(userIds, userRepository::findUserSummariesByIds).stream()
+                .map(summary -> withEngineBalance(summary, engine))
+                .toList();
+    }
+
+    private static UserSummary withEngineBalance(UserSummary summary, BalanceEngine engine) {
+        BigDecimal balance = engine == null ? null : engine.getBalance(summary.getAccountId());
+        if (balance != null) {
+            return new UserSummary(summary.getUserId(), summary.getUsername(), summary.getAccountId(), balance);
         }
-        return account;
+        return summary;
     }
 
+    /**
+     * Все пользователи со счетами, как они хранятся в БД.
+     * При включенном движке балансов accounts.amount отстает до снимка.
+     */
     public List<User> getAllUsers() throws UserException {
         return userRepository.findAllUsers();
     }
 
+    /**
+     * Страница краткой информации о пользователях, по возрастанию id.
+     * При включенном движке балансов баланс берется из него, как и в getUserSummary.
+     * @param afterId Последний id предыдущей страницы (null или 0 - с начала).
+     */
+    public List<UserInfo> getUsersInfo(Long afterId, int limit) {
+        List<UserInfo> page = userRepository.findUserInfoAfter(afterId == null ? 0L : afterId, Limit.of(limit));
+        BalanceEngine engine = balanceEngine.getIfAvailable();
+        if (engine != null) {
+            for (UserInfo info : page) {
+                BigDecimal balance = engine.getUserBalance(info.getId());
+                if (balance != null) {
+                    info.setBalance(balance);
+                }
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Проходит по всем пользователям страницами по batchSize записей.
+     * Каждая страница читается отдельным запросом, в памяти одновременно
+     * находится только одна страница.
+     */
+    public void forEachUsersInfo(int batchSize, Consumer<List<UserInfo>> consumer) {
+        long afterId = 0L;
+        List<UserInfo> page;
+        do {
+            page = getUsersInfo(afterId, batchSize);
+            if (!page.isEmpty()) {
+                consumer.accept(page);
+                afterId = page.get(page.size() - 1).getId();
+            }
+        } while (page.size() == batchSize);
+    }
+
     public User getUserById(Long userId) {
         Optional<User> userOptional = userRepository.findUserById(userId);
         if (userOptional.isEmpty()) {
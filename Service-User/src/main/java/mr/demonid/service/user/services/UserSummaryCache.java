@@ -0,0 +1,209 @@
+package mr.demonid.service.user.services;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import mr.demonid.service.user.dto.UserSummary;
+import mr.demonid.service.user.events.AccountsChangedEvent;
+import mr.demonid.service.user.events.TransferCompletedEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+
+/**
+ * Кэш кратких данных пользователей и балансов (read-through).
+ * Ограничен по размеру: вытесняются давно не читавшиеся записи (LRU по сегментам,
+ * чтобы параллельные чтения не упирались в одну блокировку).
+ * Запись сбрасывается после коммита каждого перевода, сведения зачислений и регистрации.
+ * Загрузка, начавшаяся до сброса, в кэш не попадает (проверка по версии ключа),
+ * а TTL ограничивает устаревание при изменениях с других экземпляров сервиса.
+ */
+@Service
+public class UserSummaryCache implements MeterBinder {
+
+    private static final int SEGMENTS = 16;
+    private static final int VERSION_SLOTS = 1024;
+
+    private final long ttlNanos;
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final AtomicLongArray versions = new AtomicLongArray(VERSION_SLOTS);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public UserSummaryCache(@Value("${user.summary-cache.ttl:10s}") Duration ttl,
+                            @Value("${user.summary-cache.max-size:10000}") int maxSize) {
+        this.ttlNanos = ttl.toNanos();
+        int segmentSize = Math.max(1, maxSize / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(segmentSize);
+        }
+    }
+
+    /**
+     * Данные из кэша, а при их отсутствии - из loader (и в кэш).
+     * Если loader вернул null, ничего не кэшируется.
+     */
+    public UserSummary get(Long userId, Function<Long, UserSummary> loader) {
+        Segment segment = segment(userId);
+        Entry entry;
+        synchronized (segment) {
+            entry = segment.get(userId);
+        }
+        if (entry != null && System.nanoTime() - entry.created() <= ttlNanos) {
+            hits.incrementAndGet();
+            return entry.summary();
+        }
+        misses.incrementAndGet();
+        int slot = slot(userId);
+        long version = versions.get(slot);
+        UserSummary summary = loader.apply(userId);
+        if (summary != null) {
+            synchronized (segment) {
+                // проверка и запись под той же блокировкой, что и сброс
+                if (versions.get(slot) == version) {
+                    segment.put(userId, new Entry(summary, System.nanoTime()));
+                }
+            }
+        }
+        return summary;
+    }
+
+    /**
+     * Данные нескольких пользователей: найденные в кэше - из него,
+     * остальные - одним вызовом loader (и в кэш).
+     * @return найденные данные, в порядке userIds; отсутствующих нет в результате.
+     */
+    public List<UserSummary> getAll(Collection<Long> userIds, Function<Collection<Long>, List<UserSummary>> loader) {
+        Map<Long, UserSummary> found = new LinkedHashMap<>();
+        Map<Long, Long> missing = new LinkedHashMap<>();        // id -> версия на момент промаха
+        long now = System.nanoTime();
+        for (Long userId : userIds) {
+            if (userId == null || found.containsKey(userId) || missing.containsKey(userId)) {
+                continue;
+            }
+            Segment segment = segment(userId);
+            Entry entry;
+            synchronized (segment) {
+                entry = segment.get(userId);
+            }
+            if (entry != null && now - entry.created() <= ttlNanos) {
+                hits.incrementAndGet();
+                found.put(userId, entry.summary());
+            } else {
+                misses.incrementAndGet();
+                missing.put(userId, versions.get(slot(userId)));
+                found.put(userId, null);                        // место в порядке результата
+            }
+        }
+        if (!missing.isEmpty()) {
+            for (UserSummary summary : loader.apply(missing.keySet())) {
+                Long userId = summary.getUserId();
+                Long version = missing.get(userId);
+                if (version == null) {
+                    continue;
+                }
+                found.put(userId, summary);
+                Segment segment = segment(userId);
+                synchronized (segment) {
+                    if (versions.get(slot(userId)) == version) {
+                        segment.put(userId, new Entry(summary, System.nanoTime()));
+                    }
+                }
+            }
+        }
+        return found.values().stream().filter(Objects::nonNull).toList();
+    }
+
+    public void invalidate(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        Segment segment = segment(userId);
+        synchronized (segment) {
+            versions.incrementAndGet(slot(userId));
+            if (segment.remove(userId) != null) {
+                invalidations.incrementAndGet();
+            }
+        }
+    }
+
+    public void invalidateAll(Collection<Long> userIds) {
+        userIds.forEach(this::invalidate);
+    }
+
+    public long size() {
+        long size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    // переводы движка (transfer.engine.mode=memory) идут без транзакции - тогда инвалидируем сразу
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTransfer(TransferCompletedEvent event) {
+        invalidateAll(List.of(event.fromUserId(), event.recipientId()));
+    }
+
+    @TransactionalEventListener
+    public void onAccountsChanged(AccountsChangedEvent event) {
+        invalidateAll(event.userIds());
+    }
+
+    private Segment segment(Long userId) {
+        return segments[(userId.hashCode() & 0x7fffffff) % SEGMENTS];
+    }
+
+    private static int slot(Long userId) {
+        return (Long.hashCode(userId) * 0x9E3779B9 >>> 22) & (VERSION_SLOTS - 1);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("cache.size", this, UserSummaryCache::size).tag("cache", "users").register(registry);
+        FunctionCounter.builder("cache.gets", hits, AtomicLong::get).tag("cache", "users").tag("result", "hit").register(registry);
+        FunctionCounter.builder("cache.gets", misses, AtomicLong::get).tag("cache", "users").tag("result", "miss").register(registry);
+        FunctionCounter.builder("cache.evictions", evictions, AtomicLong::get).tag("cache", "users").register(registry);
+        FunctionCounter.builder("cache.invalidations", invalidations, AtomicLong::get).tag("cache", "users").register(registry);
+    }
+
+    private record Entry(UserSummary summary, long created) {
+    }
+
+    /**
+     * Сегмент кэша: LinkedHashMap в порядке доступа, вытесняет самую старую запись.
+     */
+    private class Segment extends LinkedHashMap<Long, Entry> {
+        private final int capacity;
+
+        Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+            if (size() > capacity) {
+                evictions.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    }
+}
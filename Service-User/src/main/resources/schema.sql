@@ -1,13 +1,19 @@
+-- Последовательности для id: Hibernate берет из них по 50 значений за раз (pooled-lo)
+-- и может пакетировать вставки; значения ниже 100 оставлены для начальных данных.
+create sequence roles_seq start with 100 increment by 50;
+create sequence users_seq start with 100 increment by 50;
+create sequence accounts_seq start with 100 increment by 50;
+
 -- Роли
 create table roles (
-    id bigint generated by default as identity primary key,
+    id bigint primary key,
     name varchar(255) not null unique,
     description varchar(255)
 );
 
 -- Пользователи
 create table users (
-    id bigint generated by default as identity primary key,
+    id bigint primary key,
     username varchar(255) not null unique,
     password varchar(255) not null,
     email varchar(255)
@@ -24,10 +30,63 @@ create table users_roles (
 
 -- Счета
 create table accounts (
-    id bigint generated by default as identity primary key,
+    id bigint primary key,
     name varchar(255) not null unique,
     amount numeric(38,2),
+    stripes int default 0 not null,
     creation date not null,
+    is_primary boolean default false not null,
     user_id bigint,
-    foreign key (user_id) references users (id)
+    -- user_id только у основного счета: уникальность дает не больше одного основного счета
+    -- на пользователя (NULL у остальных счетов не конфликтуют)
+    primary_user_id bigint generated always as (case when is_primary then user_id end),
+    foreign key (user_id) references users (id),
+    constraint uq_accounts_one_primary unique (primary_user_id)
+);
+
+-- Отложенные зачисления (сводятся в accounts.amount по расписанию)
+create table pending_settlements (
+    id bigint generated by default as identity primary key,
+    account_id bigint not null,
+    order_id uuid,
+    amount numeric(38,2) not null,
+    created timestamp not null
+);
+
+-- Полосы (под-балансы) "горячих" счетов
+create table account_stripes (
+    id bigint generated by default as identity primary key,
+    account_id bigint not null,
+    stripe int not null,
+    amount numeric(38,2) not null,
+    unique (account_id, stripe),
+    foreign key (account_id) references accounts (id) on delete cascade
+);
+
+-- Поиск основного (платежного) счета пользователя
+create index idx_accounts_user_primary on accounts (user_id, is_primary);
+
+-- Счетчики (блоки номеров счетов и т.п.)
+create table counters (
+    name varchar(64) primary key,
+    next_value bigint not null
+);
+
+-- Журнал переводов (пишется в фоне пачками)
+create sequence transfer_history_seq start with 100 increment by 50;
+create table transfer_history (
+    id bigint primary key,
+    order_id uuid unique,
+    from_user_id bigint not null,
+    recipient_id bigint not null,
+    amount numeric(38,2) not null,
+    created timestamp not null
+);
+create index idx_history_from on transfer_history (from_user_id, id);
+create index idx_history_to on transfer_history (recipient_id, id);
+
+-- Отметка снимка движка балансов (transfer.engine.mode=memory)
+create table engine_snapshot (
+    id int primary key,
+    last_seq bigint not null
 );
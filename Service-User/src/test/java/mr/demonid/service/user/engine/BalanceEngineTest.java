@@ -0,0 +1,223 @@
+package mr.demonid.service.user.engine;
+
+import mr.demonid.service.user.domain.EngineSnapshot;
+import mr.demonid.service.user.dto.PaymentRequest;
+import mr.demonid.service.user.dto.TransferResult;
+import mr.demonid.service.user.exceptions.BatchTransferException;
+import mr.demonid.service.user.exceptions.NotEnoughAmountException;
+import mr.demonid.service.user.repository.AccountRepository;
+import mr.demonid.service.user.repository.EngineSnapshotRepository;
+import mr.demonid.service.user.repository.UserRepository;
+import mr.demonid.service.user.services.SettlementService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BalanceEngineTest {
+
+    @Mock
+    private AccountRepository accountRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private EngineSnapshotRepository snapshotRepository;
+
+    @Mock
+    private SettlementService settlementService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @TempDir
+    Path journalDir;
+
+    private final List<BalanceEngine> engines = new ArrayList<>();
+
+    /**
+     * Подготавливаем данные для каждого тестового метода:
+     * два основных счета, у второго часть баланса лежит в полосах.
+     */
+    @BeforeEach
+    public void setup() {
+        lenient().when(accountRepository.findPrimaryBalancesAfter(0L, Limit.of(10_000))).thenReturn(List.of(
+                new AccountBalance(100L, 1L, new BigDecimal("100.00"), BigDecimal.ZERO),
+                new AccountBalance(101L, 2L, new BigDecimal("5.00"), new BigDecimal("1.00"))));
+    }
+
+    @AfterEach
+    public void cleanup() throws Exception {
+        for (BalanceEngine engine : engines) {
+            engine.stop();
+        }
+    }
+
+    /**
+     * После "падения" новый движок восстанавливает балансы из БД и журнала,
+     * отклоненные переводы в журнал не попадают.
+     */
+    @Test
+    void start_ReplayRestoresBalances() throws Exception {
+        /*
+            Подготовка.
+         */
+        BalanceEngine engine = startEngine();
+        engine.transfer(new PaymentRequest(UUID.randomUUID(), 1L, 2L, new BigDecimal("30.50"), "DEBIT"));
+        engine.transfer(new PaymentRequest(UUID.randomUUID(), 2L, 1L, new BigDecimal("0.5"), "DEBIT"));
+        assertThrows(NotEnoughAmountException.class,
+                () -> engine.transfer(new PaymentRequest(UUID.randomUUID(), 1L, 2L, new BigDecimal("1000"), "DEBIT")));
+        /*
+            Выполнение: первый движок не останавливаем, снимка не было.
+         */
+        BalanceEngine restored = startEngine();
+        /*
+            Проверка.
+         */
+        assertEquals(2, restored.getSequence());
+        assertEquals(new BigDecimal("70.00"), restored.getBalance(100L));
+        assertEquals(new BigDecimal("36.00"), restored.getBalance(101L));
+        assertNull(restored.getBalance(999L));
+    }
+
+    /**
+     * Снимок пишет в accounts.amount баланс без полос и отметку последней команды.
+     */
+    @Test
+    void stop_WritesSnapshot() throws Exception {
+        /*
+            Подготовка.
+         */
+        BalanceEngine engine = startEngine();
+        engine.transfer(new PaymentRequest(UUID.randomUUID(), 1L, 2L, new BigDecimal("30"), "DEBIT"));
+        /*
+            Выполнение.
+         */
+        engines.remove(engine);
+        engine.stop();
+        /*
+            Проверка.
+         */
+        verify(accountRepository).setAmount(100L, new BigDecimal("70.00"));
+        verify(accountRepository).setAmount(101L, new BigDecimal("35.00"));
+        verify(snapshotRepository).save(any(EngineSnapshot.class));
+    }
+
+    /**
+     * Атомарный пакет с ошибкой не меняет балансы и не попадает в журнал.
+     */
+    @Test
+    void transferAll_AtomicGroup() throws Exception {
+        /*
+            Подготовка.
+         */
+        BalanceEngine engine = startEngine();
+        List<PaymentRequest> failing = List.of(
+                new PaymentRequest(UUID.randomUUID(), 1L, 2L, new BigDecimal("60"), "DEBIT"),
+                new PaymentRequest(UUID.randomUUID(), 1L, 2L, new BigDecimal("60"), "DEBIT"));
+        List<PaymentRequest> passing = List.of(
+                new PaymentRequest(UUID.randomUUID(), 1L, 2L, new BigDecimal("60"), "DEBIT"),
+                new PaymentRequest(UUID.randomUUID(), 2L, 1L, new BigDecimal("10"), "DEBIT"));
+        /*
+            Выполнение.
+         */
+        BatchTransferException e = assertThrows(BatchTransferException.class, () -> engine.transferAll(failing, true));
+        List<TransferResult> results = engine.transferAll(passing, true);
+        /*
+            Проверка.
+         */
+        assertEquals(new NotEnoughAmountException().getMessage(), e.getResults().get(1).getError());
+        assertTrue(results.stream().allMatch(TransferResult::isSuccess));
+        assertEquals(2, engine.getSequence());
+        assertEquals(new BigDecimal("50.00"), engine.getBalance(100L));
+        assertEquals(new BigDecimal("56.00"), engine.getBalance(101L));
+    }
+
+    /**
+     * Недописанная запись в конце сегмента при восстановлении отбрасывается.
+     */
+    @Test
+    void replay_SkipsTornTail() throws IOException {
+        /*
+            Подготовка.
+         */
+        BalanceJournal journal = new BalanceJournal(journalDir, 16);
+        journal.open(1);
+        journal.append(1, 100L, 101L, 50, UUID.randomUUID());
+        journal.append(2, 101L, 100L, 20, null);
+        journal.close();
+        try (var files = Files.list(journalDir)) {
+            Path segment = files.findFirst().orElseThrow();
+            Files.write(segment, new byte[BalanceJournal.RECORD_SIZE / 2], StandardOpenOption.APPEND);
+        }
+        /*
+            Выполнение.
+         */
+        List<Long> replayed = new ArrayList<>();
+        long last = journal.replay(0, (seq, from, to, cents, orderId) -> replayed.add(seq));
+        /*
+            Проверка.
+         */
+        assertEquals(List.of(1L, 2L), replayed);
+        assertEquals(2, last);
+        assertEquals(2, journal.replay(1, (seq, from, to, cents, orderId) -> assertEquals(2, seq)));
+    }
+
+    /**
+     * Атомарный пакет, попавший на диск не целиком (больше буфера, сбой до последней записи),
+     * при восстановлении отбрасывается весь; полный пакет повторяется.
+     */
+    @Test
+    void replay_DropsIncompleteGroup() throws IOException {
+        /*
+            Подготовка: буфер на одну запись, так что пакет пишется на диск по частям.
+         */
+        BalanceJournal journal = new BalanceJournal(journalDir, 1);
+        journal.open(1);
+        journal.append(1, 100L, 101L, 10, null);
+        journal.append(2, 100L, 101L, 20, null, 1);
+        journal.append(3, 101L, 100L, 5, null, 0);
+        journal.append(4, 100L, 101L, 30, null, 2);
+        journal.append(5, 100L, 101L, 40, null, 1);
+        journal.close();            // "сбой": третьей записи пакета нет
+        /*
+            Выполнение.
+         */
+        List<Long> replayed = new ArrayList<>();
+        long last = journal.replay(0, (seq, from, to, cents, orderId) -> replayed.add(seq));
+        /*
+            Проверка.
+         */
+        assertEquals(List.of(1L, 2L, 3L), replayed);
+        assertEquals(3, last);
+    }
+
+    private BalanceEngine startEngine() throws IOException {
+        BalanceEngine engine = new BalanceEngine(accountRepository, userRepository, snapshotRepository, settlementService,
+                transactionManager, journalDir, 1024, 64, Duration.ofHours(1));
+        engine.start();
+        engines.add(engine);
+        return engine;
+    }
+}
@@ -0,0 +1,95 @@
+package mr.demonid.service.user.services;
+
+import mr.demonid.service.user.domain.Counter;
+import mr.demonid.service.user.repository.CounterRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AccountNumberAllocatorTest {
+
+    @Mock
+    private CounterRepository counterRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private Counter counter;
+    private AccountNumberAllocator allocator;
+
+    /**
+     * Подготавливаем данные для каждого тестового метода.
+     */
+    @BeforeEach
+    public void setup() {
+        counter = new Counter(AccountNumberAllocator.COUNTER_NAME, 0);
+        allocator = new AccountNumberAllocator(counterRepository, transactionManager, 12345L, 100);
+    }
+
+    /**
+     * Номера уникальны, в нужном формате, а счетчик читается один раз на блок.
+     */
+    @Test
+    void nextAccountNumber_UniqueWithinBlocks() {
+        /*
+            Подготовка.
+         */
+        when(counterRepository.lockByName(AccountNumberAllocator.COUNTER_NAME)).thenReturn(Optional.of(counter));
+        /*
+            Выполнение.
+         */
+        Set<String> numbers = new HashSet<>();
+        for (int i = 0; i < 250; i++) {
+            numbers.add(allocator.nextAccountNumber());
+        }
+        /*
+            Проверка.
+         */
+        assertEquals(250, numbers.size());
+        numbers.forEach(n -> assertTrue(n.matches("[1-9]\\d{2}-\\d{3}-\\d{3}"), n));
+        assertEquals(300, counter.getNextValue());
+        verify(counterRepository, times(3)).lockByName(AccountNumberAllocator.COUNTER_NAME);
+    }
+
+    /**
+     * Перестановка не дает совпадений и не выходит за диапазон номеров.
+     */
+    @Test
+    void permute_IsInjectiveInRange() {
+        Set<Long> values = new HashSet<>();
+        for (long i = 0; i < 100_000; i++) {
+            long v = allocator.permute(i);
+            assertTrue(v >= 0 && v < 900_000_000L);
+            values.add(v);
+        }
+        assertEquals(100_000, values.size());
+        // последовательные значения счетчика не дают последовательных номеров
+        assertNotEquals(allocator.permute(1) + 1, allocator.permute(2));
+    }
+
+    /**
+     * Другой ключ - другая последовательность номеров.
+     */
+    @Test
+    void permute_DependsOnKey() {
+        AccountNumberAllocator other = new AccountNumberAllocator(counterRepository, transactionManager, 54321L, 100);
+        int same = 0;
+        for (long i = 0; i < 1000; i++) {
+            if (allocator.permute(i) == other.permute(i)) {
+                same++;
+            }
+        }
+        assertTrue(same < 10);
+    }
+}
@@ -0,0 +1,125 @@
+package mr.demonid.service.user.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import mr.demonid.service.user.domain.Account;
+import mr.demonid.service.user.domain.Role;
+import mr.demonid.service.user.domain.User;
+import mr.demonid.service.user.dto.BulkRegistrationResult;
+import mr.demonid.service.user.repository.RoleRepository;
+import mr.demonid.service.user.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BulkRegistrationServiceTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private RoleService roleService;
+
+    @Mock
+    private RoleRepository roleRepository;
+
+    @Mock
+    private TestService testService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private BulkRegistrationService service;
+    private Role role;
+
+    /**
+     * Подготавливаем данные для каждого тестового метода.
+     */
+    @BeforeEach
+    public void setup() throws Exception {
+        service = new BulkRegistrationService(userRepository, roleService, roleRepository, testService,
+                new ObjectMapper(), transactionManager, 2);
+        role = new Role();
+        role.setId(1L);
+        role.setName("ROLE_USER");
+        when(roleService.getRoleId("USER")).thenReturn(1L);
+    }
+
+    /**
+     * Неверные записи и занятые имена пропускаются, остальные сохраняются пачками.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void registerCsv_SkipsInvalidAndExisting() throws Exception {
+        /*
+            Подготовка.
+         */
+        String csv = """
+                username,password,email
+                anna,1,anna@mail.ru
+                boris,1,boris@mail.ru
+                broken-line
+                clara,1,clara@mail.ru
+                """;
+        when(userRepository.findExistingUsernames(anyCollection())).thenReturn(Set.of("boris"), Set.of());
+        when(roleRepository.getReferenceById(1L)).thenReturn(role);
+        when(testService.createNewAccount()).thenAnswer(i -> new Account());
+        /*
+            Выполнение.
+         */
+        BulkRegistrationResult result = service.registerCsv(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+        /*
+            Проверка.
+         */
+        assertEquals(4, result.getReceived());
+        assertEquals(2, result.getCreated());
+        assertEquals(2, result.getSkipped());
+        assertEquals(6, result.getRows());
+
+        ArgumentCaptor<List<User>> saved = ArgumentCaptor.forClass(List.class);
+        verify(userRepository, times(2)).saveAll(saved.capture());
+        assertEquals("anna", saved.getAllValues().get(0).get(0).getUsername());
+        assertEquals("clara", saved.getAllValues().get(1).get(0).getUsername());
+        assertTrue(saved.getAllValues().get(1).get(0).getPaymentAccount().isPrimary());
+        verify(roleService, times(1)).getRoleId("USER");
+    }
+
+    /**
+     * JSON читается потоком, повтор имени внутри одной пачки не создает второго пользователя.
+     */
+    @Test
+    void registerJson_DeduplicatesWithinChunk() throws Exception {
+        /*
+            Подготовка.
+         */
+        String json = """
+                [{"username":"dima","password":"1","email":"d@mail.ru"},
+                 {"username":"dima","password":"2","email":"d2@mail.ru"}]
+                """;
+        when(userRepository.findExistingUsernames(anyCollection())).thenReturn(Set.of());
+        when(roleRepository.getReferenceById(1L)).thenReturn(role);
+        when(testService.createNewAccount()).thenAnswer(i -> new Account());
+        /*
+            Выполнение.
+         */
+        BulkRegistrationResult result = service.registerJson(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+        /*
+            Проверка.
+         */
+        assertEquals(2, result.getReceived());
+        assertEquals(1, result.getCreated());
+    }
+}
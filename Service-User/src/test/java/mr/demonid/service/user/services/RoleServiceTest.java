@@ -0,0 +1,57 @@
+package mr.demonid.service.user.services;
+
+import mr.demonid.service.user.domain.Role;
+import mr.demonid.service.user.repository.RoleRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RoleServiceTest {
+
+    @Mock
+    private RoleRepository roleRepository;
+
+    @InjectMocks
+    private RoleService roleService;
+
+    /**
+     * Справочник читается из БД один раз, повторно - только после сброса.
+     */
+    @Test
+    void getRole_LoadsOnceUntilInvalidated() throws Exception {
+        /*
+            Подготовка.
+         */
+        when(roleRepository.findAll()).thenReturn(List.of(role(1L, "ROLE_USER"), role(2L, "ROLE_ADMIN")));
+        /*
+            Выполнение.
+         */
+        assertEquals(1L, roleService.getRoleId("USER"));
+        assertEquals(2L, roleService.getRole("ROLE_ADMIN").getId());
+        assertEquals(2, roleService.getAllRoles().size());
+        assertThrows(Exception.class, () -> roleService.getRole("GUEST"));
+        verify(roleRepository, times(1)).findAll();
+
+        roleService.invalidate();
+        roleService.getRoleId("USER");
+        /*
+            Проверка.
+         */
+        verify(roleRepository, times(2)).findAll();
+    }
+
+    private Role role(Long id, String name) {
+        Role role = new Role();
+        role.setId(id);
+        role.setName(name);
+        return role;
+    }
+}
@@ -0,0 +1,160 @@
+package mr.demonid.service.user.services;
+
+import mr.demonid.service.user.domain.Account;
+import mr.demonid.service.user.domain.User;
+import mr.demonid.service.user.dto.PaymentRequest;
+import mr.demonid.service.user.engine.AccountBalance;
+import mr.demonid.service.user.repository.AccountRepository;
+import mr.demonid.service.user.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Нагрузочный тест переводов с "горячего" счёта при разном количестве полос.
+ * Запускается только явно: mvn test -Dbenchmark=true -Dtest=StripedAccountBenchmarkTest
+ * Печатает пропускную способность для каждого числа полос и ускорение относительно одной полосы.
+ * Проверяются два порога, а не линейный рост: каждое удвоение полос дает не меньше
+ * benchmark.min-step-speedup (по умолчанию 1.1) от предыдущего шага, а максимум полос -
+ * не меньше benchmark.min-speedup (по умолчанию 1.5) от одной полосы.
+ * Пороги заниженные: на H2 в памяти и общем CI-сервере рост упирается в процессор,
+ * так что тест ловит пропажу эффекта от полос, а не измеряет масштабирование точно.
+ * Транзакции не откатываются (каждый поток коммитит свои переводы), поэтому
+ * созданные пользователи удаляются в конце.
+ */
+@SpringBootTest
+@ActiveProfiles(profiles = "test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class StripedAccountBenchmarkTest {
+
+    private static final int THREADS = 8;
+    private static final int TRANSFERS_PER_THREAD = 500;
+    private static final int[] STRIPES = {1, 2, 4, 8};
+    private static final double MIN_SPEEDUP = Double.parseDouble(System.getProperty("benchmark.min-speedup", "1.5"));
+    private static final double MIN_STEP_SPEEDUP = Double.parseDouble(System.getProperty("benchmark.min-step-speedup", "1.1"));
+
+    @Autowired
+    private TransferService transferService;
+
+    @Autowired
+    private StripedAccountService stripedAccountService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    User hot;
+    List<User> recipients;
+
+    @BeforeEach
+    public void setup() {
+        hot = createUser("bench-hot", BigDecimal.valueOf(1_000_000));
+        recipients = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            recipients.add(createUser("bench-" + i, BigDecimal.ZERO));
+        }
+    }
+
+    @AfterEach
+    public void cleanup() {
+        stripedAccountService.setStripes(hot.getPaymentAccount().getId(), 0);
+        userRepository.deleteAll(recipients);
+        userRepository.delete(hot);
+    }
+
+    /**
+     * Каждый поток переводит с общего счёта на свой, пропускная способность
+     * должна расти вместе с количеством полос.
+     */
+    @Test
+    void transferThroughputByStripeCount() throws InterruptedException {
+        long transfers = 0;
+        double[] opsPerSec = new double[STRIPES.length];
+        for (int i = 0; i < STRIPES.length; i++) {
+            stripedAccountService.setStripes(hot.getPaymentAccount().getId(), STRIPES[i]);
+            opsPerSec[i] = run();
+            transfers += (long) THREADS * TRANSFERS_PER_THREAD;
+            System.out.printf("stripes=%d: %.0f transfers/sec, x%.2f к stripes=%d%n",
+                    STRIPES[i], opsPerSec[i], opsPerSec[i] / opsPerSec[0], STRIPES[0]);
+        }
+        /*
+            Проверяем, что полосы действительно снимают конкуренцию за счёт:
+            рост на каждом шаге и в целом.
+         */
+        for (int i = 1; i < STRIPES.length; i++) {
+            double step = opsPerSec[i] / opsPerSec[i - 1];
+            assertTrue(step >= MIN_STEP_SPEEDUP, String.format("stripes=%d быстрее stripes=%d всего в %.2f раза, ожидалось не меньше %.2f",
+                    STRIPES[i], STRIPES[i - 1], step, MIN_STEP_SPEEDUP));
+        }
+        double speedup = opsPerSec[STRIPES.length - 1] / opsPerSec[0];
+        assertTrue(speedup >= MIN_SPEEDUP, String.format("stripes=%d быстрее stripes=%d всего в %.2f раза, ожидалось не меньше %.2f",
+                STRIPES[STRIPES.length - 1], STRIPES[0], speedup, MIN_SPEEDUP));
+        /*
+            Проверяем, что при параллельной работе деньги не потерялись.
+         */
+        BigDecimal expected = BigDecimal.valueOf(1_000_000).subtract(BigDecimal.valueOf(transfers));
+        AccountBalance balance = accountRepository.findBalanceById(hot.getPaymentAccount().getId()).orElseThrow();
+        assertEquals(0, expected.compareTo(balance.amount().add(balance.stripedAmount())));
+    }
+
+    private double run() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicLong failed = new AtomicLong();
+        for (User recipient : recipients) {
+            executor.execute(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                        transferService.transfer(new PaymentRequest(UUID.randomUUID(), hot.getId(), recipient.getId(), BigDecimal.ONE, "TRANSFER"));
+                    }
+                } catch (Exception e) {
+                    failed.incrementAndGet();
+                    System.out.println("benchmark: " + e.getMessage());
+                }
+            });
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        executor.shutdown();
+        executor.awaitTermination(5, TimeUnit.MINUTES);
+        long elapsed = System.nanoTime() - begin;
+        assertEquals(0, failed.get());
+        return (double) THREADS * TRANSFERS_PER_THREAD * TimeUnit.SECONDS.toNanos(1) / elapsed;
+    }
+
+    private User createUser(String name, BigDecimal balance) {
+        User user = new User();
+        user.setUsername(name);
+        user.setPassword("1");
+        user.setEmail("test-" + name + "@test.com");
+        Account account = new Account();
+        account.setName("Account-" + name);
+        account.setAmount(balance);
+        account.setCreation(LocalDate.now());
+        user.addAccount(account);
+        return userRepository.save(user);
+    }
+}
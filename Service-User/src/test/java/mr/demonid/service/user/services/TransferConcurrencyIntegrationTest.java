@@ -0,0 +1,204 @@
+package mr.demonid.service.user.services;
+
+import mr.demonid.service.user.domain.Account;
+import mr.demonid.service.user.domain.User;
+import mr.demonid.service.user.dto.PaymentRequest;
+import mr.demonid.service.user.repository.AccountRepository;
+import mr.demonid.service.user.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Интеграционный тест параллельных изменений счетов на схеме из schema.sql
+ * (а не созданной Hibernate): только в ней есть uq_accounts_one_primary.
+ * Отдельная БД в памяти, транзакции коммитятся по-настоящему.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:concurrency;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000",
+        "spring.jpa.hibernate.ddl-auto=none",
+        "spring.sql.init.mode=always"
+})
+@ActiveProfiles(profiles = "test")
+class TransferConcurrencyIntegrationTest {
+
+    private static final long SHOP_ID = 1L;         // из data.sql, зачисления ему отложенные
+    private static final int TRANSFERS = 100;
+
+    @Autowired
+    private TransferService transferService;
+
+    @Autowired
+    private StripedAccountService stripedAccountService;
+
+    @Autowired
+    private SettlementService settlementService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Встречные переводы, отложенные зачисления, их сведение и перестройка полос
+     * одновременно: ни одно изменение баланса не теряется и не задваивается.
+     */
+    @Test
+    void concurrentTransfers_NoLostUpdates() throws Exception {
+        /*
+            Подготовка.
+         */
+        User a = createUser("concurrent-a", BigDecimal.valueOf(1000));
+        User b = createUser("concurrent-b", BigDecimal.valueOf(1000));
+        Long accountB = accountRepository.findPrimaryByUserId(b.getId()).orElseThrow().getId();
+        BigDecimal shopBefore = accountRepository.findAmountById(accountRepository.findPrimaryByUserId(SHOP_ID).orElseThrow().getId());
+        ExecutorService executor = Executors.newFixedThreadPool(12);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicInteger failed = new AtomicInteger();
+        List<Future<?>> transfers = new ArrayList<>();
+        /*
+            Выполняем: 4 потока a -> b, 4 потока b -> a, 2 потока a -> магазин,
+            параллельно - перестройка полос счёта b и сведение зачислений магазина.
+         */
+        for (int t = 0; t < 10; t++) {
+            long from = t < 4 || t >= 8 ? a.getId() : b.getId();
+            long to = t < 4 ? b.getId() : t < 8 ? a.getId() : SHOP_ID;
+            transfers.add(executor.submit(() -> {
+                await(start);
+                for (int i = 0; i < TRANSFERS; i++) {
+                    try {
+                        transferService.transfer(new PaymentRequest(UUID.randomUUID(), from, to, BigDecimal.ONE, "TRANSFER"));
+                    } catch (RuntimeException e) {
+                        failed.incrementAndGet();
+                        System.out.println("concurrent: " + e);
+                    }
+                }
+            }));
+        }
+        Future<?> stripes = executor.submit(() -> {
+            await(start);
+            for (int i = 0; !done.get(); i++) {
+                stripedAccountService.setStripes(accountB, i % 2 == 0 ? 4 : 0);
+            }
+        });
+        Future<?> settlement = executor.submit(() -> {
+            await(start);
+            while (!done.get()) {
+                settlementService.settle();
+            }
+        });
+        start.countDown();
+        for (Future<?> f : transfers) {
+            f.get(2, TimeUnit.MINUTES);
+        }
+        done.set(true);
+        stripes.get(1, TimeUnit.MINUTES);
+        settlement.get(1, TimeUnit.MINUTES);
+        executor.shutdown();
+        stripedAccountService.setStripes(accountB, 0);
+        while (settlementService.settle() > 0) {
+            // сводим остаток
+        }
+        /*
+            Проверяем: a отдал 200 магазину, встречные переводы взаимно погасились.
+         */
+        assertEquals(0, failed.get());
+        assertEquals(0, BigDecimal.valueOf(800).compareTo(amount(a.getId())));
+        assertEquals(0, BigDecimal.valueOf(1000).compareTo(amount(b.getId())));
+        assertEquals(0, shopBefore.add(BigDecimal.valueOf(2 * TRANSFERS)).compareTo(amount(SHOP_ID)));
+    }
+
+    /**
+     * Два одновременных основных счёта одного пользователя: БД пропускает только один.
+     */
+    @Test
+    void concurrentPrimaryAccounts_OnlyOneAccepted() throws Exception {
+        /*
+            Подготовка.
+         */
+        User user = new User();
+        user.setUsername("concurrent-primary");
+        user.setPassword("1");
+        User saved = userRepository.save(user);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        CountDownLatch start = new CountDownLatch(1);
+        /*
+            Выполняем.
+         */
+        List<Future<Boolean>> inserts = new ArrayList<>();
+        for (long id = 90; id < 92; id++) {
+            long accountId = id;
+            inserts.add(executor.submit(() -> {
+                await(start);
+                try {
+                    jdbcTemplate.update("insert into accounts (id, name, amount, creation, user_id, is_primary) values (?, ?, 0, current_date, ?, true)",
+                            accountId, "primary-" + accountId, saved.getId());
+                    return true;
+                } catch (DataIntegrityViolationException e) {
+                    return false;
+                }
+            }));
+        }
+        start.countDown();
+        int accepted = 0;
+        for (Future<Boolean> f : inserts) {
+            accepted += f.get(1, TimeUnit.MINUTES) ? 1 : 0;
+        }
+        executor.shutdown();
+        /*
+            Проверяем: второй основной счёт отклонен, обычный счёт добавляется.
+         */
+        assertEquals(1, accepted);
+        jdbcTemplate.update("insert into accounts (id, name, amount, creation, user_id, is_primary) values (92, 'secondary-92', 0, current_date, ?, false)",
+                saved.getId());
+        assertTrue(accountRepository.findPrimaryByUserId(saved.getId()).isPresent());
+    }
+
+    private BigDecimal amount(Long userId) {
+        return accountRepository.findAmountById(accountRepository.findPrimaryByUserId(userId).orElseThrow().getId());
+    }
+
+    private User createUser(String name, BigDecimal balance) {
+        User user = new User();
+        user.setUsername(name);
+        user.setPassword("1");
+        user.setEmail("test-" + name + "@test.com");
+        Account account = new Account();
+        account.setName("Account-" + name);
+        account.setAmount(balance);
+        account.setCreation(LocalDate.now());
+        user.addAccount(account);
+        return userRepository.save(user);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package mr.demonid.service.user.services;
+
+import mr.demonid.service.user.domain.TransferHistory;
+import mr.demonid.service.user.events.TransferCompletedEvent;
+import mr.demonid.service.user.repository.TransferHistoryRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TransferJournalTest {
+
+    @Mock
+    private TransferHistoryRepository historyRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private TransferJournal journal;
+
+    /**
+     * Подготавливаем данные для каждого тестового метода.
+     * Фоновый поток не запускаем, запись выполняем явно через flush().
+     */
+    @BeforeEach
+    public void setup() {
+        journal = new TransferJournal(historyRepository, transactionManager, 2, 10);
+    }
+
+    /**
+     * Перевод не пишет в БД сам, записи уходят одной пачкой без повторов.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void flush_WritesBatchWithoutDuplicates() {
+        /*
+            Подготовка.
+         */
+        UUID written = UUID.randomUUID();
+        UUID fresh = UUID.randomUUID();
+        when(historyRepository.findExistingOrderIds(anyCollection())).thenReturn(Set.of(written));
+        /*
+            Выполнение.
+         */
+        journal.onTransfer(new TransferCompletedEvent(written, 2L, 1L, BigDecimal.TEN));
+        journal.onTransfer(new TransferCompletedEvent(fresh, 2L, 1L, BigDecimal.ONE));
+        verifyNoInteractions(historyRepository);
+        journal.flush();
+        /*
+            Проверка.
+         */
+        ArgumentCaptor<List<TransferHistory>> saved = ArgumentCaptor.forClass(List.class);
+        verify(historyRepository).saveAll(saved.capture());
+        assertEquals(1, saved.getValue().size());
+        assertEquals(fresh, saved.getValue().get(0).getOrderId());
+        assertEquals(0, journal.getQueueDepth());
+    }
+
+    /**
+     * При переполненной очереди запись отбрасывается и учитывается, в БД поток перевода не ходит.
+     */
+    @Test
+    void append_DropsWhenQueueIsFull() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        journal.bindTo(registry);
+
+        for (int i = 0; i < 3; i++) {
+            journal.onTransfer(new TransferCompletedEvent(UUID.randomUUID(), 2L, 1L, BigDecimal.ONE));
+        }
+
+        assertEquals(2, journal.getQueueDepth());
+        assertEquals(1.0, registry.get("transfer.journal.dropped").functionCounter().count());
+        verifyNoInteractions(historyRepository, transactionManager);
+    }
+
+    /**
+     * Повтор orderId при записи по одной считается дубликатом, остальные записи пишутся.
+     */
+    @Test
+    void write_SkipsDuplicateOrderIdAfterBatchConflict() {
+        /*
+            Подготовка.
+         */
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        journal.bindTo(registry);
+        TransferHistory duplicate = history(null);
+        TransferHistory fresh = history(null);
+        when(historyRepository.findExistingOrderIds(anyCollection())).thenReturn(Set.of());
+        when(historyRepository.saveAll(anyCollection())).thenThrow(violation("23505"));
+        when(historyRepository.save(duplicate)).thenThrow(violation("23505"));
+        /*
+            Выполнение.
+         */
+        assertDoesNotThrow(() -> journal.write(List.of(duplicate, fresh)));
+        /*
+            Проверка.
+         */
+        verify(historyRepository).save(fresh);
+        assertEquals(1.0, registry.get("transfer.journal.duplicates").functionCounter().count());
+        assertEquals(1.0, registry.get("transfer.journal.written").functionCounter().count());
+        assertEquals(0.0, registry.get("transfer.journal.rejected").functionCounter().count());
+    }
+
+    /**
+     * Нарушение другого ограничения (not null) - не дубликат: запись отклоняется и учитывается отдельно.
+     */
+    @Test
+    void write_RejectsRecordViolatingOtherConstraint() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        journal.bindTo(registry);
+        TransferHistory broken = history(null);
+        when(historyRepository.findExistingOrderIds(anyCollection())).thenReturn(Set.of());
+        when(historyRepository.saveAll(anyCollection())).thenThrow(violation("23502"));
+        when(historyRepository.save(broken)).thenThrow(violation("23502"));
+
+        assertDoesNotThrow(() -> journal.write(List.of(broken)));
+
+        assertEquals(0.0, registry.get("transfer.journal.duplicates").functionCounter().count());
+        assertEquals(1.0, registry.get("transfer.journal.rejected").functionCounter().count());
+    }
+
+    /**
+     * Входящие и исходящие переводы объединяются по убыванию id.
+     */
+    @Test
+    void getHistory_MergesIncomingAndOutgoing() {
+        when(historyRepository.findByFromUserIdAndIdLessThanOrderByIdDesc(2L, 100L, Limit.of(3)))
+                .thenReturn(List.of(history(90L), history(50L)));
+        when(historyRepository.findByRecipientIdAndIdLessThanOrderByIdDesc(2L, 100L, Limit.of(3)))
+                .thenReturn(List.of(history(95L), history(60L), history(10L)));
+
+        List<TransferHistory> page = journal.getHistory(2L, 100L, 3);
+
+        assertEquals(List.of(95L, 90L, 60L), page.stream().map(TransferHistory::getId).toList());
+    }
+
+    private static DataIntegrityViolationException violation(String sqlState) {
+        return new DataIntegrityViolationException("constraint", new SQLException("constraint", sqlState));
+    }
+
+    private TransferHistory history(Long id) {
+        TransferHistory history = new TransferHistory(UUID.randomUUID(), 2L, 1L, BigDecimal.ONE, LocalDateTime.now());
+        history.setId(id);
+        return history;
+    }
+}
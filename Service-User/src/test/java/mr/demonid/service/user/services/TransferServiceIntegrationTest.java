@@ -70,8 +70,9 @@ class TransferServiceIntegrationTest {
          */
         User updatedUserFrom = userRepository.findById(userFrom.getId()).orElseThrow();
         User updatedUserTo = userRepository.findById(userTo.getId()).orElseThrow();
-        assertEquals(BigDecimal.valueOf(80), updatedUserFrom.getPaymentAccount().getAmount());
-        assertEquals(BigDecimal.valueOf(70), updatedUserTo.getPaymentAccount().getAmount());
+        // балансы меняются запросами к БД и перечитываются из неё (масштаб numeric(38,2))
+        assertEquals(0, BigDecimal.valueOf(80).compareTo(updatedUserFrom.getPaymentAccount().getAmount()));
+        assertEquals(0, BigDecimal.valueOf(70).compareTo(updatedUserTo.getPaymentAccount().getAmount()));
     }
 
     /**
@@ -4,26 +4,44 @@ import mr.demonid.service.user.domain.Account;
 import mr.demonid.service.user.domain.Role;
 import mr.demonid.service.user.domain.User;
 import mr.demonid.service.user.dto.PaymentRequest;
+import mr.demonid.service.user.dto.TransferResult;
+import mr.demonid.service.user.engine.BalanceEngine;
+import mr.demonid.service.user.events.TransferCompletedEvent;
 import mr.demonid.service.user.exceptions.BadAccountException;
+import mr.demonid.service.user.exceptions.BatchTransferException;
 import mr.demonid.service.user.exceptions.NotEnoughAmountException;
 import mr.demonid.service.user.exceptions.NotFoundException;
+import mr.demonid.service.user.repository.AccountRepository;
 import mr.demonid.service.user.repository.UserRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
-import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -36,6 +54,24 @@ class TransferServiceTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private AccountRepository accountRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private SettlementService settlementService;
+
+    @Mock
+    private StripedAccountService stripedAccountService;
+
+    @Mock
+    private ObjectProvider<BalanceEngine> balanceEngine;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
     @InjectMocks
     private TransferService transferService;
 
@@ -61,8 +97,56 @@ class TransferServiceTest {
         /*
             Подготовка
          */
-        when(userRepository.findById(userFromId)).thenReturn(Optional.of(userFrom));
-        when(userRepository.findById(userToId)).thenReturn(Optional.of(userTo));
+        stubAccounts();
+        when(accountRepository.debit(1L, BigDecimal.valueOf(30))).thenReturn(1);
+        /*
+            Выполняем.
+         */
+        assertDoesNotThrow(() -> transferService.transfer(request));
+        /*
+            Проверяем: пользователи не загружались, читались только счета,
+            балансы изменены атомарными запросами, а не через сущности.
+         */
+        verify(accountRepository).credit(2L, BigDecimal.valueOf(30));
+        assertEquals(BigDecimal.valueOf(100), userFrom.getPaymentAccount().getAmount());
+        verifyNoInteractions(userRepository);
+    }
+
+    /**
+     * Строки счетов меняются в порядке id (как их блокирует пакет), даже если
+     * для этого зачисление приходится сделать раньше списания.
+     */
+    @Test
+    void transfer_RowsInIdOrder() {
+        /*
+            Подготовка
+         */
+        stubAccounts();
+        PaymentRequest back = new PaymentRequest(UUID.randomUUID(), userToId, userFromId, BigDecimal.valueOf(10), "DEBIT");
+        when(accountRepository.debit(2L, BigDecimal.valueOf(10))).thenReturn(1);
+        /*
+            Выполняем.
+         */
+        assertDoesNotThrow(() -> transferService.transfer(back));
+        /*
+            Проверяем.
+         */
+        InOrder order = inOrder(accountRepository);
+        order.verify(accountRepository).credit(1L, BigDecimal.valueOf(10));
+        order.verify(accountRepository).debit(2L, BigDecimal.valueOf(10));
+    }
+
+    /**
+     * Зачисление на "горячий" счёт откладывается, а списание выполняется сразу.
+     */
+    @Test
+    void transfer_DeferredRecipient() {
+        /*
+            Подготовка
+         */
+        stubAccounts();
+        when(settlementService.isDeferred(userToId)).thenReturn(true);
+        when(accountRepository.debit(1L, BigDecimal.valueOf(30))).thenReturn(1);
         /*
             Выполняем.
          */
@@ -70,10 +154,8 @@ class TransferServiceTest {
         /*
             Проверяем.
          */
-        assertEquals(BigDecimal.valueOf(70), userFrom.getAccounts().stream().findFirst().orElse(new Account()).getAmount());
-        assertEquals(BigDecimal.valueOf(80), userTo.getAccounts().stream().findFirst().orElse(new Account()).getAmount());
-        verify(userRepository).save(userFrom);
-        verify(userRepository).save(userTo);
+        verify(accountRepository, never()).credit(anyLong(), any());
+        verify(settlementService).defer(userTo.getPaymentAccount(), request.getOrderId(), BigDecimal.valueOf(30));
     }
 
     /**
@@ -84,7 +166,8 @@ class TransferServiceTest {
         /*
             Подготовка.
          */
-        when(userRepository.findById(userFromId)).thenReturn(Optional.empty()); // user not found :)
+        when(accountRepository.findPrimaryByUserId(userFromId)).thenReturn(Optional.empty());
+        when(userRepository.existsById(userFromId)).thenReturn(false);  // user not found :)
 
         /*
             Выполняем и ожидаем исключение NotFoundException()
@@ -101,9 +184,8 @@ class TransferServiceTest {
         /*
             Подготовка.
          */
-        userFrom.setAccounts(new HashSet<>());
-        when(userRepository.findById(userFromId)).thenReturn(Optional.of(userFrom));
-        when(userRepository.findById(userToId)).thenReturn(Optional.of(userTo));
+        when(accountRepository.findPrimaryByUserId(userFromId)).thenReturn(Optional.empty());
+        when(userRepository.existsById(userFromId)).thenReturn(true);
         /*
             Выполняем и ожидаем исключение BadAccountException()
          */
@@ -119,18 +201,110 @@ class TransferServiceTest {
         /*
             Подготовка.
          */
-        Account account = userFrom.getPaymentAccount();
-        account.setAmount(BigDecimal.valueOf(20));
-        when(userRepository.findById(1L)).thenReturn(Optional.of(userFrom));
-        when(userRepository.findById(2L)).thenReturn(Optional.of(userTo));
+        stubAccounts();
+        when(accountRepository.debit(1L, BigDecimal.valueOf(30))).thenReturn(0);     // условие amount >= 30 не выполнено
+        doThrow(new NotEnoughAmountException()).when(stripedAccountService).debit(any(), any());   // и под блокировкой
         /*
             Выполняем и ожидаем исключение NotEnoughAmountException().
          */
         assertThrows(NotEnoughAmountException.class, () -> transferService.transfer(request));
+        verify(accountRepository, never()).credit(anyLong(), any());
+    }
+
+    /**
+     * Пакет без atomic: счета блокируются одним запросом, неудачный перевод
+     * пропускается, остальные выполняются.
+     */
+    @Test
+    void transferAll_PerItem() {
+        /*
+            Подготовка.
+         */
+        when(accountRepository.lockPrimaryByUserIds(Set.of(userFromId, userToId)))
+                .thenReturn(List.of(userFrom.getPaymentAccount(), userTo.getPaymentAccount()));
+        List<PaymentRequest> transfers = List.of(
+                request,
+                new PaymentRequest(UUID.randomUUID(), userFromId, userToId, BigDecimal.valueOf(500), "DEBIT"),
+                new PaymentRequest(UUID.randomUUID(), userToId, userFromId, BigDecimal.valueOf(10), "DEBIT"));
+        when(accountRepository.debit(1L, BigDecimal.valueOf(30))).thenReturn(1);
+        when(accountRepository.debit(1L, BigDecimal.valueOf(500))).thenReturn(0);
+        doThrow(new NotEnoughAmountException()).when(stripedAccountService).debit(any(), eq(BigDecimal.valueOf(500)));
+        when(accountRepository.debit(2L, BigDecimal.valueOf(10))).thenReturn(1);
+        /*
+            Выполняем.
+         */
+        List<TransferResult> results = transferService.transferAll(transfers, false);
+        /*
+            Проверяем: неудачный перевод ничего не зачислил.
+         */
+        assertEquals(List.of(true, false, true), results.stream().map(TransferResult::isSuccess).toList());
+        assertEquals(new NotEnoughAmountException().getMessage(), results.get(1).getError());
+        verify(accountRepository).credit(2L, BigDecimal.valueOf(30));
+        verify(accountRepository).credit(1L, BigDecimal.valueOf(10));
+        verify(accountRepository, never()).credit(2L, BigDecimal.valueOf(500));
+        verify(eventPublisher, times(2)).publishEvent(any(TransferCompletedEvent.class));
+        verify(accountRepository, never()).findPrimaryByUserId(anyLong());
     }
 
+    /**
+     * Атомарный пакет с ошибкой отменяется целиком, результат есть по каждому переводу.
+     */
+    @Test
+    void transferAll_AtomicFailure() {
+        /*
+            Подготовка.
+         */
+        when(accountRepository.lockPrimaryByUserIds(Set.of(userFromId, userToId)))
+                .thenReturn(List.of(userFrom.getPaymentAccount(), userTo.getPaymentAccount()));
+        List<PaymentRequest> transfers = List.of(
+                request,
+                new PaymentRequest(UUID.randomUUID(), userFromId, userToId, BigDecimal.valueOf(500), "DEBIT"));
+        when(accountRepository.debit(1L, BigDecimal.valueOf(30))).thenReturn(1);
+        when(accountRepository.debit(1L, BigDecimal.valueOf(500))).thenReturn(0);
+        doThrow(new NotEnoughAmountException()).when(stripedAccountService).debit(any(), eq(BigDecimal.valueOf(500)));
+        /*
+            Выполняем.
+         */
+        BatchTransferException e = assertThrows(BatchTransferException.class, () -> transferService.transferAll(transfers, true));
+        /*
+            Проверяем: транзакция пакета откатывается, результат - по каждому переводу.
+         */
+        verify(transactionManager).rollback(any());
+        verify(transactionManager, never()).commit(any());
+        assertEquals(2, e.getResults().size());
+        assertFalse(e.getResults().get(0).isSuccess());
+        assertEquals(new NotEnoughAmountException().getMessage(), e.getResults().get(1).getError());
+    }
+
+    /**
+     * В режиме движка транзакция не открывается (соединение JDBC не занято на время ожидания движка),
+     * а событие о переводе публикуется.
+     */
+    @Test
+    void transfer_EngineWithoutTransaction() {
+        /*
+            Подготовка.
+         */
+        BalanceEngine engine = mock(BalanceEngine.class);
+        when(balanceEngine.getIfAvailable()).thenReturn(engine);
+        /*
+            Выполняем.
+         */
+        assertDoesNotThrow(() -> transferService.transfer(request));
+        /*
+            Проверяем.
+         */
+        verify(engine).transfer(request);
+        verify(eventPublisher).publishEvent(new TransferCompletedEvent(request.getOrderId(), userFromId, userToId, BigDecimal.valueOf(30)));
+        verifyNoInteractions(transactionManager, accountRepository);
+    }
 
 
+    private void stubAccounts() {
+        when(accountRepository.findPrimaryByUserId(userFromId)).thenReturn(Optional.of(userFrom.getPaymentAccount()));
+        when(accountRepository.findPrimaryByUserId(userToId)).thenReturn(Optional.of(userTo.getPaymentAccount()));
+    }
+
     private Account createAccount(long id, String name, BigDecimal amount) {
         Account account = new Account();
         account.setId(id);
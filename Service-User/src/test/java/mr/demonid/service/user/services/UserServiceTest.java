@@ -0,0 +1,83 @@
+package mr.demonid.service.user.services;
+
+import mr.demonid.service.user.dto.UserInfo;
+import mr.demonid.service.user.engine.BalanceEngine;
+import mr.demonid.service.user.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.domain.Limit;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserServiceTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private ObjectProvider<BalanceEngine> balanceEngine;
+
+    @InjectMocks
+    private UserService userService;
+
+    /**
+     * Выгрузка идет страницами: каждая следующая начинается после последнего id предыдущей.
+     */
+    @Test
+    void forEachUsersInfo_KeysetPages() {
+        /*
+            Подготовка.
+         */
+        when(userRepository.findUserInfoAfter(0L, Limit.of(2))).thenReturn(List.of(info(1L), info(3L)));
+        when(userRepository.findUserInfoAfter(3L, Limit.of(2))).thenReturn(List.of(info(7L), info(8L)));
+        when(userRepository.findUserInfoAfter(8L, Limit.of(2))).thenReturn(List.of(info(9L)));
+        /*
+            Выполняем.
+         */
+        List<List<UserInfo>> pages = new ArrayList<>();
+        userService.forEachUsersInfo(2, pages::add);
+        /*
+            Проверяем: неполная страница - последняя, лишнего запроса нет.
+         */
+        assertEquals(3, pages.size());
+        assertEquals(9L, pages.get(2).get(0).getId());
+        verify(userRepository, times(3)).findUserInfoAfter(anyLong(), any(Limit.class));
+    }
+
+    /**
+     * При включенном движке балансы страницы берутся из него, а не из отстающего accounts.amount.
+     */
+    @Test
+    void getUsersInfo_EngineBalance() {
+        /*
+            Подготовка.
+         */
+        BalanceEngine engine = mock(BalanceEngine.class);
+        when(balanceEngine.getIfAvailable()).thenReturn(engine);
+        when(userRepository.findUserInfoAfter(0L, Limit.of(10))).thenReturn(List.of(info(1L), info(2L)));
+        when(engine.getUserBalance(1L)).thenReturn(new BigDecimal("3.50"));
+        /*
+            Выполняем.
+         */
+        List<UserInfo> page = userService.getUsersInfo(null, 10);
+        /*
+            Проверяем: неизвестный движку пользователь остается с балансом из БД.
+         */
+        assertEquals(new BigDecimal("3.50"), page.get(0).getBalance());
+        assertEquals(BigDecimal.TEN, page.get(1).getBalance());
+    }
+
+    private UserInfo info(Long id) {
+        return new UserInfo(id, "user" + id, BigDecimal.TEN);
+    }
+}
@@ -0,0 +1,91 @@
+package mr.demonid.service.user.services;
+
+import mr.demonid.service.user.dto.UserSummary;
+import mr.demonid.service.user.events.TransferCompletedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserSummaryCacheTest {
+
+    private UserSummaryCache cache;
+    private AtomicInteger loads;
+
+    /**
+     * Подготавливаем данные для каждого тестового метода.
+     */
+    @BeforeEach
+    public void setup() {
+        cache = new UserSummaryCache(Duration.ofMinutes(1), 32);
+        loads = new AtomicInteger();
+    }
+
+    /**
+     * Повторное чтение берется из кэша, после перевода - снова из БД.
+     */
+    @Test
+    void get_ReadThroughAndInvalidateOnTransfer() {
+        assertEquals(BigDecimal.TEN, cache.get(1L, this::load).getBalance());
+        cache.get(1L, this::load);
+        assertEquals(1, loads.get());
+
+        cache.onTransfer(new TransferCompletedEvent(UUID.randomUUID(), 1L, 2L, BigDecimal.ONE));
+        cache.get(1L, this::load);
+        assertEquals(2, loads.get());
+    }
+
+    /**
+     * Данные, прочитанные до сброса, в кэш не попадают.
+     */
+    @Test
+    void get_DoesNotCacheLoadRacingWithInvalidate() {
+        cache.get(1L, id -> {
+            cache.invalidate(id);       // перевод завершился, пока мы читали из БД
+            return load(id);
+        });
+        assertEquals(0, cache.size());
+    }
+
+    /**
+     * Размер кэша ограничен.
+     */
+    @Test
+    void get_EvictsWhenFull() {
+        for (long id = 0; id < 1000; id++) {
+            cache.get(id, this::load);
+        }
+        assertTrue(cache.size() <= 32);
+    }
+
+    /**
+     * Пакетное чтение: найденные в кэше не запрашиваются, остальные - одним вызовом,
+     * порядок ответа - как в запросе, неизвестные пропускаются.
+     */
+    @Test
+    void getAll_LoadsOnlyMissesInOneCall() {
+        cache.get(2L, this::load);
+        List<Collection<Long>> calls = new ArrayList<>();
+        List<UserSummary> result = cache.getAll(List.of(3L, 2L, 99L, 1L, 3L), ids -> {
+            calls.add(List.copyOf(ids));
+            return ids.stream().filter(id -> id != 99L).map(this::load).toList();
+        });
+        assertEquals(List.of(List.of(3L, 99L, 1L)), calls);
+        assertEquals(List.of(3L, 2L, 1L), result.stream().map(UserSummary::getUserId).toList());
+        cache.get(3L, this::load);
+        assertEquals(3, loads.get());
+    }
+
+    private UserSummary load(Long userId) {
+        loads.incrementAndGet();
+        return new UserSummary(userId, "user" + userId, userId + 100, BigDecimal.TEN);
+    }
+}
@@ -0,0 +1,37 @@
+package mr.demonid.web.client.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Пул фоновых обновлений локальных кэшей (см. SwrCache).
+ * Отдельный от пула загрузки страниц и при переполнении отказывает (AbortPolicy):
+ * обновление не должно выполняться в потоке запроса, а пропущенное
+ * повторит следующий запрос, получивший устаревшую запись.
+ */
+@Configuration
+public class CacheConfig {
+
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService cacheRefreshExecutor(@Value("${web.cache.refresh-threads:2}") int threads,
+                                                @Value("${web.cache.refresh-queue-capacity:8}") int queueCapacity) {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory factory = r -> {
+            Thread thread = new Thread(r, "cache-refresh-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), factory, new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
@@ -0,0 +1,40 @@
+package mr.demonid.web.client.config;
+
+import feign.hc5.ApacheHttp5Client;
+import mr.demonid.web.client.links.DiscoveryFeignClient;
+import mr.demonid.web.client.links.InFlightRequests;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerClient;
+import org.springframework.cloud.loadbalancer.annotation.LoadBalancerClients;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Прямые вызовы сервисов по данным Eureka (профиль discovery, web.links.mode=discovery).
+ * Адреса Feign-клиентов в этом режиме пустые, так что Feign передает запрос
+ * с именем сервиса в DiscoveryFeignClient, а тот выбирает экземпляр балансировщиком
+ * power of two choices. В режиме gateway (по умолчанию) конфигурация не подключается
+ * и все вызовы, как и раньше, идут через API Gateway.
+ * Фильтры шлюза в этом режиме не работают: в частности, лимит частоты заказов
+ * (gateway.rate-limit) на прямые вызовы Order-service не распространяется.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "web.links", name = "mode", havingValue = "discovery")
+@LoadBalancerClients(defaultConfiguration = PowerOfTwoChoicesConfig.class)
+public class DiscoveryLinksConfig {
+
+    @Bean
+    public InFlightRequests inFlightRequests() {
+        return new InFlightRequests();
+    }
+
+    @Bean
+    public DiscoveryFeignClient discoveryFeignClient(CloseableHttpClient feignHttpClient,
+                                                     LoadBalancerClient loadBalancerClient,
+                                                     InFlightRequests inFlightRequests,
+                                                     @Value("${web.links.gateway-url}") String gatewayUrl) {
+        return new DiscoveryFeignClient(new ApacheHttp5Client(feignHttpClient), loadBalancerClient, inFlightRequests, gatewayUrl);
+    }
+}
@@ -0,0 +1,50 @@
+package mr.demonid.web.client.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Пул для параллельной загрузки данных страниц (см. PageDataLoader).
+ * По умолчанию - ограниченный пул платформенных потоков: при переполнении
+ * очереди пул отказывает (AbortPolicy), и страница показывается без этих данных.
+ * Выполнять задачу в потоке запроса нельзя: тогда её таймаут не соблюдается.
+ * С web.page-loader.virtual-threads=true
+ * (Java 21+) каждая загрузка идет в своем виртуальном потоке; число одновременных
+ * вызовов каждого сервиса и так ограничено bulkhead-ом Feign-клиента.
+ */
+@Configuration
+public class PageLoaderConfig {
+
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService pageLoaderExecutor(@Value("${web.page-loader.threads:16}") int threads,
+                                              @Value("${web.page-loader.queue-capacity:64}") int queueCapacity,
+                                              @Value("${web.page-loader.virtual-threads:false}") boolean virtualThreads) {
+        if (virtualThreads) {
+            try {
+                // через reflection, чтобы сборка оставалась на Java 17
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                System.out.println("PageLoaderConfig: виртуальные потоки недоступны, используем пул: " + e);
+            }
+        }
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory factory = r -> {
+            Thread thread = new Thread(r, "page-loader-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), factory, new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
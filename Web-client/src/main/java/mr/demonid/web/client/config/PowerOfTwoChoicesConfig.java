@@ -0,0 +1,25 @@
+package mr.demonid.web.client.config;
+
+import mr.demonid.web.client.links.InFlightRequests;
+import mr.demonid.web.client.links.PowerOfTwoChoicesLoadBalancer;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.loadbalancer.core.ReactorLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.support.LoadBalancerClientFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.env.Environment;
+
+/**
+ * Конфигурация балансировщика для каждого сервиса (дочерний контекст LoadBalancer).
+ * Без @Configuration: подключается только через @LoadBalancerClients в DiscoveryLinksConfig.
+ */
+public class PowerOfTwoChoicesConfig {
+
+    @Bean
+    public ReactorLoadBalancer<ServiceInstance> powerOfTwoChoicesLoadBalancer(Environment environment,
+                                                                              LoadBalancerClientFactory factory,
+                                                                              InFlightRequests inFlight) {
+        String serviceId = environment.getProperty(LoadBalancerClientFactory.PROPERTY_NAME);
+        return new PowerOfTwoChoicesLoadBalancer(factory.getLazyProvider(serviceId, ServiceInstanceListSupplier.class), inFlight);
+    }
+}
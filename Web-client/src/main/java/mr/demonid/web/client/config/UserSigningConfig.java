@@ -0,0 +1,26 @@
+package mr.demonid.web.client.config;
+
+import mr.demonid.web.client.links.UserSigningInterceptor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Подпись id пользователя в вызовах через шлюз (см. UserSigningInterceptor).
+ * В режиме gateway ключ обязателен: без подписи шлюз ограничивал бы заказы
+ * по IP Web-client, то есть одним ведром на всех пользователей.
+ * В режиме discovery вызовы идут мимо шлюза, и ключ не нужен.
+ */
+@Configuration
+public class UserSigningConfig {
+
+    @Bean
+    public UserSigningInterceptor userSigningInterceptor(@Value("${web.links.user-signing-key:}") String key,
+                                                         @Value("${web.links.mode:gateway}") String mode) {
+        if ("gateway".equals(mode) && (key == null || key.isBlank())) {
+            throw new IllegalStateException("Не задан ключ подписи web.links.user-signing-key (USER_SIGNING_KEY), "
+                    + "обязательный в режиме web.links.mode=gateway");
+        }
+        return new UserSigningInterceptor(key);
+    }
+}
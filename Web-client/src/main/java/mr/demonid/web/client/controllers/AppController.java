@@ -3,12 +3,9 @@ package mr.demonid.web.client.controllers;
 import feign.FeignException;
 import jakarta.servlet.http.HttpSession;
 import lombok.AllArgsConstructor;
-import mr.demonid.web.client.dto.ProductInfo;
-import mr.demonid.web.client.dto.UserInfo;
-import mr.demonid.web.client.links.UserServiceClient;
-import mr.demonid.web.client.service.CatalogService;
+import mr.demonid.web.client.dto.HomeView;
+import mr.demonid.web.client.service.HomeViewService;
 import mr.demonid.web.client.service.OrderService;
-import mr.demonid.web.client.service.UserService;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -16,17 +13,14 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 
 import java.math.BigDecimal;
-import java.util.List;
-import java.util.Optional;
 import java.util.UUID;
 
 @Controller
 @AllArgsConstructor
 public class AppController {
 
-    private final UserService userService;
-    private CatalogService catalogService;
     private OrderService orderService;
+    private HomeViewService homeViewService;
 
     @GetMapping
     public String baseDir() {
@@ -39,13 +33,10 @@ public class AppController {
 
         Long id = (Long) session.getAttribute("userId");    // смотрим, есть ли в сессии данные о текущем пользователе?
         if (id == null) {
-            List<UserInfo> users = userService.getAllUsers();
-            Optional<UserInfo> user = users.stream().filter(u -> u.getId() > 1).findFirst();
-            id = user.isPresent() ? user.get().getId() : 0;
-        } else {
-            id = userService.getUserById(id).getId();       // нормализуем id
-            System.out.println("session id: " + id);
+            // пользователя по умолчанию выберет set-user из списка, который он и так загружает
+            return "redirect:/set-user";
         }
+        System.out.println("session id: " + id);
         return "redirect:/set-user?userId=" + id;
     }
 
@@ -86,17 +77,16 @@ public class AppController {
     }
 
     @GetMapping("/set-user")
-    public String setUser(HttpSession session, Model model, @RequestParam("userId") Long id) {
+    public String setUser(HttpSession session, Model model, @RequestParam(value = "userId", required = false) Long id) {
 
-        List<ProductInfo> products = catalogService.getProducts();
-        model.addAttribute("products", products);
+        // вся модель страницы одним вызовом (товары, пользователи и текущий пользователь - параллельно)
+        HomeView view = homeViewService.getHomeView(id);
+        model.addAttribute("products", view.getProducts());
+        model.addAttribute("users", view.getUsers());
+        model.addAttribute("currentUser", view.getCurrentUser());
+        model.addAttribute("failures", view.getFailures());
 
-        List<UserInfo> users = userService.getAllUsers();
-        UserInfo currentUser = userService.getUserById(id);
-        model.addAttribute("users", users);
-        model.addAttribute("currentUser", currentUser);
-
-        session.setAttribute("userId", currentUser.getId());        // сохраняем в сессию id текущего пользователя
+        session.setAttribute("userId", view.getCurrentUser().getId());        // сохраняем в сессию id текущего пользователя
 
         return "/home";
     }
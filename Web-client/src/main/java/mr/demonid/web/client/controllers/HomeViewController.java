@@ -0,0 +1,30 @@
+package mr.demonid.web.client.controllers;
+
+import lombok.AllArgsConstructor;
+import mr.demonid.web.client.dto.HomeView;
+import mr.demonid.web.client.service.HomeViewService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * API главной страницы: всё, что нужно для её отрисовки, одним запросом.
+ */
+@AllArgsConstructor
+@RestController
+@RequestMapping("/api")
+public class HomeViewController {
+
+    private HomeViewService homeViewService;
+
+    /**
+     * Модель главной страницы.
+     * @param userId Текущий пользователь, без параметра - пользователь по умолчанию.
+     */
+    @GetMapping("/home-view")
+    public ResponseEntity<HomeView> getHomeView(@RequestParam(required = false) Long userId) {
+        return ResponseEntity.ok(homeViewService.getHomeView(userId));
+    }
+}
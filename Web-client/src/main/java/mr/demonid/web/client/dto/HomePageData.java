@@ -0,0 +1,22 @@
+package mr.demonid.web.client.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Данные главной страницы.
+ */
+@Data
+@AllArgsConstructor
+public class HomePageData {
+    private List<ProductInfo> products;
+    private List<UserInfo> users;
+    private UserInfo currentUser;
+    private List<String> failures;          // что не удалось загрузить (страница показывается без этого)
+
+    public boolean isPartial() {
+        return !failures.isEmpty();
+    }
+}
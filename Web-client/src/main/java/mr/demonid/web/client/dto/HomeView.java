@@ -0,0 +1,20 @@
+package mr.demonid.web.client.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Модель главной страницы (home.html) одним ответом.
+ * Содержит только поля, которые использует шаблон: в списке пользователей
+ * нет балансов, баланс есть только у текущего пользователя.
+ */
+@Data
+@AllArgsConstructor
+public class HomeView {
+    private List<ProductInfo> products;
+    private List<UserOption> users;
+    private UserInfo currentUser;
+    private List<String> failures;          // что не удалось загрузить
+}
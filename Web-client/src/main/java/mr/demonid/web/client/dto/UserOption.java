@@ -0,0 +1,14 @@
+package mr.demonid.web.client.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Пользователь в списке выбора: только то, что нужно для выпадающего списка.
+ */
+@Data
+@AllArgsConstructor
+public class UserOption {
+    private Long id;
+    private String username;
+}
@@ -10,10 +10,11 @@ import java.util.List;
 
 /**
  * Обращение к микросервису Catalog-service.
- * Поскольку он за API Gateway, то в @FeignClient так же
- * указываем путь к микросервису в API Gateway, через url.
+ * По умолчанию он вызывается через API Gateway: url из web.links.*-url
+ * указывает путь к микросервису в gateway. В профиле discovery url пустой,
+ * и экземпляр сервиса выбирается по Eureka (см. DiscoveryLinksConfig).
  */
-@FeignClient(name = "CATALOG-SERVICE", url = "http://localhost:8090/CATALOG-SERVICE")      // имя сервиса, под которым он зарегистрирован в Eureka
+@FeignClient(name = "CATALOG-SERVICE", url = "${web.links.catalog-url:}", fallbackFactory = CatalogServiceClientFallback.class)      // имя сервиса, под которым он зарегистрирован в Eureka
 public interface CatalogServiceClient {
 
     @GetMapping("/api/catalog/get-all")
@@ -0,0 +1,11 @@
+package mr.demonid.web.client.links;
+
+import org.springframework.stereotype.Component;
+
+@Component
+public class CatalogServiceClientFallback extends RethrowingFallbackFactory<CatalogServiceClient> {
+
+    public CatalogServiceClientFallback() {
+        super(CatalogServiceClient.class, "CATALOG-SERVICE");
+    }
+}
@@ -0,0 +1,90 @@
+package mr.demonid.web.client.links;
+
+import feign.Client;
+import feign.Request;
+import feign.Response;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerClient;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.URI;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Feign-клиент для режима web.links.mode=discovery.
+ * Имя сервиса из адреса запроса (http://CATALOG-SERVICE/api/...) разрешается
+ * через Eureka и балансировщик напрямую в адрес экземпляра, минуя gateway.
+ * Через gateway запрос идет, только если экземпляров нет (Eureka недоступна,
+ * сервис не зарегистрирован) или к выбранному экземпляру не удалось подключиться -
+ * запрос тогда еще не отправлен, так что повтор безопасен даже для POST.
+ */
+public class DiscoveryFeignClient implements Client, MeterBinder {
+
+    private final Client delegate;
+    private final LoadBalancerClient loadBalancer;
+    private final InFlightRequests inFlight;
+    private final String gatewayUrl;
+
+    private final AtomicLong direct = new AtomicLong();
+    private final AtomicLong viaGateway = new AtomicLong();
+
+    public DiscoveryFeignClient(Client delegate, LoadBalancerClient loadBalancer, InFlightRequests inFlight, String gatewayUrl) {
+        this.delegate = delegate;
+        this.loadBalancer = loadBalancer;
+        this.inFlight = inFlight;
+        this.gatewayUrl = gatewayUrl;
+    }
+
+    @Override
+    public Response execute(Request request, Request.Options options) throws IOException {
+        URI original = URI.create(request.url());
+        String serviceId = original.getHost();
+        ServiceInstance instance = loadBalancer.choose(serviceId);
+        if (instance == null) {
+            return viaGateway(request, options, original);
+        }
+        String url = loadBalancer.reconstructURI(instance, original).toString();
+        inFlight.increment(instance);
+        try {
+            Response response = delegate.execute(withUrl(request, url), options);
+            direct.incrementAndGet();
+            return response;
+        } catch (ConnectException e) {
+            System.out.println("DiscoveryFeignClient: " + serviceId + " недоступен по " + url + ", идем через gateway");
+            return viaGateway(request, options, original);
+        } finally {
+            inFlight.decrement(instance);
+        }
+    }
+
+    private Response viaGateway(Request request, Request.Options options, URI original) throws IOException {
+        viaGateway.incrementAndGet();
+        String url = gatewayUrl + "/" + original.getHost() + original.getRawPath()
+                + (original.getRawQuery() == null ? "" : "?" + original.getRawQuery());
+        return delegate.execute(withUrl(request, url), options);
+    }
+
+    private static Request withUrl(Request request, String url) {
+        return Request.create(request.httpMethod(), url, request.headers(), request.body(), request.charset(), request.requestTemplate());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("web.links.requests", direct, AtomicLong::get)
+                .tag("route", "direct")
+                .description("Requests sent straight to a discovered service instance")
+                .register(registry);
+        FunctionCounter.builder("web.links.requests", viaGateway, AtomicLong::get)
+                .tag("route", "gateway")
+                .description("Requests that fell back to the API gateway")
+                .register(registry);
+        Gauge.builder("web.links.in-flight", inFlight, InFlightRequests::total)
+                .description("Requests in progress to discovered service instances")
+                .register(registry);
+    }
+}
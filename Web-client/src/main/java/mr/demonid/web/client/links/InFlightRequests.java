@@ -0,0 +1,43 @@
+package mr.demonid.web.client.links;
+
+import org.springframework.cloud.client.ServiceInstance;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Число незавершённых запросов к каждому экземпляру сервиса.
+ * Заполняется DiscoveryFeignClient, читается балансировщиком PowerOfTwoChoicesLoadBalancer.
+ */
+public class InFlightRequests {
+
+    private final Map<String, AtomicInteger> counters = new ConcurrentHashMap<>();
+
+    public void increment(ServiceInstance instance) {
+        counters.computeIfAbsent(key(instance), k -> new AtomicInteger()).incrementAndGet();
+    }
+
+    public void decrement(ServiceInstance instance) {
+        AtomicInteger counter = counters.get(key(instance));
+        if (counter != null) {
+            counter.decrementAndGet();
+        }
+    }
+
+    public int get(ServiceInstance instance) {
+        AtomicInteger counter = counters.get(key(instance));
+        return counter == null ? 0 : counter.get();
+    }
+
+    /**
+     * Всего незавершённых запросов по всем экземплярам.
+     */
+    public int total() {
+        return counters.values().stream().mapToInt(AtomicInteger::get).sum();
+    }
+
+    private static String key(ServiceInstance instance) {
+        return instance.getServiceId() + "@" + instance.getHost() + ":" + instance.getPort();
+    }
+}
@@ -5,18 +5,24 @@ import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 
 import java.util.UUID;
 
 /**
  * Обращение к микросервису Order-service.
- * Поскольку он за API Gateway, то в @FeignClient так же
- * указываем путь к микросервису в API Gateway, через url.
+ * По умолчанию он вызывается через API Gateway: url из web.links.*-url
+ * указывает путь к микросервису в gateway. В профиле discovery url пустой,
+ * и экземпляр сервиса выбирается по Eureka (см. DiscoveryLinksConfig).
  */
-@FeignClient(name = "ORDER-SERVICE", url = "http://localhost:8090/ORDER-SERVICE")
+@FeignClient(name = "ORDER-SERVICE", url = "${web.links.order-url:}", fallbackFactory = OrderServiceClientFallback.class)
 public interface OrderServiceClient {
 
+    /**
+     * @param userId Покупатель; по заголовку (подписанному UserSigningInterceptor) шлюз
+     *               ограничивает частоту заказов каждого пользователя.
+     */
     @PostMapping("/api/orders")
-    ResponseEntity<UUID> createOrder(@RequestBody ProductReservationRequest order);
+    ResponseEntity<UUID> createOrder(@RequestHeader(UserSigningInterceptor.USER_HEADER) long userId, @RequestBody ProductReservationRequest order);
 
 }
@@ -0,0 +1,11 @@
+package mr.demonid.web.client.links;
+
+import org.springframework.stereotype.Component;
+
+@Component
+public class OrderServiceClientFallback extends RethrowingFallbackFactory<OrderServiceClient> {
+
+    public OrderServiceClientFallback() {
+        super(OrderServiceClient.class, "ORDER-SERVICE");
+    }
+}
@@ -0,0 +1,54 @@
+package mr.demonid.web.client.links;
+
+import feign.FeignException;
+import feign.Request;
+import org.springframework.cloud.openfeign.FallbackFactory;
+
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Fallback для Feign-клиентов под circuit breaker.
+ * Подменять ответ нам нечем, поэтому fallback просто пробрасывает ошибку:
+ * FeignException - как есть, а отказ самого circuit breaker / bulkhead / таймаута
+ * превращает в FeignException.ServiceUnavailable. Так вызывающий код продолжает
+ * обрабатывать все сбои связи через привычный catch (FeignException e).
+ */
+public abstract class RethrowingFallbackFactory<T> implements FallbackFactory<T> {
+
+    private final Class<T> type;
+    private final String serviceName;
+
+    protected RethrowingFallbackFactory(Class<T> type, String serviceName) {
+        this.type = type;
+        this.serviceName = serviceName;
+    }
+
+    @Override
+    public T create(Throwable cause) {
+        RuntimeException error = translate(cause);
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "equals": return proxy == args[0];
+                case "hashCode": return System.identityHashCode(proxy);
+                case "toString": return serviceName + " fallback";
+                default: throw error;
+            }
+        }));
+    }
+
+    private RuntimeException translate(Throwable cause) {
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof FeignException e) {
+            return e;
+        }
+        String message = "Сервис " + serviceName + " временно недоступен (" + cause.getClass().getSimpleName() + ")";
+        Request request = Request.create(Request.HttpMethod.GET, serviceName, Map.of(), null, StandardCharsets.UTF_8, null);
+        return new FeignException.ServiceUnavailable(message, request, message.getBytes(StandardCharsets.UTF_8), Map.of());
+    }
+}
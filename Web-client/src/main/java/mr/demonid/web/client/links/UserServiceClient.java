@@ -9,7 +9,7 @@ import org.springframework.web.bind.annotation.PathVariable;
 
 import java.util.List;
 
-@FeignClient(name = "USER-SERVICE", url = "http://localhost:8090/USER-SERVICE")      // имя сервиса, под которым он зарегистрирован в Eureka
+@FeignClient(name = "USER-SERVICE", url = "${web.links.user-url:}", fallbackFactory = UserServiceClientFallback.class)      // имя сервиса, под которым он зарегистрирован в Eureka
 public interface UserServiceClient {
 
     @GetMapping("/api/user/get-all-users")
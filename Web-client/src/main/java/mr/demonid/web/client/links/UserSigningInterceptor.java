@@ -0,0 +1,51 @@
+package mr.demonid.web.client.links;
+
+import feign.RequestInterceptor;
+import feign.RequestTemplate;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+import java.util.Collection;
+
+/**
+ * Подпись id пользователя для шлюза: к запросу с заголовком X-User-Id
+ * добавляется X-User-Signature - HMAC-SHA256 от id на общем со шлюзом ключе.
+ * Шлюз доверяет id (и ведет по нему лимит частоты заказов) только с верной подписью.
+ * Без ключа запросы уходят неподписанными (так бывает только в режиме discovery,
+ * см. UserSigningConfig).
+ */
+public class UserSigningInterceptor implements RequestInterceptor {
+
+    public static final String USER_HEADER = "X-User-Id";
+    public static final String SIGNATURE_HEADER = "X-User-Signature";
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private final SecretKeySpec key;
+
+    public UserSigningInterceptor(String secret) {
+        this.key = secret == null || secret.isBlank() ? null : new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+    }
+
+    @Override
+    public void apply(RequestTemplate template) {
+        Collection<String> users = template.headers().get(USER_HEADER);
+        if (key == null || users == null || users.isEmpty()) {
+            return;
+        }
+        template.header(SIGNATURE_HEADER, sign(users.iterator().next()));
+    }
+
+    private String sign(String userId) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(mac.doFinal(userId.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC недоступен", e);
+        }
+    }
+}
@@ -1,27 +1,51 @@
 package mr.demonid.web.client.service;
 
 import feign.FeignException;
-import lombok.AllArgsConstructor;
+import io.micrometer.core.instrument.MeterRegistry;
 import mr.demonid.web.client.dto.ProductInfo;
 import mr.demonid.web.client.links.CatalogServiceClient;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 @Service
-@AllArgsConstructor
 public class CatalogService {
 
-    private CatalogServiceClient catalogServiceClient;
+    private static final String ALL = "all";
+
+    private final CatalogServiceClient catalogServiceClient;
+    private final SwrCache<String, List<ProductInfo>> productsCache;
+
+    public CatalogService(CatalogServiceClient catalogServiceClient,
+                          @Qualifier("cacheRefreshExecutor") ExecutorService refreshExecutor,
+                          MeterRegistry registry,
+                          @Value("${web.cache.products.ttl:60s}") Duration ttl,
+                          @Value("${web.cache.products.stale:10m}") Duration stale) {
+        this.catalogServiceClient = catalogServiceClient;
+        this.productsCache = new SwrCache<>("products", ttl, stale, refreshExecutor,
+                key -> catalogServiceClient.getAllProducts().getBody(), registry);
+    }
+
+    /**
+     * Список всех товаров из кэша (stale-while-revalidate).
+     * Ошибка загрузки пробрасывается, если в кэше нечего отдать.
+     */
+    public List<ProductInfo> loadProducts() {
+        return productsCache.get(ALL);
+    }
 
     /**
      * Возвращает список всех товаров.
      */
     public List<ProductInfo> getProducts() {
         try {
-            return catalogServiceClient.getAllProducts().getBody();
+            return loadProducts();
         } catch (FeignException e) {
             System.out.println("Что-то пошло не так: " + e.contentUTF8());
             return new ArrayList<>();
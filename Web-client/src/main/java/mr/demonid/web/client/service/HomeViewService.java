@@ -0,0 +1,49 @@
+package mr.demonid.web.client.service;
+
+import mr.demonid.web.client.dto.HomePageData;
+import mr.demonid.web.client.dto.HomeView;
+import mr.demonid.web.client.dto.UserInfo;
+import mr.demonid.web.client.dto.UserOption;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Сборка модели главной страницы (backend-for-frontend).
+ * Данные грузятся параллельно (PageDataLoader), общая для всех часть - из кэшей
+ * списков, а урезанный список пользователей строится один раз на каждое
+ * обновление исходного списка и переиспользуется всеми запросами.
+ */
+@Service
+public class HomeViewService {
+
+    private final PageDataLoader pageDataLoader;
+
+    // урезанный список строится заново, только когда кэш пользователей отдал новый список
+    private volatile Projection projection = new Projection(null, List.of());
+
+    public HomeViewService(PageDataLoader pageDataLoader) {
+        this.pageDataLoader = pageDataLoader;
+    }
+
+    /**
+     * Модель главной страницы.
+     * @param userId Текущий пользователь, null - пользователь по умолчанию.
+     */
+    public HomeView getHomeView(Long userId) {
+        HomePageData page = pageDataLoader.loadHome(userId);
+        return new HomeView(page.getProducts(), userOptions(page.getUsers()), page.getCurrentUser(), page.getFailures());
+    }
+
+    private List<UserOption> userOptions(List<UserInfo> users) {
+        Projection current = projection;
+        if (current.source() != users) {
+            current = new Projection(users, users.stream().map(u -> new UserOption(u.getId(), u.getUsername())).toList());
+            projection = current;
+        }
+        return current.options();
+    }
+
+    private record Projection(List<UserInfo> source, List<UserOption> options) {
+    }
+}
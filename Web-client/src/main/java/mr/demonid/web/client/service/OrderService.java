@@ -17,7 +17,7 @@ public class OrderService {
 
     public UUID addOrder(long productId, long userId, int quantity, BigDecimal price) throws FeignException {
         ProductReservationRequest request = new ProductReservationRequest(null, userId, 1, productId, quantity, price);
-        return orderServiceClient.createOrder(request).getBody();
+        return orderServiceClient.createOrder(userId, request).getBody();
     }
 
 }
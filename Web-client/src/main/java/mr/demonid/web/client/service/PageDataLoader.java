@@ -0,0 +1,117 @@
+package mr.demonid.web.client.service;
+
+import mr.demonid.web.client.dto.HomePageData;
+import mr.demonid.web.client.dto.ProductInfo;
+import mr.demonid.web.client.dto.UserInfo;
+import mr.demonid.web.client.links.UserServiceClient;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Загрузка данных страниц.
+ * Независимые вызовы сервисов выполняются параллельно, поэтому время загрузки
+ * страницы - это время самого медленного вызова, а не сумма всех.
+ * У каждого вызова свой таймаут; не успевший или упавший вызов заменяется
+ * пустым значением, а страница показывается с пометкой о неполных данных.
+ * Пул загрузки при переполнении отказывает, и отказ - такая же ошибка вызова:
+ * выполнять вызов в потоке запроса нельзя, там таймаут не соблюдается.
+ */
+@Service
+public class PageDataLoader {
+
+    private static final UserInfo GUEST = new UserInfo(0L, "", BigDecimal.ZERO);
+
+    private final CatalogService catalogService;
+    private final UserService userService;
+    private final UserServiceClient userServiceClient;
+    private final ExecutorService executor;
+    private final long timeoutMillis;
+
+    public PageDataLoader(CatalogService catalogService,
+                          UserService userService,
+                          UserServiceClient userServiceClient,
+                          @Qualifier("pageLoaderExecutor") ExecutorService executor,
+                          @Value("${web.page-loader.timeout:2s}") Duration timeout) {
+        this.catalogService = catalogService;
+        this.userService = userService;
+        this.userServiceClient = userServiceClient;
+        this.executor = executor;
+        this.timeoutMillis = timeout.toMillis();
+    }
+
+    /**
+     * Данные главной страницы: товары, пользователи и текущий пользователь.
+     * @param userId Текущий пользователь, null - первый подходящий из списка.
+     */
+    public HomePageData loadHome(Long userId) {
+        Set<String> failures = ConcurrentHashMap.newKeySet();
+        // списки - из кэшей сервисов (обычно без обращения к backend), текущий пользователь - всегда свежий
+        CompletableFuture<List<ProductInfo>> products = call("товары", catalogService::loadProducts, new ArrayList<>(), failures);
+        CompletableFuture<List<UserInfo>> users = call("пользователи", userService::loadAllUsers, new ArrayList<>(), failures);
+        CompletableFuture<UserInfo> current = userId == null
+                ? CompletableFuture.completedFuture(null)
+                : call("текущий пользователь", () -> userServiceClient.getUserById(userId).getBody(), null, failures);
+        CompletableFuture.allOf(products, users, current).join();
+
+        UserInfo currentUser = current.join();
+        if (currentUser == null) {
+            // пользователь не задан или недоступен - берем из уже загруженного списка
+            currentUser = users.join().stream()
+                    .filter(u -> userId == null ? u.getId() > 1 : u.getId().equals(userId))
+                    .findFirst()
+                    .orElse(GUEST);
+        }
+        return new HomePageData(products.join(), users.join(), currentUser, List.copyOf(failures));
+    }
+
+    /**
+     * Асинхронный вызов с таймаутом; при ошибке, отказе пула или таймауте - fallback.
+     * Исключения из вызова не выходят: ошибка только отмечается в failures.
+     * По таймауту задача отменяется: еще не начатая из очереди не выполнится,
+     * а выполняемая получит interrupt (прервет ожидание bulkhead-а или соединения из пула).
+     * Уже идущее чтение ответа прерывание не останавливает - его ограничивает read-timeout Feign.
+     */
+    private <T> CompletableFuture<T> call(String part, Supplier<T> supplier, T fallback, Set<String> failures) {
+        CompletableFuture<T> call = new CompletableFuture<>();
+        try {
+            Future<?> task = executor.submit(() -> {
+                try {
+                    call.complete(supplier.get());
+                } catch (Throwable e) {
+                    call.completeExceptionally(e);
+                }
+            });
+            call.whenComplete((result, e) -> {
+                if (e instanceof TimeoutException) {
+                    task.cancel(true);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            call.completeExceptionally(e);
+        }
+        return call.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+                .handle((result, e) -> {
+                    if (e != null) {
+                        failures.add(part);
+                        System.out.println("PageDataLoader: не загружено (" + part + "): " + e);
+                        return fallback;
+                    }
+                    return result == null ? fallback : result;
+                });
+    }
+}
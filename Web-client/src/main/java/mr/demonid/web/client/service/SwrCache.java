@@ -0,0 +1,135 @@
+package mr.demonid.web.client.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Локальный кэш со схемой stale-while-revalidate для небольшого числа ключей
+ * (списки товаров, пользователей).
+ * Запись моложе ttl отдается как есть. Запись старше ttl, но моложе ttl + stale,
+ * тоже отдается сразу, а в фоне запускается её обновление. Более старая запись
+ * (или её отсутствие) загружается синхронно.
+ * Загрузка одного ключа всегда одна (single-flight): остальные вызовы ждут её результата.
+ * Ошибка фонового обновления оставляет старое значение до конца окна stale,
+ * ошибка синхронной загрузки пробрасывается вызывающему.
+ * Фоновые обновления нужно отдавать пулу, который отказывает при переполнении,
+ * а не выполняет задачу в вызывающем потоке: иначе "фоновое" обновление
+ * под нагрузкой идет в потоке запроса. Отказанное обновление повторит следующий запрос.
+ */
+public class SwrCache<K, V> {
+
+    private final long ttlNanos;
+    private final long staleNanos;
+    private final Executor refreshExecutor;
+    private final Function<K, V> loader;
+    private final LongSupplier clock;
+    private final Map<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong staleHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong loadFailures = new AtomicLong();
+
+    public SwrCache(String name, Duration ttl, Duration stale, Executor refreshExecutor,
+                    Function<K, V> loader, MeterRegistry registry) {
+        this(name, ttl, stale, refreshExecutor, loader, registry, System::nanoTime);
+    }
+
+    /**
+     * @param clock Источник времени в наносекундах (в тестах - управляемый).
+     */
+    SwrCache(String name, Duration ttl, Duration stale, Executor refreshExecutor,
+             Function<K, V> loader, MeterRegistry registry, LongSupplier clock) {
+        this.ttlNanos = ttl.toNanos();
+        this.staleNanos = stale.toNanos();
+        this.refreshExecutor = refreshExecutor;
+        this.loader = loader;
+        this.clock = clock;
+
+        Gauge.builder("cache.size", entries, Map::size).tag("cache", name).register(registry);
+        FunctionCounter.builder("cache.gets", hits, AtomicLong::get).tag("cache", name).tag("result", "hit").register(registry);
+        FunctionCounter.builder("cache.gets", staleHits, AtomicLong::get).tag("cache", name).tag("result", "stale").register(registry);
+        FunctionCounter.builder("cache.gets", misses, AtomicLong::get).tag("cache", name).tag("result", "miss").register(registry);
+        FunctionCounter.builder("cache.loads", loads, AtomicLong::get).tag("cache", name).tag("result", "success").register(registry);
+        FunctionCounter.builder("cache.loads", loadFailures, AtomicLong::get).tag("cache", name).tag("result", "failure").register(registry);
+    }
+
+    public V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry != null) {
+            long age = clock.getAsLong() - entry.loaded();
+            if (age < ttlNanos) {
+                hits.incrementAndGet();
+                return entry.value();
+            }
+            if (age < ttlNanos + staleNanos) {
+                staleHits.incrementAndGet();
+                load(key, refreshExecutor);
+                return entry.value();
+            }
+        }
+        misses.incrementAndGet();
+        try {
+            return load(key, null).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Загрузка ключа; если она уже идет - возвращается текущая.
+     * @param executor null - загрузить в текущем потоке.
+     */
+    private CompletableFuture<V> load(K key, Executor executor) {
+        CompletableFuture<V> result = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, result);
+        if (running != null) {
+            return running;
+        }
+        Runnable task = () -> {
+            try {
+                V value = loader.apply(key);
+                entries.put(key, new Entry<>(value, clock.getAsLong()));
+                loads.incrementAndGet();
+                result.complete(value);
+            } catch (Throwable e) {
+                loadFailures.incrementAndGet();
+                result.completeExceptionally(e);
+            } finally {
+                inFlight.remove(key, result);
+            }
+        };
+        if (executor == null) {
+            task.run();
+        } else {
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                // обновить не успели - попробует следующий запрос
+                inFlight.remove(key, result);
+                result.completeExceptionally(e);
+            }
+        }
+        return result;
+    }
+
+    private record Entry<V>(V value, long loaded) {
+    }
+}
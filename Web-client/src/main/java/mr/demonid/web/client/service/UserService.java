@@ -1,20 +1,44 @@
 package mr.demonid.web.client.service;
 
 import feign.FeignException;
-import lombok.AllArgsConstructor;
+import io.micrometer.core.instrument.MeterRegistry;
 import mr.demonid.web.client.dto.UserInfo;
 import mr.demonid.web.client.links.UserServiceClient;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 @Service
-@AllArgsConstructor
 public class UserService {
 
-    UserServiceClient userServiceClient;
+    private static final String ALL = "all";
+
+    private final UserServiceClient userServiceClient;
+    private final SwrCache<String, List<UserInfo>> usersCache;
+
+    public UserService(UserServiceClient userServiceClient,
+                       @Qualifier("cacheRefreshExecutor") ExecutorService refreshExecutor,
+                       MeterRegistry registry,
+                       @Value("${web.cache.users.ttl:5s}") Duration ttl,
+                       @Value("${web.cache.users.stale:60s}") Duration stale) {
+        this.userServiceClient = userServiceClient;
+        this.usersCache = new SwrCache<>("users", ttl, stale, refreshExecutor,
+                key -> userServiceClient.getAllUsers().getBody(), registry);
+    }
+
+    /**
+     * Список всех пользователей из кэша (stale-while-revalidate).
+     * Ошибка загрузки пробрасывается, если в кэше нечего отдать.
+     */
+    public List<UserInfo> loadAllUsers() {
+        return usersCache.get(ALL);
+    }
 
     /**
      * Возвращает список всех пользователей
@@ -22,7 +46,7 @@ public class UserService {
      */
     public List<UserInfo> getAllUsers() {
         try {
-            return userServiceClient.getAllUsers().getBody();
+            return loadAllUsers();
         } catch (FeignException e) {
             System.out.println("getAllUsers(): Что-то пошло не так: " + e.contentUTF8());
             return new ArrayList<>();
@@ -3,7 +3,7 @@ package mr.demonid.web.client;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+@SpringBootTest(properties = "web.links.user-signing-key=test-key")
 class WebClientApplicationTests {
 
     @Test
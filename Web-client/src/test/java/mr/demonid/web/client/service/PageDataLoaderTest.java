@@ -0,0 +1,169 @@
+package mr.demonid.web.client.service;
+
+import mr.demonid.web.client.dto.HomePageData;
+import mr.demonid.web.client.dto.ProductInfo;
+import mr.demonid.web.client.dto.UserInfo;
+import mr.demonid.web.client.links.UserServiceClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.ResponseEntity;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PageDataLoaderTest {
+
+    private static final Duration TIMEOUT = Duration.ofMillis(200);
+
+    @Mock
+    private CatalogService catalogService;
+
+    @Mock
+    private UserService userService;
+
+    @Mock
+    private UserServiceClient userServiceClient;
+
+    private ExecutorService executor;
+    private PageDataLoader loader;
+
+    private final List<ProductInfo> products = List.of(
+            new ProductInfo(1L, "Товар", BigDecimal.TEN, 5, "", ""));
+    private final List<UserInfo> users = List.of(
+            new UserInfo(1L, "shop", BigDecimal.ZERO),
+            new UserInfo(2L, "user", BigDecimal.TEN));
+
+    /**
+     * Подготавливаем данные для каждого тестового метода.
+     */
+    @BeforeEach
+    public void setup() {
+        executor = Executors.newFixedThreadPool(4);
+        loader = new PageDataLoader(catalogService, userService, userServiceClient, executor, TIMEOUT);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Упавший вызов заменяется пустым значением, остальные данные страницы на месте.
+     */
+    @Test
+    void loadHome_PartialFailure() {
+        /*
+            Подготовка.
+         */
+        when(catalogService.loadProducts()).thenThrow(new IllegalStateException("catalog down"));
+        when(userService.loadAllUsers()).thenReturn(users);
+        when(userServiceClient.getUserById(2L)).thenReturn(ResponseEntity.ok(users.get(1)));
+        /*
+            Выполнение.
+         */
+        HomePageData page = loader.loadHome(2L);
+        /*
+            Проверка.
+         */
+        assertTrue(page.getProducts().isEmpty());
+        assertEquals(users, page.getUsers());
+        assertEquals(2L, page.getCurrentUser().getId());
+        assertEquals(List.of("товары"), page.getFailures());
+        assertTrue(page.isPartial());
+    }
+
+    /**
+     * Недоступный текущий пользователь берется из загруженного списка.
+     */
+    @Test
+    void loadHome_CurrentUserFromListOnFailure() {
+        /*
+            Подготовка.
+         */
+        when(catalogService.loadProducts()).thenReturn(products);
+        when(userService.loadAllUsers()).thenReturn(users);
+        when(userServiceClient.getUserById(2L)).thenThrow(new IllegalStateException("user down"));
+        /*
+            Выполнение.
+         */
+        HomePageData page = loader.loadHome(2L);
+        /*
+            Проверка.
+         */
+        assertEquals(products, page.getProducts());
+        assertEquals(users.get(1), page.getCurrentUser());
+        assertEquals(List.of("текущий пользователь"), page.getFailures());
+    }
+
+    /**
+     * Зависший вызов не задерживает страницу дольше таймаута и прерывается.
+     */
+    @Test
+    void loadHome_TimeoutCancelsSlowCall() throws Exception {
+        /*
+            Подготовка.
+         */
+        CountDownLatch never = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        when(catalogService.loadProducts()).thenAnswer(inv -> {
+            try {
+                never.await();
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                throw e;
+            }
+            return products;
+        });
+        when(userService.loadAllUsers()).thenReturn(users);
+        /*
+            Выполнение.
+         */
+        long start = System.nanoTime();
+        HomePageData page = loader.loadHome(null);
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        /*
+            Проверка.
+         */
+        assertTrue(elapsed < TIMEOUT.toMillis() * 5, "страница ждала " + elapsed + " мс");
+        assertTrue(page.getProducts().isEmpty());
+        assertEquals(List.of("товары"), page.getFailures());
+        assertEquals(2L, page.getCurrentUser().getId());
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Отказ пула - ошибка вызова: в потоке запроса ничего не выполняется.
+     */
+    @Test
+    void loadHome_RejectedCallsAreFailures() {
+        /*
+            Подготовка.
+         */
+        executor.shutdown();
+        /*
+            Выполнение.
+         */
+        HomePageData page = loader.loadHome(2L);
+        /*
+            Проверка.
+         */
+        verifyNoInteractions(catalogService, userService, userServiceClient);
+        assertTrue(page.getProducts().isEmpty());
+        assertTrue(page.getUsers().isEmpty());
+        assertEquals(0L, page.getCurrentUser().getId());
+        assertEquals(3, page.getFailures().size());
+    }
+}
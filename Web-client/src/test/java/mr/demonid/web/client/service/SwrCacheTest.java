@@ -0,0 +1,273 @@
+package mr.demonid.web.client.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SwrCacheTest {
+
+    private static final Duration TTL = Duration.ofSeconds(5);
+    private static final Duration STALE = Duration.ofSeconds(60);
+
+    private final AtomicLong now = new AtomicLong();
+    private final Queue<Runnable> refreshes = new ArrayDeque<>();
+    private final AtomicInteger calls = new AtomicInteger();
+    private SimpleMeterRegistry registry;
+
+    /**
+     * Подготавливаем данные для каждого тестового метода.
+     * Часы и фоновый пул ручные: время двигаем сами, обновления выполняем явно.
+     */
+    @BeforeEach
+    public void setup() {
+        registry = new SimpleMeterRegistry();
+        now.set(0);
+        refreshes.clear();
+        calls.set(0);
+    }
+
+    /**
+     * Промах загружает значение в текущем потоке, свежая запись отдается без загрузки.
+     */
+    @Test
+    void get_MissLoadsThenFreshHit() {
+        /*
+            Подготовка.
+         */
+        SwrCache<String, String> cache = cache(refreshes::add, key -> key + calls.incrementAndGet());
+        /*
+            Выполнение.
+         */
+        String first = cache.get("a");
+        now.addAndGet(TTL.toNanos() - 1);
+        String second = cache.get("a");
+        /*
+            Проверка.
+         */
+        assertEquals("a1", first);
+        assertEquals("a1", second);
+        assertEquals(1, calls.get());
+        assertTrue(refreshes.isEmpty());
+        assertEquals(1, gets("miss"));
+        assertEquals(1, gets("hit"));
+    }
+
+    /**
+     * Устаревшая запись отдается сразу, обновление уходит в фоновый пул один раз.
+     */
+    @Test
+    void get_StaleReturnsOldValueAndRefreshesOnce() {
+        /*
+            Подготовка.
+         */
+        SwrCache<String, String> cache = cache(refreshes::add, key -> key + calls.incrementAndGet());
+        cache.get("a");
+        now.addAndGet(TTL.toNanos());
+        /*
+            Выполнение.
+         */
+        String stale1 = cache.get("a");
+        String stale2 = cache.get("a");
+        int queued = refreshes.size();
+        refreshes.poll().run();
+        String fresh = cache.get("a");
+        /*
+            Проверка.
+         */
+        assertEquals("a1", stale1);
+        assertEquals("a1", stale2);
+        assertEquals(1, queued);
+        assertEquals("a2", fresh);
+        assertEquals(2, gets("stale"));
+        assertEquals(1, gets("hit"));
+    }
+
+    /**
+     * Запись старше ttl + stale не отдается, а загружается заново синхронно.
+     */
+    @Test
+    void get_ExpiredLoadsSynchronously() {
+        /*
+            Подготовка.
+         */
+        SwrCache<String, String> cache = cache(refreshes::add, key -> key + calls.incrementAndGet());
+        cache.get("a");
+        now.addAndGet(TTL.toNanos() + STALE.toNanos());
+        /*
+            Выполнение.
+         */
+        String value = cache.get("a");
+        /*
+            Проверка.
+         */
+        assertEquals("a2", value);
+        assertTrue(refreshes.isEmpty());
+        assertEquals(2, gets("miss"));
+    }
+
+    /**
+     * Одновременные промахи по одному ключу дают одну загрузку, все получают её результат.
+     */
+    @Test
+    void get_ConcurrentMissesShareOneLoad() throws Exception {
+        /*
+            Подготовка.
+         */
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        SwrCache<String, String> cache = cache(refreshes::add, key -> {
+            calls.incrementAndGet();
+            started.countDown();
+            await(release);
+            return "value";
+        });
+        /*
+            Выполнение.
+         */
+        CompletableFuture<String> leader = CompletableFuture.supplyAsync(() -> cache.get("a"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> follower = new CompletableFuture<>();
+        Thread thread = new Thread(() -> follower.complete(cache.get("a")));
+        thread.start();
+        // второй вызов должен дойти до ожидания чужой загрузки
+        while (thread.getState() != Thread.State.WAITING) {
+            Thread.onSpinWait();
+        }
+        release.countDown();
+        /*
+            Проверка.
+         */
+        assertEquals("value", leader.get(5, TimeUnit.SECONDS));
+        assertEquals("value", follower.get(5, TimeUnit.SECONDS));
+        assertEquals(2, gets("miss"));
+        assertEquals(1, calls.get());
+        assertEquals(1, loads("success"));
+    }
+
+    /**
+     * Ошибка синхронной загрузки пробрасывается как есть и не запоминается.
+     */
+    @Test
+    void get_LoadFailurePropagatesAndRetries() {
+        /*
+            Подготовка.
+         */
+        SwrCache<String, String> cache = cache(refreshes::add, key -> {
+            if (calls.incrementAndGet() == 1) {
+                throw new IllegalStateException("down");
+            }
+            return "value";
+        });
+        /*
+            Выполнение.
+         */
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> cache.get("a"));
+        String value = cache.get("a");
+        /*
+            Проверка.
+         */
+        assertEquals("down", e.getMessage());
+        assertEquals("value", value);
+        assertEquals(1, loads("failure"));
+        assertEquals(1, loads("success"));
+    }
+
+    /**
+     * Ошибка фонового обновления оставляет старое значение, следующий запрос обновляет снова.
+     */
+    @Test
+    void get_RefreshFailureKeepsStaleValue() {
+        /*
+            Подготовка.
+         */
+        SwrCache<String, String> cache = cache(refreshes::add, key -> {
+            if (calls.incrementAndGet() == 2) {
+                throw new IllegalStateException("down");
+            }
+            return key + calls.get();
+        });
+        cache.get("a");
+        now.addAndGet(TTL.toNanos());
+        /*
+            Выполнение.
+         */
+        cache.get("a");
+        refreshes.poll().run();
+        String afterFailure = cache.get("a");
+        refreshes.poll().run();
+        String afterRetry = cache.get("a");
+        /*
+            Проверка.
+         */
+        assertEquals("a1", afterFailure);
+        assertEquals("a3", afterRetry);
+        assertEquals(1, loads("failure"));
+    }
+
+    /**
+     * Пул отказал в обновлении: отдается старое значение, обновление повторит следующий запрос.
+     */
+    @Test
+    void get_RejectedRefreshRetriedByNextRequest() {
+        /*
+            Подготовка.
+         */
+        AtomicInteger rejected = new AtomicInteger();
+        Executor rejecting = task -> {
+            if (rejected.incrementAndGet() == 1) {
+                throw new RejectedExecutionException("full");
+            }
+            refreshes.add(task);
+        };
+        SwrCache<String, String> cache = cache(rejecting, key -> key + calls.incrementAndGet());
+        cache.get("a");
+        now.addAndGet(TTL.toNanos());
+        /*
+            Выполнение.
+         */
+        String first = cache.get("a");
+        String second = cache.get("a");
+        refreshes.poll().run();
+        /*
+            Проверка.
+         */
+        assertEquals("a1", first);
+        assertEquals("a1", second);
+        assertEquals(2, rejected.get());
+        assertEquals("a2", cache.get("a"));
+    }
+
+    private SwrCache<String, String> cache(Executor executor, Function<String, String> loader) {
+        return new SwrCache<>("test", TTL, STALE, executor, loader, registry, now::get);
+    }
+
+    private double gets(String result) {
+        return registry.get("cache.gets").tag("result", result).functionCounter().count();
+    }
+
+    private double loads(String result) {
+        return registry.get("cache.loads").tag("result", result).functionCounter().count();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}